@@ -0,0 +1,80 @@
+package com.sculksignal.benchmark;
+
+import com.sculksignal.scheduler.ExecutionBackend;
+
+import org.bukkit.World;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs everything on the thread that created it, which stands in for the
+ * engine thread. Repeating tasks only run when {@link #tick()} is called, so
+ * a benchmark that never ticks measures the calling thread alone, and a
+ * simulation can run ticks back to back.
+ */
+public final class HeadlessBackend implements ExecutionBackend {
+
+    private final Thread engineThread;
+    private final List<Repeating> tasks;
+    private long currentTick;
+
+    public HeadlessBackend() {
+        this.engineThread = Thread.currentThread();
+        this.tasks = new ArrayList<>();
+    }
+
+    private static final class Repeating {
+        final Runnable work;
+        final long period;
+        long dueTick;
+        boolean cancelled;
+
+        Repeating(Runnable work, long dueTick, long period) {
+            this.work = work;
+            this.dueTick = dueTick;
+            this.period = period;
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "headless";
+    }
+
+    @Override
+    public Task runRepeating(Runnable work, long delayTicks, long periodTicks) {
+        Repeating task = new Repeating(work, currentTick + Math.max(delayTicks, 1), Math.max(periodTicks, 1));
+        tasks.add(task);
+        return () -> task.cancelled = true;
+    }
+
+    @Override
+    public boolean isEngineThread() {
+        return Thread.currentThread() == engineThread;
+    }
+
+    @Override
+    public void runAtChunk(World world, int chunkX, int chunkZ, Runnable work) {
+        work.run();
+    }
+
+    /**
+     * Advance one tick, running the repeating tasks that are due in the order they were started
+     */
+    public void tick() {
+        currentTick++;
+        tasks.removeIf(task -> task.cancelled);
+        for (int i = 0; i < tasks.size(); i++) {
+            Repeating task = tasks.get(i);
+            if (!task.cancelled && task.dueTick <= currentTick) {
+                task.dueTick += task.period;
+                task.work.run();
+            }
+        }
+    }
+
+    public long getCurrentTick() {
+        return currentTick;
+    }
+}
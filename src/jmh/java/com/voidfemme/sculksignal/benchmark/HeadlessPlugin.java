@@ -0,0 +1,111 @@
+package com.sculksignal.benchmark;
+
+import com.sculksignal.SculkSignalPlugin;
+import com.sculksignal.chunk.ChunkLoadManager;
+import com.sculksignal.config.SculkSignalConfig;
+import com.sculksignal.network.NetworkRegistry;
+import com.sculksignal.network.SignalPropagator;
+import com.sculksignal.storage.NetworkDataStorage;
+
+import org.bukkit.World;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.objenesis.ObjenesisStd;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.UUID;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Builds a plugin that runs without a server, for benchmarks and the trace
+ * simulator.
+ *
+ * The plugin is created without running its constructor, which only works
+ * inside a server's plugin class loader, and its components are wired up the
+ * way onEnable would. It reads the shipped config.yml with the given
+ * overrides. Work runs on the creating thread through a {@link HeadlessBackend}
+ * and no tick task is started. Nothing is saved or paged: the data folder is
+ * an empty temporary directory.
+ */
+public final class HeadlessPlugin {
+
+    private HeadlessPlugin() {
+    }
+
+    /**
+     * A plugin with the shipped configuration, with each override set on top of it
+     */
+    public static SculkSignalPlugin create(Map<String, Object> overrides) {
+        SculkSignalPlugin plugin = new ObjenesisStd().newInstance(SculkSignalPlugin.class);
+
+        YamlConfiguration yaml = loadDefaults();
+        overrides.forEach(yaml::set);
+        Logger logger = Logger.getLogger("SculkSignal");
+        logger.setLevel(Level.WARNING);
+        try {
+            set(JavaPlugin.class, plugin, "newConfig", yaml);
+            set(JavaPlugin.class, plugin, "logger", logger);
+            set(JavaPlugin.class, plugin, "dataFolder", Files.createTempDirectory("sculksignal-bench").toFile());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        set(SculkSignalPlugin.class, plugin, "config", new SculkSignalConfig(plugin));
+        set(SculkSignalPlugin.class, plugin, "executionBackend", new HeadlessBackend());
+        set(SculkSignalPlugin.class, plugin, "dataStorage", new NetworkDataStorage(plugin));
+        set(SculkSignalPlugin.class, plugin, "networkRegistry", new NetworkRegistry(plugin));
+        set(SculkSignalPlugin.class, plugin, "chunkLoadManager", new ChunkLoadManager(plugin));
+        set(SculkSignalPlugin.class, plugin, "signalPropagator", new SignalPropagator(plugin));
+        return plugin;
+    }
+
+    /**
+     * A world that only knows its name. Locations hold their world weakly, so
+     * the caller must keep a reference for as long as its sensors are used.
+     */
+    public static World world(String name) {
+        UUID uid = UUID.nameUUIDFromBytes(name.getBytes(StandardCharsets.UTF_8));
+        return (World) Proxy.newProxyInstance(HeadlessPlugin.class.getClassLoader(), new Class<?>[]{World.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "getName", "toString" -> name;
+                    case "getUID" -> uid;
+                    case "hashCode" -> name.hashCode();
+                    case "equals" -> proxy == args[0];
+                    case "isChunkLoaded" -> true;
+                    default -> throw new UnsupportedOperationException("Headless world: " + method.getName());
+                });
+    }
+
+    private static YamlConfiguration loadDefaults() {
+        try (InputStream in = SculkSignalPlugin.class.getResourceAsStream("/config.yml")) {
+            if (in == null) {
+                throw new IllegalStateException("config.yml is not on the classpath");
+            }
+            return YamlConfiguration.loadConfiguration(new InputStreamReader(in, StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Set a private field, or a static one if the target is null
+     */
+    static void set(Class<?> owner, Object target, String name, Object value) {
+        try {
+            Field field = owner.getDeclaredField(name);
+            field.setAccessible(true);
+            field.set(target, value);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot set " + owner.getSimpleName() + "." + name, e);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.sculksignal.benchmark;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Synthetic sensor layouts for benchmarks. The same layout, count and seed
+ * always give the same blocks, in the same order.
+ */
+public final class NetworkGenerator {
+
+    /** Blocks between neighbouring grid sensors; each sees the eight around it and the four two steps away */
+    private static final int GRID_SPACING = 8;
+    /** Blocks between sensors in a chain, so each only reaches the next and the previous */
+    private static final int CHAIN_SPACING = 12;
+    /** Sensors in each base */
+    private static final int BASE_SENSORS = 50;
+    /** Blocks between neighbouring bases along each axis */
+    private static final int BASE_SPACING = 512;
+    private static final int BASE_WIDTH = 32;
+    private static final int BASE_HEIGHT = 16;
+    private static final int FLOOR_Y = 64;
+
+    public enum Layout {
+        /** A square lattice of sensors covering one large area */
+        GRID,
+        /** Dense bases far apart, each joined to its east and south neighbours by a relay chain */
+        BASES,
+        /** One long line of sensors, the worst case for hop depth */
+        CHAIN
+    }
+
+    private NetworkGenerator() {
+    }
+
+    /**
+     * Generate the blocks of {@code count} sensors in the given layout
+     */
+    public static List<Location> generate(Layout layout, World world, int count, long seed) {
+        return switch (layout) {
+            case GRID -> grid(world, count);
+            case BASES -> bases(world, count, new Random(seed));
+            case CHAIN -> chain(world, count);
+        };
+    }
+
+    private static List<Location> grid(World world, int count) {
+        int side = (int) Math.ceil(Math.sqrt(count));
+        int origin = -side * GRID_SPACING / 2;
+        List<Location> locations = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            locations.add(new Location(world, origin + (i % side) * GRID_SPACING, FLOOR_Y,
+                    origin + (i / side) * GRID_SPACING));
+        }
+        return locations;
+    }
+
+    private static List<Location> chain(World world, int count) {
+        List<Location> locations = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            locations.add(new Location(world, i * CHAIN_SPACING, FLOOR_Y, 0));
+        }
+        return locations;
+    }
+
+    /**
+     * Bases on a square lattice with relay chains between them. Each base and
+     * the two relays leaving it take about BASE_SENSORS plus 2 * BASE_SPACING
+     * / CHAIN_SPACING sensors, which sets how many bases fit in the count.
+     */
+    private static List<Location> bases(World world, int count, Random random) {
+        int relaysPerLink = BASE_SPACING / CHAIN_SPACING;
+        int basesWanted = Math.max(1, count / (BASE_SENSORS + 2 * relaysPerLink));
+        int side = (int) Math.ceil(Math.sqrt(basesWanted));
+
+        Set<Location> taken = new HashSet<>();
+        List<Location> locations = new ArrayList<>(count);
+        for (int b = 0; b < side * side && locations.size() < count; b++) {
+            int baseX = (b % side) * BASE_SPACING;
+            int baseZ = (b / side) * BASE_SPACING;
+
+            // The base itself: a sensor at its corner for the relays to meet, and the
+            // rest scattered through a box, densely connected to each other
+            add(locations, taken, count, new Location(world, baseX, FLOOR_Y, baseZ));
+            for (int i = 1; i < BASE_SENSORS; i++) {
+                add(locations, taken, count, new Location(world, baseX + random.nextInt(BASE_WIDTH),
+                        FLOOR_Y + random.nextInt(BASE_HEIGHT), baseZ + random.nextInt(BASE_WIDTH)));
+            }
+
+            // Relays from the corner to the corners of the next bases east and south
+            for (int i = 1; i <= relaysPerLink; i++) {
+                if (b % side < side - 1) {
+                    add(locations, taken, count, new Location(world, baseX + i * CHAIN_SPACING, FLOOR_Y, baseZ));
+                }
+                if (b / side < side - 1) {
+                    add(locations, taken, count, new Location(world, baseX, FLOOR_Y, baseZ + i * CHAIN_SPACING));
+                }
+            }
+        }
+
+        // The lattice of whole bases can fall short of the count; fill with more sensors in the last base
+        int lastX = ((side * side - 1) % side) * BASE_SPACING;
+        int lastZ = ((side * side - 1) / side) * BASE_SPACING;
+        while (locations.size() < count) {
+            add(locations, taken, count, new Location(world, lastX + random.nextInt(BASE_WIDTH * 4),
+                    FLOOR_Y + random.nextInt(BASE_HEIGHT), lastZ + random.nextInt(BASE_WIDTH * 4)));
+        }
+        return locations;
+    }
+
+    private static void add(List<Location> locations, Set<Location> taken, int count, Location location) {
+        if (locations.size() < count && taken.add(location)) {
+            locations.add(location);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.sculksignal.benchmark;
+
+import com.sculksignal.SculkSignalPlugin;
+import com.sculksignal.network.NetworkRegistry;
+import com.sculksignal.network.SculkNode;
+import com.sculksignal.network.SignalPropagator;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Signals from random sources, with the configured hop limit: routing the
+ * broadcast, or taking it from the plan cache, and scheduling every
+ * activation. Chunk loading is off so no chunk is ever held, and the
+ * scheduled activations are dropped after each signal without firing.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class PropagationBenchmark {
+
+    private static final int SOURCES = 256;
+    private static final int SIGNAL_STRENGTH = 15;
+
+    @Param({"GRID", "BASES", "CHAIN"})
+    public NetworkGenerator.Layout layout;
+
+    @Param({"1000", "10000", "100000"})
+    public int size;
+
+    /** 0 routes every signal; 1024 holds the plan of every source after the first pass */
+    @Param({"0", "1024"})
+    public int planCacheSize;
+
+    // Locations only hold their world weakly
+    private World world;
+    private SignalPropagator propagator;
+    private SculkNode[] sources;
+    private int nextSource;
+
+    @Setup(Level.Trial)
+    public void populate() {
+        world = HeadlessPlugin.world("bench");
+        SculkSignalPlugin plugin = HeadlessPlugin.create(Map.of(
+                "chunk-loading.enabled", false,
+                "transmission.plan-cache-size", planCacheSize));
+        NetworkRegistry registry = plugin.getNetworkRegistry();
+        propagator = plugin.getSignalPropagator();
+
+        List<Location> locations = NetworkGenerator.generate(layout, world, size, RegistryBenchmark.SEED);
+        for (Location location : locations) {
+            registry.registerSensor(new SculkNode(location, RegistryBenchmark.OWNER));
+        }
+
+        Random random = new Random(RegistryBenchmark.SEED);
+        sources = new SculkNode[SOURCES];
+        for (int i = 0; i < SOURCES; i++) {
+            sources[i] = registry.getSensor(locations.get(random.nextInt(locations.size())));
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void dropActivations() {
+        propagator.getScheduler().stop();
+    }
+
+    @Benchmark
+    public void propagateSignal() {
+        propagator.propagateSignal(sources[nextSource++ & (SOURCES - 1)], SIGNAL_STRENGTH);
+    }
+}
@@ -0,0 +1,127 @@
+package com.sculksignal.benchmark;
+
+import com.sculksignal.network.NetworkRegistry;
+import com.sculksignal.network.SculkNode;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adding, removing and looking up sensors in a populated network.
+ *
+ * Each invocation adds or removes a batch of sensors spread through the
+ * network, so the cost includes connecting them to, or cutting them from,
+ * their neighbours and keeping the components up to date.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class RegistryBenchmark {
+
+    static final UUID OWNER = new UUID(0, 0);
+    static final long SEED = 42;
+    private static final int BATCH = 64;
+    private static final int PROBES = 1024;
+
+    @Param({"GRID", "BASES", "CHAIN"})
+    public NetworkGenerator.Layout layout;
+
+    @Param({"1000", "10000", "100000"})
+    public int size;
+
+    // Locations only hold their world weakly
+    private World world;
+    private NetworkRegistry registry;
+    private List<Location> batch;
+    private Location[] probes;
+    private int nextProbe;
+
+    @Setup(Level.Trial)
+    public void populate() {
+        world = HeadlessPlugin.world("bench");
+        registry = HeadlessPlugin.create(Collections.emptyMap()).getNetworkRegistry();
+
+        List<Location> locations = NetworkGenerator.generate(layout, world, size, SEED);
+        for (Location location : locations) {
+            registry.registerSensor(new SculkNode(location, OWNER));
+        }
+
+        Random random = new Random(SEED);
+        Collections.shuffle(locations, random);
+        batch = List.copyOf(locations.subList(0, Math.min(BATCH, locations.size())));
+        probes = new Location[PROBES];
+        for (int i = 0; i < PROBES; i++) {
+            probes[i] = locations.get(random.nextInt(locations.size()));
+        }
+    }
+
+    /**
+     * Takes the batch out of the network before each invocation, so it can be added back
+     */
+    @State(Scope.Thread)
+    public static class Removed {
+        SculkNode[] nodes;
+
+        @Setup(Level.Invocation)
+        public void remove(RegistryBenchmark network) {
+            nodes = new SculkNode[network.batch.size()];
+            for (int i = 0; i < nodes.length; i++) {
+                Location location = network.batch.get(i);
+                network.registry.unregisterSensor(location);
+                nodes[i] = new SculkNode(location, OWNER);
+            }
+        }
+    }
+
+    /**
+     * Puts the batch back into the network before each invocation, so it can be removed again
+     */
+    @State(Scope.Thread)
+    public static class Present {
+        @Setup(Level.Invocation)
+        public void add(RegistryBenchmark network) {
+            for (Location location : network.batch) {
+                network.registry.registerSensor(new SculkNode(location, OWNER));
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void registerSensor(Removed removed) {
+        for (SculkNode node : removed.nodes) {
+            registry.registerSensor(node);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void unregisterSensor(Present present) {
+        for (Location location : batch) {
+            registry.unregisterSensor(location);
+        }
+    }
+
+    @Benchmark
+    public void getSensorsInRange(Blackhole blackhole) {
+        Location center = probes[nextProbe++ & (PROBES - 1)];
+        blackhole.consume(registry.getSensorsInRange(center, NetworkRegistry.SENSOR_RANGE));
+    }
+}
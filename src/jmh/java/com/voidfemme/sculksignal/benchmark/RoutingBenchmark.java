@@ -0,0 +1,74 @@
+package com.sculksignal.benchmark;
+
+import com.sculksignal.network.NetworkRegistry;
+import com.sculksignal.network.PathCalculator;
+import com.sculksignal.network.SculkNode;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shortest hop paths between random pairs of sensors. Pairs in different
+ * components are kept, since giving up on an unreachable target is part of
+ * the cost.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class RoutingBenchmark {
+
+    private static final int PAIRS = 256;
+
+    @Param({"GRID", "BASES", "CHAIN"})
+    public NetworkGenerator.Layout layout;
+
+    @Param({"1000", "10000", "100000"})
+    public int size;
+
+    // Locations only hold their world weakly
+    private World world;
+    private PathCalculator pathCalculator;
+    private SculkNode[] sources;
+    private SculkNode[] targets;
+    private int nextPair;
+
+    @Setup(Level.Trial)
+    public void populate() {
+        world = HeadlessPlugin.world("bench");
+        NetworkRegistry registry = HeadlessPlugin.create(Collections.emptyMap()).getNetworkRegistry();
+
+        List<Location> locations = NetworkGenerator.generate(layout, world, size, RegistryBenchmark.SEED);
+        for (Location location : locations) {
+            registry.registerSensor(new SculkNode(location, RegistryBenchmark.OWNER));
+        }
+        pathCalculator = new PathCalculator(registry);
+
+        Random random = new Random(RegistryBenchmark.SEED);
+        sources = new SculkNode[PAIRS];
+        targets = new SculkNode[PAIRS];
+        for (int i = 0; i < PAIRS; i++) {
+            sources[i] = registry.getSensor(locations.get(random.nextInt(locations.size())));
+            targets[i] = registry.getSensor(locations.get(random.nextInt(locations.size())));
+        }
+    }
+
+    @Benchmark
+    public List<SculkNode> findPath() {
+        int pair = nextPair++ & (PAIRS - 1);
+        return pathCalculator.findPath(sources[pair], targets[pair]);
+    }
+}
@@ -0,0 +1,236 @@
+package com.sculksignal.benchmark;
+
+import com.sculksignal.SculkSignalPlugin;
+import com.sculksignal.util.ChunkCoordinate;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
+import org.bukkit.Server;
+import org.bukkit.World;
+
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Worlds whose chunks load and unload like a server's, for replaying traces.
+ *
+ * No chunk is loaded at first; there are no players. A chunk asked for with
+ * getChunkAtAsync finishes loading a fixed number of ticks later, and stays
+ * loaded while a plugin ticket holds it. Loads fire the plugin's chunk load
+ * handling the way the chunk load event would. The worlds are installed as
+ * the server's, so {@code Bukkit.getWorld} and {@code Bukkit.getWorlds} find
+ * them.
+ */
+public final class SimulatedWorlds {
+
+    private final SculkSignalPlugin plugin;
+    private final int loadTicks;
+    private final Map<String, SimulatedWorld> worlds;
+    private final Queue<PendingLoad> pendingLoads;
+    private long currentTick;
+    private long chunkLoads;
+    private long chunkUnloads;
+    private int peakLoadedChunks;
+
+    public SimulatedWorlds(SculkSignalPlugin plugin, int loadTicks) {
+        this.plugin = plugin;
+        this.loadTicks = Math.max(loadTicks, 0);
+        this.worlds = new HashMap<>();
+        this.pendingLoads = new ArrayDeque<>();
+    }
+
+    /**
+     * Make these worlds the ones the server knows about
+     */
+    public void install() {
+        Server server = (Server) Proxy.newProxyInstance(SimulatedWorlds.class.getClassLoader(),
+                new Class<?>[]{Server.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "getWorld" -> args[0] instanceof String name ? findWorld(name) : findWorld((UUID) args[0]);
+                    case "getWorlds" -> getWorlds();
+                    case "getName", "toString" -> "SimulatedServer";
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    default -> throw new UnsupportedOperationException("Simulated server: " + method.getName());
+                });
+        HeadlessPlugin.set(Bukkit.class, null, "server", server);
+    }
+
+    private World findWorld(String name) {
+        SimulatedWorld world = worlds.get(name);
+        return world != null ? world.proxy : null;
+    }
+
+    private World findWorld(UUID uid) {
+        for (SimulatedWorld world : worlds.values()) {
+            if (world.uid.equals(uid)) {
+                return world.proxy;
+            }
+        }
+        return null;
+    }
+
+    private List<World> getWorlds() {
+        List<World> proxies = new ArrayList<>(worlds.size());
+        for (SimulatedWorld world : worlds.values()) {
+            proxies.add(world.proxy);
+        }
+        return proxies;
+    }
+
+    /**
+     * The world with the given name, created empty the first time it is asked for
+     */
+    public World get(String name) {
+        return worlds.computeIfAbsent(name, SimulatedWorld::new).proxy;
+    }
+
+    /**
+     * Advance one tick: finish the loads that are due and unload chunks that
+     * finished loading without anything holding them
+     */
+    public void tick() {
+        currentTick++;
+        for (SimulatedWorld world : worlds.values()) {
+            world.unloadUnheld();
+        }
+
+        while (!pendingLoads.isEmpty() && pendingLoads.peek().dueTick <= currentTick) {
+            PendingLoad load = pendingLoads.poll();
+            load.world.finishLoad(load.chunkX, load.chunkZ, load.future);
+        }
+    }
+
+    public boolean hasPendingLoads() {
+        return !pendingLoads.isEmpty();
+    }
+
+    public long getChunkLoads() {
+        return chunkLoads;
+    }
+
+    public long getChunkUnloads() {
+        return chunkUnloads;
+    }
+
+    public int getPeakLoadedChunks() {
+        return peakLoadedChunks;
+    }
+
+    private static final class PendingLoad {
+        final SimulatedWorld world;
+        final int chunkX;
+        final int chunkZ;
+        final long dueTick;
+        final CompletableFuture<Chunk> future;
+
+        PendingLoad(SimulatedWorld world, int chunkX, int chunkZ, long dueTick, CompletableFuture<Chunk> future) {
+            this.world = world;
+            this.chunkX = chunkX;
+            this.chunkZ = chunkZ;
+            this.dueTick = dueTick;
+            this.future = future;
+        }
+    }
+
+    private final class SimulatedWorld {
+        final String name;
+        final UUID uid;
+        final World proxy;
+        final Map<Long, Chunk> loaded;
+        final Set<Long> held;
+        final Map<Long, CompletableFuture<Chunk>> loading;
+
+        SimulatedWorld(String name) {
+            this.name = name;
+            this.uid = UUID.nameUUIDFromBytes(name.getBytes(StandardCharsets.UTF_8));
+            this.loaded = new HashMap<>();
+            this.held = new HashSet<>();
+            this.loading = new HashMap<>();
+            this.proxy = (World) Proxy.newProxyInstance(SimulatedWorlds.class.getClassLoader(),
+                    new Class<?>[]{World.class}, (p, method, args) -> switch (method.getName()) {
+                        case "getName", "toString" -> name;
+                        case "getUID" -> uid;
+                        case "hashCode" -> name.hashCode();
+                        case "equals" -> p == args[0];
+                        case "isChunkLoaded" -> args.length == 2 &&
+                                loaded.containsKey(ChunkCoordinate.pack((int) args[0], (int) args[1]));
+                        case "getChunkAtAsync" -> loadAsync((int) args[0], (int) args[1]);
+                        default -> throw new UnsupportedOperationException("Simulated world: " + method.getName());
+                    });
+        }
+
+        CompletableFuture<Chunk> loadAsync(int chunkX, int chunkZ) {
+            long key = ChunkCoordinate.pack(chunkX, chunkZ);
+            Chunk chunk = loaded.get(key);
+            if (chunk != null) {
+                return CompletableFuture.completedFuture(chunk);
+            }
+
+            CompletableFuture<Chunk> future = loading.get(key);
+            if (future == null) {
+                future = new CompletableFuture<>();
+                loading.put(key, future);
+                pendingLoads.add(new PendingLoad(this, chunkX, chunkZ, currentTick + loadTicks, future));
+            }
+            return future;
+        }
+
+        void finishLoad(int chunkX, int chunkZ, CompletableFuture<Chunk> future) {
+            long key = ChunkCoordinate.pack(chunkX, chunkZ);
+            loading.remove(key);
+            Chunk chunk = createChunk(chunkX, chunkZ);
+            loaded.put(key, chunk);
+            chunkLoads++;
+            peakLoadedChunks = Math.max(peakLoadedChunks, countLoaded());
+
+            future.complete(chunk);
+            plugin.getSignalPropagator().getScheduler()
+                    .execute(() -> plugin.getSignalPropagator().onChunkLoad(proxy, chunkX, chunkZ));
+        }
+
+        void unloadUnheld() {
+            var iterator = loaded.keySet().iterator();
+            while (iterator.hasNext()) {
+                if (!held.contains(iterator.next())) {
+                    iterator.remove();
+                    chunkUnloads++;
+                }
+            }
+        }
+
+        Chunk createChunk(int chunkX, int chunkZ) {
+            long key = ChunkCoordinate.pack(chunkX, chunkZ);
+            return (Chunk) Proxy.newProxyInstance(SimulatedWorlds.class.getClassLoader(), new Class<?>[]{Chunk.class},
+                    (p, method, args) -> switch (method.getName()) {
+                        case "getWorld" -> proxy;
+                        case "getX" -> chunkX;
+                        case "getZ" -> chunkZ;
+                        case "isLoaded" -> loaded.get(key) == p;
+                        case "addPluginChunkTicket" -> held.add(key);
+                        case "removePluginChunkTicket" -> held.remove(key);
+                        case "toString" -> name + "[" + chunkX + ", " + chunkZ + "]";
+                        case "hashCode" -> Long.hashCode(key);
+                        case "equals" -> p == args[0];
+                        default -> throw new UnsupportedOperationException("Simulated chunk: " + method.getName());
+                    });
+        }
+    }
+
+    private int countLoaded() {
+        int count = 0;
+        for (SimulatedWorld world : worlds.values()) {
+            count += world.loaded.size();
+        }
+        return count;
+    }
+}
@@ -0,0 +1,173 @@
+package com.sculksignal.benchmark;
+
+import com.sculksignal.SculkSignalPlugin;
+import com.sculksignal.network.AdjacencyStore;
+import com.sculksignal.network.NetworkRegistry;
+import com.sculksignal.network.SculkNode;
+import com.sculksignal.network.SensorGraph;
+import com.sculksignal.storage.NetworkFileFormat;
+import com.sculksignal.storage.RegionStore;
+import com.sculksignal.util.PackedBlockPos;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Saving and loading networks: one file holding a whole world's network
+ * written and read back, and every region file of a world restored into an
+ * empty registry the way the plugin does at startup.
+ *
+ * Files go to a temporary directory, so the timings include the file system
+ * and the fsync of each write.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+public class StorageBenchmark {
+
+    @Param({"GRID", "BASES", "CHAIN"})
+    public NetworkGenerator.Layout layout;
+
+    @Param({"1000", "10000", "100000"})
+    public int size;
+
+    // Locations only hold their world weakly
+    private World world;
+    private SculkSignalPlugin plugin;
+    private Path directory;
+    private Path networkDirectory;
+    private Path file;
+    private NetworkFileFormat.WorldData data;
+
+    @Setup(Level.Trial)
+    public void save() throws IOException {
+        directory = Files.createTempDirectory("sculksignal-storage-bench");
+        networkDirectory = directory.resolve("networks");
+        plugin = HeadlessPlugin.create(Collections.emptyMap());
+        SimulatedWorlds worlds = new SimulatedWorlds(plugin, 0);
+        worlds.install();
+        world = worlds.get("bench");
+
+        // Saved region by region, as the plugin would after registering the sensors
+        NetworkRegistry registry = plugin.getNetworkRegistry();
+        RegionStore store = new RegionStore(plugin, networkDirectory);
+        registry.addListener(store);
+        for (Location location : NetworkGenerator.generate(layout, world, size, RegistryBenchmark.SEED)) {
+            registry.registerSensor(new SculkNode(location, RegistryBenchmark.OWNER));
+        }
+        for (RegionStore.RegionWrite region : store.captureDirtyRegions()) {
+            region.write();
+        }
+        registry.removeListener(store);
+
+        data = encodeWorld(registry.getShard(world.getName()).getAdjacency());
+        file = directory.resolve("network.ssn");
+        NetworkFileFormat.write(file, data);
+    }
+
+    /**
+     * The whole network as the contents of a single file, with no stubs
+     */
+    private static NetworkFileFormat.WorldData encodeWorld(AdjacencyStore adjacency) {
+        int[] index = new int[adjacency.getIdBound()];
+        Arrays.fill(index, -1);
+        int nodeCount = 0;
+        for (int id = 0; id < index.length; id++) {
+            if (adjacency.getNode(id) != null) {
+                index[id] = nodeCount++;
+            }
+        }
+
+        long[] positions = new long[nodeCount];
+        long[] ownersMost = new long[nodeCount];
+        long[] ownersLeast = new long[nodeCount];
+        int[] flags = new int[nodeCount];
+        int[] edges = new int[adjacency.getEdgeCount() * 2];
+        int edgeSize = 0;
+        SensorGraph.NeighborCursor cursor = adjacency.cursor();
+        for (int id = 0; id < index.length; id++) {
+            SculkNode node = adjacency.getNode(id);
+            if (node == null) {
+                continue;
+            }
+
+            int i = index[id];
+            positions[i] = PackedBlockPos.pack((int) Math.floor(node.getX()), (int) Math.floor(node.getY()),
+                    (int) Math.floor(node.getZ()));
+            ownersMost[i] = node.getOwner().getMostSignificantBits();
+            ownersLeast[i] = node.getOwner().getLeastSignificantBits();
+            flags[i] = NetworkFileFormat.flags(node);
+
+            cursor.reset(id);
+            for (int neighbor = cursor.next(); neighbor >= 0; neighbor = cursor.next()) {
+                if (neighbor > id) {
+                    edges[edgeSize++] = i;
+                    edges[edgeSize++] = index[neighbor];
+                }
+            }
+        }
+
+        return new NetworkFileFormat.WorldData(positions, ownersMost, ownersLeast, flags,
+                Arrays.copyOf(edges, edgeSize), new int[0], new long[0]);
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    /**
+     * Empties the registry before each invocation and gives it a region store
+     * that has not seen any region yet, so every file is read again
+     */
+    @State(Scope.Thread)
+    public static class Unloaded {
+        RegionStore store;
+
+        @Setup(Level.Invocation)
+        public void evict(StorageBenchmark storage) {
+            NetworkRegistry registry = storage.plugin.getNetworkRegistry();
+            registry.evictSensors(registry.getAllSensors().values());
+            store = new RegionStore(storage.plugin, storage.networkDirectory);
+        }
+    }
+
+    @Benchmark
+    public void write() throws IOException {
+        NetworkFileFormat.write(file, data);
+    }
+
+    @Benchmark
+    public void read(Blackhole blackhole) throws IOException {
+        blackhole.consume(NetworkFileFormat.read(file));
+    }
+
+    @Benchmark
+    public void loadAll(Unloaded unloaded) {
+        unloaded.store.loadAll();
+    }
+}
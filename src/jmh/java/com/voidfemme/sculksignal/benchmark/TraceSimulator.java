@@ -0,0 +1,286 @@
+package com.sculksignal.benchmark;
+
+import com.sculksignal.SculkSignalPlugin;
+import com.sculksignal.chunk.ChunkLoadManager;
+import com.sculksignal.chunk.ChunkLoadQueue;
+import com.sculksignal.chunk.ChunkOutbox;
+import com.sculksignal.network.BroadcastPlanCache;
+import com.sculksignal.network.NetworkRegistry;
+import com.sculksignal.network.SculkNode;
+import com.sculksignal.scheduler.SignalScheduler;
+import com.sculksignal.trace.TraceReader;
+import com.sculksignal.trace.TraceRecorder;
+
+import org.bukkit.Location;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays a trace recorded with {@code /sculksignal trace} through the
+ * registry, router, scheduler and chunk loading of this build, without a
+ * server, and reports how much work each tick took.
+ *
+ * Ticks run back to back unless a speed is given. Each tick applies the
+ * sensor changes and signals recorded for it, then runs the plugin's tick
+ * tasks; the time for both is that tick's work. After the last record the
+ * simulation keeps ticking until every scheduled activation and chunk load
+ * has finished, or the drain limit is reached.
+ *
+ * Usage: {@code TraceSimulator <trace> [--speed=N] [--load-ticks=N]
+ * [--drain-ticks=N] [config.path=value ...]}. Config values override the
+ * shipped config.yml.
+ */
+public final class TraceSimulator {
+
+    private static final UUID OWNER = new UUID(0, 0);
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private final Path trace;
+    private final double speed;
+    private final int loadTicks;
+    private final long drainTicks;
+    private final Map<String, Object> overrides;
+    private final Samples tickNanos = new Samples();
+    private final Samples signalNanos = new Samples();
+    private final Samples firedPerTick = new Samples();
+
+    private SculkSignalPlugin plugin;
+    private HeadlessBackend backend;
+    private SimulatedWorlds worlds;
+    private long records;
+    private long signals;
+    private long missingSources;
+    private long topologyChanges;
+
+    private TraceSimulator(Path trace, double speed, int loadTicks, long drainTicks, Map<String, Object> overrides) {
+        this.trace = trace;
+        this.speed = speed;
+        this.loadTicks = loadTicks;
+        this.drainTicks = drainTicks;
+        this.overrides = overrides;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: TraceSimulator <trace> [--speed=N] [--load-ticks=N] [--drain-ticks=N] " +
+                    "[config.path=value ...]");
+            System.exit(2);
+        }
+
+        double speed = 0;
+        int loadTicks = 2;
+        long drainTicks = 6000;
+        Map<String, Object> overrides = new LinkedHashMap<>();
+        for (int i = 1; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.startsWith("--speed=")) {
+                speed = Double.parseDouble(arg.substring("--speed=".length()));
+            } else if (arg.startsWith("--load-ticks=")) {
+                loadTicks = Integer.parseInt(arg.substring("--load-ticks=".length()));
+            } else if (arg.startsWith("--drain-ticks=")) {
+                drainTicks = Long.parseLong(arg.substring("--drain-ticks=".length()));
+            } else if (arg.indexOf('=') > 0) {
+                String value = arg.substring(arg.indexOf('=') + 1);
+                overrides.put(arg.substring(0, arg.indexOf('=')), parseValue(value));
+            } else {
+                System.err.println("Unknown argument: " + arg);
+                System.exit(2);
+            }
+        }
+
+        new TraceSimulator(Path.of(args[0]), speed, loadTicks, drainTicks, overrides).run();
+    }
+
+    private static Object parseValue(String value) {
+        if (value.equalsIgnoreCase("true") || value.equalsIgnoreCase("false")) {
+            return Boolean.parseBoolean(value);
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return value;
+        }
+    }
+
+    private void run() throws IOException {
+        plugin = HeadlessPlugin.create(overrides);
+        backend = (HeadlessBackend) plugin.getExecutionBackend();
+        worlds = new SimulatedWorlds(plugin, loadTicks);
+        worlds.install();
+
+        // Same order as onEnable, so the scheduler ticks before the chunk sweep
+        plugin.getSignalPropagator().start();
+        plugin.getChunkLoadManager().start();
+
+        SignalScheduler scheduler = plugin.getSignalPropagator().getScheduler();
+        long started = System.nanoTime();
+        long lastTraceTick = 0;
+        long tick = 0;
+        long idleTicks = 0;
+
+        try (TraceReader reader = new TraceReader(trace)) {
+            boolean more = reader.next();
+            while (more || (idleTicks < drainTicks && (scheduler.getPendingCount() > 0 || worlds.hasPendingLoads()))) {
+                long tickStart = System.nanoTime();
+                while (more && reader.getTick() <= tick) {
+                    apply(reader);
+                    lastTraceTick = reader.getTick();
+                    more = reader.next();
+                }
+
+                worlds.tick();
+                backend.tick();
+                tickNanos.add(System.nanoTime() - tickStart);
+                firedPerTick.add(scheduler.getFiredLastTick());
+
+                tick++;
+                if (!more) {
+                    idleTicks++;
+                }
+                if (speed > 0) {
+                    long due = started + (long) (tick * TICK_NANOS / speed);
+                    long wait = due - System.nanoTime();
+                    if (wait > 0) {
+                        LockSupport.parkNanos(wait);
+                    }
+                }
+            }
+        }
+
+        long elapsed = System.nanoTime() - started;
+        report(tick, lastTraceTick, elapsed);
+        plugin.getSignalPropagator().shutdown();
+    }
+
+    private void apply(TraceReader reader) {
+        records++;
+        NetworkRegistry registry = plugin.getNetworkRegistry();
+        String worldName = reader.getWorldName();
+        SculkNode node = registry.getSensorAt(worldName, reader.getX(), reader.getY(), reader.getZ());
+
+        switch (reader.getType()) {
+            case TraceRecorder.SENSOR -> {
+                topologyChanges++;
+                if (node == null) {
+                    Location location = new Location(worlds.get(worldName), reader.getX(), reader.getY(), reader.getZ());
+                    registry.registerSensor(new SculkNode(location, OWNER, reader.isCritical(), reader.getFrequencies()));
+                }
+            }
+            case TraceRecorder.REMOVE -> {
+                topologyChanges++;
+                if (node != null) {
+                    registry.unregisterSensor(node.getLocation());
+                }
+            }
+            case TraceRecorder.FLAGS -> {
+                topologyChanges++;
+                if (node != null) {
+                    registry.setSensorCritical(node, reader.isCritical());
+                    registry.setSensorFrequencies(node, reader.getFrequencies());
+                }
+            }
+            case TraceRecorder.SIGNAL -> {
+                signals++;
+                if (node == null) {
+                    missingSources++; // Sensor removed, or a trace from before paged-in sensors were recorded
+                    return;
+                }
+                long start = System.nanoTime();
+                plugin.getSignalPropagator().propagateSignal(node, reader.getSignalStrength(), reader.getFrequency(),
+                        reader.getMaxHops(), reader.getAttenuation());
+                signalNanos.add(System.nanoTime() - start);
+            }
+            default -> {
+            }
+        }
+    }
+
+    private void report(long ticks, long traceTicks, long elapsedNanos) {
+        NetworkRegistry.NetworkStats network = plugin.getNetworkRegistry().getNetworkStats();
+        SignalScheduler scheduler = plugin.getSignalPropagator().getScheduler();
+        BroadcastPlanCache.CacheStats cache = plugin.getSignalPropagator().getPlanCacheStats();
+        ChunkLoadManager.PrefetchStats prefetch = plugin.getChunkLoadManager().getPrefetchStats();
+        ChunkLoadManager.TicketStats tickets = plugin.getChunkLoadManager().getTicketStats();
+        ChunkLoadQueue.QueueStats queue = plugin.getChunkLoadManager().getLoadQueueStats();
+        ChunkOutbox.OutboxStats outbox = plugin.getSignalPropagator().getOutboxStats();
+        double elapsedMs = elapsedNanos / 1e6;
+
+        System.out.printf("Trace: %s, %d records over %d ticks (%.1f minutes of play)%n", trace, records, traceTicks,
+                traceTicks / 1200.0);
+        System.out.printf("Replay: %d ticks in %.0f ms, %.1fx real time%n", ticks, elapsedMs,
+                ticks * 50.0 / Math.max(elapsedMs, 1e-3));
+        System.out.println("Network: " + network);
+        System.out.printf("Events: %d sensor changes, %d signals (%d from sensors not in the trace), %d unheard%n",
+                topologyChanges, signals, missingSources, plugin.getSignalPropagator().getUnheardSignals());
+        System.out.println("Tick work (us): " + tickNanos.describe(1e3));
+        System.out.println("Signal routing (us): " + signalNanos.describe(1e3));
+        System.out.printf("Activations: %d delivered, %d merged, %d still pending; fired per tick mean %.1f, max %d%n",
+                scheduler.getDeliveredActivations(), scheduler.getMergedActivations(), scheduler.getPendingCount(),
+                firedPerTick.mean(), firedPerTick.max());
+        System.out.printf("Chunk loads: %d loads, %d unloads, %d loaded at peak; %d ready in time (%.1f ticks ahead), " +
+                        "%d stalls (%.1f ticks)%n", worlds.getChunkLoads(), worlds.getChunkUnloads(),
+                worlds.getPeakLoadedChunks(), prefetch.readyInTime, prefetch.getAverageLeadTicks(), prefetch.stalls,
+                prefetch.getAverageStallTicks());
+        System.out.printf("Chunk tickets: %d evicted, %d refused, %d expired, %d reloaded; load queue %.1f ticks " +
+                        "avg wait, %d late%n", tickets.evictions, tickets.refused, tickets.expired, tickets.reloads,
+                queue.getAverageWaitTicks(), queue.late);
+        System.out.println("Plan cache: " + cache);
+        if (outbox.deferred > 0) {
+            System.out.printf("Held signals: %d deferred, %d applied, %d superseded, %d dropped, %d still held%n",
+                    outbox.deferred, outbox.applied, outbox.collapsed, outbox.dropped, outbox.pending);
+        }
+    }
+
+    /**
+     * Growable list of samples, sorted once for percentiles
+     */
+    private static final class Samples {
+        private long[] values = new long[1024];
+        private int size;
+        private boolean sorted;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size << 1);
+            }
+            values[size++] = value;
+            sorted = false;
+        }
+
+        long percentile(double p) {
+            if (size == 0) {
+                return 0;
+            }
+            if (!sorted) {
+                Arrays.sort(values, 0, size);
+                sorted = true;
+            }
+            return values[(int) Math.max(0, Math.min(size - 1, Math.ceil(p / 100 * size) - 1))];
+        }
+
+        long max() {
+            return percentile(100);
+        }
+
+        double mean() {
+            long total = 0;
+            for (int i = 0; i < size; i++) {
+                total += values[i];
+            }
+            return size == 0 ? 0 : (double) total / size;
+        }
+
+        String describe(double unit) {
+            return String.format("n=%d mean %.1f, p50 %.1f, p90 %.1f, p99 %.1f, p99.9 %.1f, max %.1f", size,
+                    mean() / unit, percentile(50) / unit, percentile(90) / unit, percentile(99) / unit,
+                    percentile(99.9) / unit, max() / unit);
+        }
+    }
+}
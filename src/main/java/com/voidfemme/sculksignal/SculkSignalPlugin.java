@@ -3,8 +3,12 @@ package com.sculksignal;
 import com.sculksignal.commands.SculkSignalCommands;
 import com.sculksignal.config.SculkSignalConfig;
 import com.sculksignal.network.NetworkRegistry;
+import com.sculksignal.network.SignalPropagator;
 import com.sculksignal.chunk.ChunkLoadManager;
+import com.sculksignal.listeners.DeferredDeliveryListener;
+import com.sculksignal.listeners.RegionPagingListener;
 import com.sculksignal.listeners.SculkSensorListener;
+import com.sculksignal.scheduler.ExecutionBackend;
 import com.sculksignal.storage.NetworkDataStorage;
 
 import org.bukkit.plugin.java.JavaPlugin;
@@ -12,23 +16,32 @@ import org.bukkit.plugin.java.JavaPlugin;
 public class SculkSignalPlugin extends JavaPlugin {
     
     private SculkSignalConfig config;
+    private ExecutionBackend executionBackend;
     private NetworkRegistry networkRegistry;
     private ChunkLoadManager chunkLoadManager;
     private NetworkDataStorage dataStorage;
+    private SignalPropagator signalPropagator;
     
     @Override
     public void onEnable() {
         // Initialize configuration
         saveDefaultConfig();
         this.config = new SculkSignalConfig(this);
+        this.executionBackend = ExecutionBackend.create(this, config.getSchedulerBackend());
         
         // Initialize core components
         this.dataStorage = new NetworkDataStorage(this);
         this.networkRegistry = new NetworkRegistry(this);
         this.chunkLoadManager = new ChunkLoadManager(this);
+        this.signalPropagator = new SignalPropagator(this);
+        signalPropagator.start();
+        chunkLoadManager.start();
         
         // Register listeners
         getServer().getPluginManager().registerEvents(new SculkSensorListener(this), this);
+        getServer().getPluginManager().registerEvents(new RegionPagingListener(dataStorage.getRegionStore(),
+                signalPropagator.getScheduler()), this);
+        getServer().getPluginManager().registerEvents(new DeferredDeliveryListener(signalPropagator), this);
         
         // Register commands
         getCommand("sculksignal").setExecutor(new SculkSignalCommands(this));
@@ -36,7 +49,7 @@ public class SculkSignalPlugin extends JavaPlugin {
         // Load saved network data
         dataStorage.loadNetworkData();
         
-        getLogger().info("SculkSignal plugin enabled!");
+        getLogger().info("SculkSignal plugin enabled with the " + executionBackend.getName() + " scheduler!");
     }
     
     @Override
@@ -46,6 +59,11 @@ public class SculkSignalPlugin extends JavaPlugin {
             dataStorage.saveNetworkData();
         }
         
+        // Stop delivering in-flight signals
+        if (signalPropagator != null) {
+            signalPropagator.shutdown();
+        }
+        
         // Clean up chunk loading
         if (chunkLoadManager != null) {
             chunkLoadManager.cleanup();
@@ -58,6 +76,10 @@ public class SculkSignalPlugin extends JavaPlugin {
         return config;
     }
     
+    public ExecutionBackend getExecutionBackend() {
+        return executionBackend;
+    }
+    
     public NetworkRegistry getNetworkRegistry() {
         return networkRegistry;
     }
@@ -69,4 +91,8 @@ public class SculkSignalPlugin extends JavaPlugin {
     public NetworkDataStorage getDataStorage() {
         return dataStorage;
     }
+    
+    public SignalPropagator getSignalPropagator() {
+        return signalPropagator;
+    }
 }
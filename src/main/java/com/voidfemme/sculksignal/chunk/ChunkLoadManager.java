@@ -3,176 +3,611 @@
 package com.sculksignal.chunk;
 
 import com.sculksignal.SculkSignalPlugin;
+import com.sculksignal.scheduler.ExecutionBackend;
 import com.sculksignal.util.ChunkCoordinate;
 
 import org.bukkit.Bukkit;
 import org.bukkit.Chunk;
 import org.bukkit.World;
-import org.bukkit.scheduler.BukkitRunnable;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.LinkedHashSet;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.logging.Level;
 
 /**
- * Manages chunk loading for signal propagation with automatic cleanup
+ * Manages chunk loading for signal propagation with plugin chunk tickets.
+ *
+ * Every signal in flight holds a reference on each chunk it has yet to pass
+ * through. A chunk whose references have all been released stays loaded for
+ * the unload delay in case another signal follows, and idle chunks are the
+ * first to go when the loaded chunk limit is reached, least recently used
+ * first. A chunk that is loaded again within the maximum load time of its
+ * idle window running out gets twice the window next time, up to that same
+ * limit, so busy chunks stop bouncing in and out.
+ *
+ * Unloads are only ever applied by the sweep on the engine thread, a few per
+ * tick. Other threads can only mark a chunk for unloading.
+ *
+ * New loads wait in a {@link ChunkLoadQueue}, ordered by when a signal first
+ * needs the chunk, and at most the configured number start each tick. They
+ * run through Paper's asynchronous chunk API so disk I/O never stalls the
+ * tick. Work that needs a chunk before its load has completed is parked on
+ * the ticket and run when it does. Engine thread only; the chunk tickets
+ * themselves are added and removed on the thread that owns the chunk.
  */
 public class ChunkLoadManager {
 
+    private static final long HELD_CHECK_TICKS = 20;
+
     private final SculkSignalPlugin plugin;
-    private final Map<ChunkCoordinate, LoadedChunkInfo> loadedChunks;
+    private final Map<ChunkCoordinate, ChunkTicket> tickets;
+    // Loaded chunks nobody holds, least recently used first
+    private final LinkedHashMap<ChunkCoordinate, ChunkTicket> idleTickets;
+    private final ChunkLoadQueue loadQueue;
+    // Unload marks from any thread, moved to pendingUnloads by the sweep
+    private final Queue<ChunkCoordinate> unloadMarks;
+    private final Set<ChunkCoordinate> pendingUnloads;
+    // Chunks unloaded lately and the idle window they had
+    private final LinkedHashMap<ChunkCoordinate, RecentUnload> recentUnloads;
+    private ExecutionBackend.Task sweepTask;
+    private int loadingCount;
+    private int unloadsLastTick;
+
+    // Prefetch and ticket metrics
+    private long loadRequests;
+    private long readyInTime;
+    private long leadTicksTotal;
+    private long stalls;
+    private long stallTicksTotal;
+    private long evictions;
+    private long refused;
+    private long expired;
+    private long reloads;
 
     public ChunkLoadManager(SculkSignalPlugin plugin) {
         this.plugin = plugin;
-        this.loadedChunks = new ConcurrentHashMap<>();
+        this.tickets = new HashMap<>();
+        this.idleTickets = new LinkedHashMap<>();
+        this.loadQueue = new ChunkLoadQueue();
+        this.unloadMarks = new ConcurrentLinkedQueue<>();
+        this.pendingUnloads = new LinkedHashSet<>();
+        this.recentUnloads = new LinkedHashMap<>();
+    }
+
+    private static final class RecentUnload {
+        final long tick;
+        final long idleWindow;
+
+        RecentUnload(long tick, long idleWindow) {
+            this.tick = tick;
+            this.idleWindow = idleWindow;
+        }
     }
 
     /**
-     * Load a chunk by world name and coordinates
+     * A plugin chunk ticket on one chunk, shared by every signal that needs it
      */
-    public void loadChunk(String worldName, int chunkX, int chunkZ) {
-        World world = Bukkit.getWorld(worldName);
-        if (world == null) {
-            plugin.getLogger().warning("World not found: " + worldName);
+    public static final class ChunkTicket {
+        private final ChunkCoordinate coord;
+        private Chunk chunk; // Null while queued or loading
+        private boolean queued;
+        private int references;
+        private long lastUsedTick;
+        private long idleWindow;
+        private long readyTick;
+        private boolean leadRecorded;
+        private boolean closed;
+
+        // Actions waiting for the load, and the references they hold
+        private List<Runnable> waiters;
+        private long[] deferredAt;
+        private int waiterReferences;
+
+        private ChunkTicket(ChunkCoordinate coord) {
+            this.coord = coord;
+        }
+
+        private void defer(Runnable action, long tick) {
+            if (waiters == null) {
+                waiters = new ArrayList<>(2);
+                deferredAt = new long[2];
+            } else if (waiters.size() == deferredAt.length) {
+                deferredAt = Arrays.copyOf(deferredAt, deferredAt.length << 1);
+            }
+            deferredAt[waiters.size()] = tick;
+            waiters.add(action);
+        }
+    }
+
+    /**
+     * Start the task that starts queued loads, applies unloads and expires
+     * forgotten references
+     */
+    public void start() {
+        if (sweepTask != null) {
             return;
         }
 
-        loadChunk(world.getChunkAt(chunkX, chunkZ));
+        sweepTask = plugin.getExecutionBackend().runRepeating(this::sweep, 1, 1);
     }
 
     /**
-     * Load a chunk with automatic unload scheduling
+     * Take a reference on a chunk a signal needs by the given tick, queueing
+     * a load if it is not loaded yet. Returns null if the chunk cannot be
+     * loaded because its world is missing or every loaded chunk is in use.
      */
-    public void loadChunk(Chunk chunk) {
-        ChunkCoordinate coord = new ChunkCoordinate(chunk);
+    public ChunkTicket acquire(ChunkCoordinate coord, long deadlineTick) {
+        long now = currentTick();
+        ChunkTicket ticket = tickets.get(coord);
+        if (ticket != null) {
+            if (ticket.references++ == 0) {
+                idleTickets.remove(coord);
+            }
+            ticket.lastUsedTick = now;
+            if (ticket.queued) {
+                loadQueue.offer(coord, deadlineTick, now);
+            }
+            return ticket;
+        }
 
-        if (loadedChunks.size() >= plugin.getPluginConfig().getMaxLoadedChunks()) {
-            plugin.getLogger().warning("Maximum loaded chunks reached (" +
-                    plugin.getPluginConfig().getMaxLoadedChunks() + "), cannot load more");
+        World world = Bukkit.getWorld(coord.getWorldName());
+        if (world == null) {
+            plugin.getLogger().warning("World not found: " + coord.getWorldName());
+            return null;
+        }
+
+        if (tickets.size() >= plugin.getPluginConfig().getMaxLoadedChunks() && !evictIdle()) {
+            refused++;
+            if (plugin.getPluginConfig().isDebugEnabled()) {
+                plugin.getLogger().warning("Maximum loaded chunks reached (" +
+                        plugin.getPluginConfig().getMaxLoadedChunks() + ") and all are in use, cannot load " + coord);
+            }
+            return null;
+        }
+
+        ticket = new ChunkTicket(coord);
+        ticket.references = 1;
+        ticket.lastUsedTick = now;
+        ticket.idleWindow = idleWindowFor(coord, now);
+        ticket.queued = true;
+        tickets.put(coord, ticket);
+        loadQueue.offer(coord, deadlineTick, now);
+        return ticket;
+    }
+
+    /**
+     * Start a queued load once the budget allows
+     */
+    private void startLoad(ChunkCoordinate coord) {
+        ChunkTicket ticket = tickets.get(coord);
+        if (ticket == null || !ticket.queued) {
             return;
         }
 
-        LoadedChunkInfo info = loadedChunks.get(coord);
-        if (info != null) {
-            // Chunk already loaded, extend its lifetime
-            info.extendLifetime();
+        World world = Bukkit.getWorld(coord.getWorldName());
+        if (world == null) {
+            close(ticket);
             return;
         }
 
-        // Load the chunk
-        chunk.setForceLoaded(true);
-        info = new LoadedChunkInfo(chunk, System.currentTimeMillis());
-        loadedChunks.put(coord, info);
+        ticket.queued = false;
+        loadingCount++;
+        loadRequests++;
 
-        if (plugin.getPluginConfig().isDebugEnabled()) {
-            plugin.getLogger().info("Force loaded chunk: " + coord);
+        // The future completes on the thread that owns the chunk, straight away if it is already loaded
+        world.getChunkAtAsync(coord.getX(), coord.getZ())
+                .whenComplete((chunk, error) -> plugin.getSignalPropagator().getScheduler()
+                        .execute(() -> onChunkReady(ticket, chunk, error)));
+    }
+
+    /**
+     * Drop a reference taken with {@link #acquire}. The chunk is unloaded once
+     * it has gone unreferenced for the unload delay.
+     */
+    public void release(ChunkTicket ticket) {
+        if (ticket.closed || ticket.references == 0) {
+            return;
         }
 
-        // Schedule unload
-        scheduleUnload(coord, plugin.getPluginConfig().getMaxLoadTime());
+        ticket.lastUsedTick = currentTick();
+        if (--ticket.references == 0) {
+            if (ticket.chunk != null) {
+                idleTickets.put(ticket.coord, ticket);
+            } else if (ticket.queued) {
+                close(ticket); // Every signal that wanted it has passed before its turn came
+            }
+        }
     }
 
     /**
-     * Unload a specific chunk
+     * Run an action that needs a chunk: right away if the chunk is loaded,
+     * otherwise once its load completes. The action still runs if the chunk
+     * cannot be loaded, rather than losing the signal.
      */
-    public void unloadChunk(ChunkCoordinate coord) {
-        LoadedChunkInfo info = loadedChunks.remove(coord);
-        if (info != null) {
-            info.chunk.setForceLoaded(false);
+    public void runWhenLoaded(World world, int chunkX, int chunkZ, Runnable action) {
+        ChunkCoordinate coord = new ChunkCoordinate(world.getName(), chunkX, chunkZ);
+        long now = currentTick();
+        ChunkTicket ticket = tickets.get(coord);
+
+        if (ticket != null && ticket.chunk != null) {
+            if (!ticket.leadRecorded) {
+                // First use of a chunk we loaded: how far ahead of the wavefront it was ready
+                ticket.leadRecorded = true;
+                readyInTime++;
+                leadTicksTotal += now - ticket.readyTick;
+            }
+            touch(ticket, now);
+            action.run();
+            return;
+        }
+
+        if (ticket == null) {
+            if (world.isChunkLoaded(chunkX, chunkZ)) {
+                action.run();
+                return;
+            }
+
+            ticket = acquire(coord, now);
+            if (ticket == null) {
+                action.run();
+                return;
+            }
+            ticket.waiterReferences++;
+        } else if (ticket.queued) {
+            loadQueue.offer(coord, now, now); // Needed now, whatever it was queued for
+        }
+
+        stalls++;
+        ticket.defer(action, now);
+    }
+
+    private void onChunkReady(ChunkTicket ticket, Chunk chunk, Throwable error) {
+        if (ticket.closed) {
+            return; // Cleaned up while loading
+        }
+
+        loadingCount--;
+        long now = currentTick();
+        if (chunk != null) {
+            plugin.getExecutionBackend().runAtChunk(chunk.getWorld(), chunk.getX(), chunk.getZ(),
+                    () -> chunk.addPluginChunkTicket(plugin));
+            ticket.chunk = chunk;
+            ticket.readyTick = now;
+            ticket.leadRecorded = ticket.waiters != null; // Already late; counted as stalls
+            if (ticket.references == 0) {
+                ticket.lastUsedTick = now;
+                idleTickets.put(ticket.coord, ticket);
+            }
 
             if (plugin.getPluginConfig().isDebugEnabled()) {
-                plugin.getLogger().info("Unloaded chunk: " + coord);
+                plugin.getLogger().info("Loaded chunk: " + ticket.coord);
             }
+        } else {
+            plugin.getLogger().log(Level.WARNING, "Failed to load chunk " + ticket.coord, error);
+            tickets.remove(ticket.coord);
+            ticket.closed = true;
         }
+
+        if (ticket.waiters != null) {
+            List<Runnable> waiters = ticket.waiters;
+            for (int i = 0; i < waiters.size(); i++) {
+                stallTicksTotal += now - ticket.deferredAt[i];
+                waiters.get(i).run();
+            }
+            ticket.waiters = null;
+            ticket.deferredAt = null;
+        }
+
+        for (; ticket.waiterReferences > 0; ticket.waiterReferences--) {
+            release(ticket);
+        }
+    }
+
+    /**
+     * How long a newly ticketed chunk may sit idle before it is unloaded
+     */
+    private long idleWindowFor(ChunkCoordinate coord, long now) {
+        long unloadDelay = Math.max(plugin.getPluginConfig().getUnloadDelay(), 0);
+        long maxWindow = Math.max(plugin.getPluginConfig().getMaxLoadTime(), unloadDelay);
+        RecentUnload recent = recentUnloads.remove(coord);
+        if (recent == null || now - recent.tick > maxWindow) {
+            return unloadDelay;
+        }
+
+        // Needed again soon after it was unloaded; keep it longer this time
+        reloads++;
+        return Math.min(Math.max(recent.idleWindow, 1) << 1, maxWindow);
     }
 
     /**
-     * Schedule a chunk to be unloaded after the specified delay
+     * Move an idle chunk to the most recently used end
      */
-    private void scheduleUnload(ChunkCoordinate coord, long delayTicks) {
-        new BukkitRunnable() {
-            @Override
-            public void run() {
-                LoadedChunkInfo info = loadedChunks.get(coord);
-                if (info != null && info.shouldUnload()) {
-                    unloadChunk(coord);
+    private void touch(ChunkTicket ticket, long now) {
+        ticket.lastUsedTick = now;
+        if (ticket.references == 0) {
+            idleTickets.remove(ticket.coord);
+            idleTickets.put(ticket.coord, ticket);
+        }
+    }
+
+    /**
+     * Unload the least recently used idle chunk to make room
+     */
+    private boolean evictIdle() {
+        Iterator<ChunkTicket> iterator = idleTickets.values().iterator();
+        if (!iterator.hasNext()) {
+            return false;
+        }
+
+        ChunkTicket ticket = iterator.next();
+        iterator.remove();
+        unload(ticket, currentTick(), false);
+        evictions++;
+        return true;
+    }
+
+    private void sweep() {
+        long now = currentTick();
+
+        loadQueue.drain(Math.max(plugin.getPluginConfig().getChunkLoadsPerTick(), 1), now, this::startLoad);
+
+        // A held chunk no signal has touched for the maximum load time has a leaked reference
+        if (now % HELD_CHECK_TICKS == 0) {
+            long maxLoadTime = plugin.getPluginConfig().getMaxLoadTime();
+            for (ChunkTicket ticket : tickets.values()) {
+                if (ticket.references > 0 && ticket.chunk != null && now - ticket.lastUsedTick >= maxLoadTime &&
+                        pendingUnloads.add(ticket.coord)) {
+                    expired++;
                 }
             }
-        }.runTaskLater(plugin, delayTicks);
+        }
+
+        // Marked chunks go first, then idle chunks past their window, least recently used first
+        ChunkCoordinate mark;
+        while ((mark = unloadMarks.poll()) != null) {
+            pendingUnloads.add(mark);
+        }
+
+        int budget = Math.max(plugin.getPluginConfig().getChunkUnloadsPerTick(), 1);
+        int unloaded = 0;
+        Iterator<ChunkCoordinate> marks = pendingUnloads.iterator();
+        while (unloaded < budget && marks.hasNext()) {
+            ChunkTicket ticket = tickets.get(marks.next());
+            marks.remove();
+            if (ticket != null) {
+                idleTickets.remove(ticket.coord);
+                unload(ticket, now, false);
+                unloaded++;
+            }
+        }
+
+        Iterator<ChunkTicket> idle = idleTickets.values().iterator();
+        while (unloaded < budget && idle.hasNext()) {
+            ChunkTicket ticket = idle.next();
+            if (now - ticket.lastUsedTick >= ticket.idleWindow) {
+                idle.remove();
+                unload(ticket, now, true);
+                unloaded++;
+            }
+        }
+        unloadsLastTick = unloaded;
     }
 
     /**
-     * Get the number of currently loaded chunks
+     * Close a ticket. Chunks that outlived their idle window are remembered,
+     * so a quick reload can widen the window; evictions for room and marked
+     * or leaked tickets say nothing about the window being too short.
+     */
+    private void unload(ChunkTicket ticket, long now, boolean idleExpired) {
+        boolean wasLoaded = ticket.chunk != null;
+        close(ticket);
+        if (!wasLoaded || !idleExpired) {
+            return;
+        }
+
+        recentUnloads.put(ticket.coord, new RecentUnload(now, ticket.idleWindow));
+        int limit = Math.max(plugin.getPluginConfig().getMaxLoadedChunks(), 16) << 2;
+        Iterator<RecentUnload> oldest = recentUnloads.values().iterator();
+        while (recentUnloads.size() > limit) {
+            oldest.next();
+            oldest.remove();
+        }
+    }
+
+    private void close(ChunkTicket ticket) {
+        tickets.remove(ticket.coord);
+        ticket.closed = true;
+        ticket.references = 0;
+        if (ticket.chunk != null) {
+            Chunk chunk = ticket.chunk;
+            plugin.getExecutionBackend().runAtChunk(chunk.getWorld(), chunk.getX(), chunk.getZ(),
+                    () -> chunk.removePluginChunkTicket(plugin));
+        } else if (ticket.queued) {
+            loadQueue.remove(ticket.coord);
+            ticket.queued = false;
+        } else {
+            loadingCount--;
+        }
+
+        // Anything still waiting on the load goes ahead without it
+        if (ticket.waiters != null) {
+            List<Runnable> waiters = ticket.waiters;
+            ticket.waiters = null;
+            waiters.forEach(Runnable::run);
+        }
+
+        if (plugin.getPluginConfig().isDebugEnabled()) {
+            plugin.getLogger().info("Unloaded chunk: " + ticket.coord);
+        }
+    }
+
+    private long currentTick() {
+        return plugin.getSignalPropagator().getScheduler().getCurrentTick();
+    }
+
+    /**
+     * Mark a chunk to be unloaded, whoever still holds it. Safe from any
+     * thread; the unload is applied by the sweep on the engine thread.
+     */
+    public void unloadChunk(ChunkCoordinate coord) {
+        unloadMarks.add(coord);
+    }
+
+    /**
+     * Get the number of chunks this manager holds tickets on, including ones still loading
      */
     public int getLoadedChunkCount() {
-        return loadedChunks.size();
+        return tickets.size();
     }
 
     /**
-     * Check if a chunk is currently force-loaded by this manager
+     * Number of chunk loads requested but not yet completed
+     */
+    public int getPendingLoadCount() {
+        return loadingCount;
+    }
+
+    /**
+     * Number of loaded chunks no signal currently holds
+     */
+    public int getIdleChunkCount() {
+        return idleTickets.size();
+    }
+
+    /**
+     * Check if a chunk is currently loaded and ticketed by this manager
      */
     public boolean isChunkLoaded(ChunkCoordinate coord) {
-        return loadedChunks.containsKey(coord);
+        ChunkTicket ticket = tickets.get(coord);
+        return ticket != null && ticket.chunk != null;
+    }
+
+    public PrefetchStats getPrefetchStats() {
+        return new PrefetchStats(loadRequests, loadingCount, readyInTime, leadTicksTotal,
+                stalls, stallTicksTotal);
+    }
+
+    public ChunkLoadQueue.QueueStats getLoadQueueStats() {
+        return loadQueue.getStats();
+    }
+
+    public TicketStats getTicketStats() {
+        return new TicketStats(tickets.size(), idleTickets.size(), pendingUnloads.size() + unloadMarks.size(),
+                unloadsLastTick, evictions, refused, expired, reloads);
     }
 
     /**
-     * Clean up all loaded chunks (called on plugin disable)
+     * Forget every ticket (called on plugin disable). Nothing is scheduled:
+     * a disabled plugin may not queue work on Folia's region schedulers, and
+     * the server drops a disabled plugin's chunk tickets itself. Signals
+     * still waiting on a load are dropped with them.
      */
     public void cleanup() {
-        for (LoadedChunkInfo info : loadedChunks.values()) {
-            info.chunk.setForceLoaded(false);
+        if (sweepTask != null) {
+            sweepTask.cancel();
+            sweepTask = null;
+        }
+
+        for (ChunkTicket ticket : tickets.values()) {
+            ticket.closed = true;
+            ticket.references = 0;
+            ticket.queued = false;
+            ticket.waiters = null;
         }
-        loadedChunks.clear();
+        tickets.clear();
+        idleTickets.clear();
+        loadQueue.clear();
+        unloadMarks.clear();
+        pendingUnloads.clear();
+        recentUnloads.clear();
+        loadingCount = 0;
 
-        plugin.getLogger().info("Cleaned up all force-loaded chunks");
+        plugin.getLogger().info("Dropped all plugin chunk tickets");
     }
 
     /**
-     * Run periodic cleanup to remove chunks that have exceeded their lifetime
+     * How far ahead of the signal chunks were loaded, and how often a signal
+     * had to wait for one
      */
-    public void runPeriodicCleanup() {
-        new BukkitRunnable() {
-            @Override
-            public void run() {
-                loadedChunks.entrySet().removeIf(entry -> {
-                    LoadedChunkInfo info = entry.getValue();
-                    if (info.shouldUnload()) {
-                        info.chunk.setForceLoaded(false);
+    public static class PrefetchStats {
+        public final long requests;
+        public final int pending;
+        public final long readyInTime;
+        public final long leadTicksTotal;
+        public final long stalls;
+        public final long stallTicksTotal;
+
+        public PrefetchStats(long requests, int pending, long readyInTime, long leadTicksTotal,
+                             long stalls, long stallTicksTotal) {
+            this.requests = requests;
+            this.pending = pending;
+            this.readyInTime = readyInTime;
+            this.leadTicksTotal = leadTicksTotal;
+            this.stalls = stalls;
+            this.stallTicksTotal = stallTicksTotal;
+        }
 
-                        if (plugin.getPluginConfig().isDebugEnabled()) {
-                            plugin.getLogger().info("Periodic cleanup unloaded chunk: " + entry.getKey());
-                        }
+        /**
+         * Average ticks between a prefetched chunk becoming ready and its first use
+         */
+        public double getAverageLeadTicks() {
+            return readyInTime == 0 ? 0.0 : (double) leadTicksTotal / readyInTime;
+        }
 
-                        return true;
-                    }
-                    return false;
-                });
-            }
-        }.runTaskTimerAsynchronously(plugin, 20 * 60, 20 * 60); // Run every minute
+        /**
+         * Average ticks an activation waited for its chunk
+         */
+        public double getAverageStallTicks() {
+            return stalls == 0 ? 0.0 : (double) stallTicksTotal / stalls;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("PrefetchStats{requests=%d, pending=%d, inTime=%d, avgLead=%.1f, stalls=%d, avgStall=%.1f}",
+                    requests, pending, readyInTime, getAverageLeadTicks(), stalls, getAverageStallTicks());
+        }
     }
 
     /**
-     * Information about a loaded chunk
+     * Chunk tickets held now, unloads waiting to be applied, and how often
+     * the loaded chunk limit got in the way
      */
-    private static class LoadedChunkInfo {
-        final Chunk chunk;
-        long loadTime;
-        long lastExtended;
-
-        LoadedChunkInfo(Chunk chunk, long loadTime) {
-            this.chunk = chunk;
-            this.loadTime = loadTime;
-            this.lastExtended = loadTime;
-        }
+    public static class TicketStats {
+        public final int tickets;
+        public final int idle;
+        public final int pendingUnloads;
+        public final int unloadsLastTick;
+        public final long evictions;
+        public final long refused;
+        public final long expired;
+        public final long reloads;
 
-        void extendLifetime() {
-            this.lastExtended = System.currentTimeMillis();
+        public TicketStats(int tickets, int idle, int pendingUnloads, int unloadsLastTick,
+                           long evictions, long refused, long expired, long reloads) {
+            this.tickets = tickets;
+            this.idle = idle;
+            this.pendingUnloads = pendingUnloads;
+            this.unloadsLastTick = unloadsLastTick;
+            this.evictions = evictions;
+            this.refused = refused;
+            this.expired = expired;
+            this.reloads = reloads;
         }
 
-        boolean shouldUnload() {
-            long currentTime = System.currentTimeMillis();
-            long maxLifetime = 30000; // 30 seconds default max lifetime
-            return (currentTime - lastExtended) > maxLifetime;
+        @Override
+        public String toString() {
+            return String.format("TicketStats{tickets=%d, idle=%d, pendingUnloads=%d, unloadsLastTick=%d, " +
+                            "evictions=%d, refused=%d, expired=%d, reloads=%d}",
+                    tickets, idle, pendingUnloads, unloadsLastTick, evictions, refused, expired, reloads);
         }
     }
 }
@@ -0,0 +1,162 @@
+package com.sculksignal.chunk;
+
+import com.sculksignal.util.ChunkCoordinate;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+
+/**
+ * Chunk loads waiting for a slot in the per-tick load budget, earliest
+ * activation deadline first.
+ *
+ * Each chunk is queued once no matter how many signals need it; a later
+ * request with an earlier deadline moves it forward. Superseded heap entries
+ * are left in place and skipped when they surface.
+ * Not thread-safe; used from the server thread only.
+ */
+public class ChunkLoadQueue {
+
+    private final PriorityQueue<Entry> heap;
+    private final Map<ChunkCoordinate, Entry> queued;
+    private long sequence;
+
+    private long dispatched;
+    private long waitTicksTotal;
+    private long late;
+    private long saturatedTicks;
+    private int dispatchedLastTick;
+    private int lastBudget;
+
+    public ChunkLoadQueue() {
+        this.heap = new PriorityQueue<>(Comparator.comparingLong((Entry e) -> e.deadline)
+                .thenComparingLong(e -> e.sequence));
+        this.queued = new HashMap<>();
+    }
+
+    private static final class Entry {
+        final ChunkCoordinate coord;
+        final long deadline;
+        final long enqueuedTick;
+        final long sequence;
+
+        Entry(ChunkCoordinate coord, long deadline, long enqueuedTick, long sequence) {
+            this.coord = coord;
+            this.deadline = deadline;
+            this.enqueuedTick = enqueuedTick;
+            this.sequence = sequence;
+        }
+    }
+
+    /**
+     * Queue a chunk load needed by the given tick, or move an already queued
+     * one forward if this deadline is earlier
+     */
+    public void offer(ChunkCoordinate coord, long deadline, long currentTick) {
+        Entry existing = queued.get(coord);
+        if (existing != null && existing.deadline <= deadline) {
+            return;
+        }
+
+        long enqueuedTick = existing != null ? existing.enqueuedTick : currentTick;
+        Entry entry = new Entry(coord, deadline, enqueuedTick, sequence++);
+        queued.put(coord, entry);
+        heap.add(entry);
+    }
+
+    /**
+     * Drop a queued load that is no longer needed
+     */
+    public void remove(ChunkCoordinate coord) {
+        queued.remove(coord);
+    }
+
+    /**
+     * Hand up to {@code budget} loads to the loader, most urgent first. Returns
+     * the number dispatched.
+     */
+    public int drain(int budget, long currentTick, Consumer<ChunkCoordinate> loader) {
+        int count = 0;
+        while (count < budget && !heap.isEmpty()) {
+            Entry entry = heap.poll();
+            if (queued.get(entry.coord) != entry) {
+                continue; // Superseded or removed
+            }
+
+            queued.remove(entry.coord);
+            waitTicksTotal += currentTick - entry.enqueuedTick;
+            if (currentTick > entry.deadline) {
+                late++;
+            }
+            count++;
+            loader.accept(entry.coord);
+        }
+
+        // Shed superseded entries so the heap cannot grow without bound
+        if (heap.size() > (queued.size() << 1) + 64) {
+            heap.clear();
+            heap.addAll(queued.values());
+        }
+
+        dispatched += count;
+        dispatchedLastTick = count;
+        lastBudget = budget;
+        if (count == budget && !queued.isEmpty()) {
+            saturatedTicks++;
+        }
+        return count;
+    }
+
+    public int size() {
+        return queued.size();
+    }
+
+    public void clear() {
+        heap.clear();
+        queued.clear();
+    }
+
+    public QueueStats getStats() {
+        return new QueueStats(queued.size(), dispatchedLastTick, lastBudget, dispatched,
+                waitTicksTotal, late, saturatedTicks);
+    }
+
+    /**
+     * Queue depth, waiting time and use of the load budget
+     */
+    public static class QueueStats {
+        public final int depth;
+        public final int dispatchedLastTick;
+        public final int budget;
+        public final long dispatched;
+        public final long waitTicksTotal;
+        public final long late;
+        public final long saturatedTicks;
+
+        public QueueStats(int depth, int dispatchedLastTick, int budget, long dispatched,
+                          long waitTicksTotal, long late, long saturatedTicks) {
+            this.depth = depth;
+            this.dispatchedLastTick = dispatchedLastTick;
+            this.budget = budget;
+            this.dispatched = dispatched;
+            this.waitTicksTotal = waitTicksTotal;
+            this.late = late;
+            this.saturatedTicks = saturatedTicks;
+        }
+
+        /**
+         * Average ticks a load waited in the queue before it was started
+         */
+        public double getAverageWaitTicks() {
+            return dispatched == 0 ? 0.0 : (double) waitTicksTotal / dispatched;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("QueueStats{depth=%d, lastTick=%d/%d, dispatched=%d, avgWait=%.1f, late=%d, saturated=%d}",
+                    depth, dispatchedLastTick, budget, dispatched, getAverageWaitTicks(), late, saturatedTicks);
+        }
+    }
+}
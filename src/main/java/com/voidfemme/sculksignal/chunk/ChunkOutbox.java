@@ -0,0 +1,189 @@
+package com.sculksignal.chunk;
+
+import com.sculksignal.network.SculkNode;
+import com.sculksignal.util.ChunkCoordinate;
+import com.sculksignal.util.LongHashMap;
+import com.sculksignal.util.PackedBlockPos;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Signals held for sensors in unloaded chunks until those chunks load.
+ *
+ * Each chunk with held signals has a small outbox of packed sensor positions
+ * and strengths. A sensor appears at most once per outbox: a later signal
+ * replaces the strength of an earlier one, so only the latest state is
+ * applied when the chunk loads. Entries are keyed by position rather than
+ * node so they survive the sensor's region being paged out in between.
+ * Not thread-safe; used from the server thread only.
+ */
+public class ChunkOutbox {
+
+    private static final int INITIAL_CAPACITY = 4;
+
+    private final Map<String, LongHashMap<Outbox>> outboxes;
+    private int pending;
+
+    private long deferred;
+    private long collapsed;
+    private long applied;
+    private long dropped;
+
+    public ChunkOutbox() {
+        this.outboxes = new HashMap<>();
+    }
+
+    /**
+     * Receives the held signals of a chunk when they are applied
+     */
+    @FunctionalInterface
+    public interface Delivery {
+        /**
+         * Apply a signal to the sensor at the packed position. Returns false if
+         * there is no longer a sensor there.
+         */
+        boolean deliver(long packedPosition, int signalStrength);
+    }
+
+    private static final class Outbox {
+        long[] positions = new long[INITIAL_CAPACITY];
+        int[] strengths = new int[INITIAL_CAPACITY];
+        int size;
+    }
+
+    /**
+     * Hold a signal for a sensor until its chunk loads, replacing any signal
+     * already held for it
+     */
+    public void defer(SculkNode node, int signalStrength) {
+        LongHashMap<Outbox> chunks = outboxes.computeIfAbsent(node.getWorldName(), name -> new LongHashMap<>());
+        long chunkKey = ChunkCoordinate.pack(node.getChunkX(), node.getChunkZ());
+        Outbox outbox = chunks.get(chunkKey);
+        if (outbox == null) {
+            outbox = new Outbox();
+            chunks.put(chunkKey, outbox);
+        }
+
+        deferred++;
+        long position = PackedBlockPos.pack((int) Math.floor(node.getX()), (int) Math.floor(node.getY()),
+                (int) Math.floor(node.getZ()));
+        for (int i = 0; i < outbox.size; i++) {
+            if (outbox.positions[i] == position) {
+                outbox.strengths[i] = signalStrength;
+                collapsed++;
+                return;
+            }
+        }
+
+        if (outbox.size == outbox.positions.length) {
+            outbox.positions = Arrays.copyOf(outbox.positions, outbox.size << 1);
+            outbox.strengths = Arrays.copyOf(outbox.strengths, outbox.size << 1);
+        }
+        outbox.positions[outbox.size] = position;
+        outbox.strengths[outbox.size++] = signalStrength;
+        pending++;
+    }
+
+    /**
+     * Whether any signals are held for the chunk
+     */
+    public boolean hasPending(String worldName, int chunkX, int chunkZ) {
+        LongHashMap<Outbox> chunks = outboxes.get(worldName);
+        return chunks != null && chunks.containsKey(ChunkCoordinate.pack(chunkX, chunkZ));
+    }
+
+    /**
+     * Empty a chunk's outbox, handing each held signal to the delivery.
+     * Returns the number of signals applied.
+     */
+    public int drain(String worldName, int chunkX, int chunkZ, Delivery delivery) {
+        LongHashMap<Outbox> chunks = outboxes.get(worldName);
+        if (chunks == null) {
+            return 0;
+        }
+
+        Outbox outbox = chunks.remove(ChunkCoordinate.pack(chunkX, chunkZ));
+        if (outbox == null) {
+            return 0;
+        }
+        if (chunks.isEmpty()) {
+            outboxes.remove(worldName);
+        }
+
+        pending -= outbox.size;
+        int count = 0;
+        for (int i = 0; i < outbox.size; i++) {
+            if (delivery.deliver(outbox.positions[i], outbox.strengths[i])) {
+                count++;
+            } else {
+                dropped++;
+            }
+        }
+        applied += count;
+        return count;
+    }
+
+    /**
+     * Drop every signal held for a world
+     */
+    public void clearWorld(String worldName) {
+        LongHashMap<Outbox> chunks = outboxes.remove(worldName);
+        if (chunks == null) {
+            return;
+        }
+
+        for (int slot = 0; slot < chunks.capacity(); slot++) {
+            Outbox outbox = chunks.valueAt(slot);
+            if (outbox != null) {
+                pending -= outbox.size;
+                dropped += outbox.size;
+            }
+        }
+    }
+
+    public void clear() {
+        outboxes.clear();
+        pending = 0;
+    }
+
+    public boolean isEmpty() {
+        return pending == 0;
+    }
+
+    public OutboxStats getStats() {
+        int chunks = 0;
+        for (LongHashMap<Outbox> worldChunks : outboxes.values()) {
+            chunks += worldChunks.size();
+        }
+        return new OutboxStats(chunks, pending, deferred, collapsed, applied, dropped);
+    }
+
+    /**
+     * Signals held for unloaded chunks and what became of them
+     */
+    public static class OutboxStats {
+        public final int chunks;
+        public final int pending;
+        public final long deferred;
+        public final long collapsed;
+        public final long applied;
+        public final long dropped;
+
+        public OutboxStats(int chunks, int pending, long deferred, long collapsed, long applied, long dropped) {
+            this.chunks = chunks;
+            this.pending = pending;
+            this.deferred = deferred;
+            this.collapsed = collapsed;
+            this.applied = applied;
+            this.dropped = dropped;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("OutboxStats{chunks=%d, pending=%d, deferred=%d, collapsed=%d, applied=%d, dropped=%d}",
+                    chunks, pending, deferred, collapsed, applied, dropped);
+        }
+    }
+}
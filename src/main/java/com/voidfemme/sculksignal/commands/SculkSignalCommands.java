@@ -1,7 +1,18 @@
 package com.sculksignal.commands;
 
 import com.sculksignal.SculkSignalPlugin;
+import com.sculksignal.chunk.ChunkLoadManager;
+import com.sculksignal.chunk.ChunkLoadQueue;
+import com.sculksignal.chunk.ChunkOutbox;
+import com.sculksignal.network.BroadcastPlanCache;
+import com.sculksignal.network.ClusterGraph;
+import com.sculksignal.network.NetworkRegistry;
 import com.sculksignal.network.SculkNode;
+import com.sculksignal.network.WorldShard;
+import com.sculksignal.scheduler.SignalScheduler;
+import com.sculksignal.storage.NetworkJournal;
+import com.sculksignal.storage.RegionStore;
+import com.sculksignal.trace.TraceRecorder;
 
 import org.bukkit.Material;
 import org.bukkit.block.Block;
@@ -11,6 +22,11 @@ import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
 import org.bukkit.Location;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
 public class SculkSignalCommands implements CommandExecutor {
     
     private final SculkSignalPlugin plugin;
@@ -33,18 +49,38 @@ public class SculkSignalCommands implements CommandExecutor {
             return true;
         }
         
+        // The block is read here, on the thread that owns the player; the network is changed on the engine thread
+        Block targetBlock = player.getTargetBlockExact(10);
+        Location target = targetBlock != null && targetBlock.getType() == Material.CALIBRATED_SCULK_SENSOR
+                ? targetBlock.getLocation()
+                : null;
+        plugin.getSignalPropagator().getScheduler().execute(() -> dispatch(player, args, target));
+        
+        return true;
+    }
+    
+    private void dispatch(Player player, String[] args, Location target) {
         switch (args[0].toLowerCase()) {
             case "register":
-                registerSensor(player);
+                registerSensor(player, target);
                 break;
             case "unregister":
-                unregisterSensor(player);
+                unregisterSensor(player, target);
                 break;
             case "list":
                 listSensors(player);
                 break;
             case "info":
-                showSensorInfo(player);
+                showSensorInfo(player, target);
+                break;
+            case "critical":
+                toggleCritical(player, target);
+                break;
+            case "tune":
+                tuneSensor(player, args, target);
+                break;
+            case "stats":
+                showStats(player);
                 break;
             case "reload":
                 if (player.hasPermission("sculksignal.admin")) {
@@ -53,11 +89,16 @@ public class SculkSignalCommands implements CommandExecutor {
                     player.sendMessage("§cYou don't have permission to reload the config.");
                 }
                 break;
+            case "trace":
+                if (player.hasPermission("sculksignal.admin")) {
+                    trace(player, args);
+                } else {
+                    player.sendMessage("§cYou don't have permission to record traces.");
+                }
+                break;
             default:
                 showHelp(player);
         }
-        
-        return true;
     }
     
     private void showHelp(Player player) {
@@ -66,21 +107,21 @@ public class SculkSignalCommands implements CommandExecutor {
         player.sendMessage("§e/sculksignal unregister §7- Unregister the sensor you're looking at");
         player.sendMessage("§e/sculksignal list §7- List all registered sensors");
         player.sendMessage("§e/sculksignal info §7- Show info about the sensor you're looking at");
+        player.sendMessage("§e/sculksignal critical §7- Toggle whether signals load the chunk of the sensor you're looking at");
+        player.sendMessage("§e/sculksignal tune <frequency...|all> §7- Choose which vibration frequencies the sensor you're looking at receives");
+        player.sendMessage("§e/sculksignal stats §7- Show network and routing statistics");
         if (player.hasPermission("sculksignal.admin")) {
             player.sendMessage("§e/sculksignal reload §7- Reload the plugin configuration");
+            player.sendMessage("§e/sculksignal trace <start|stop> §7- Record signals and sensor changes for offline replay");
         }
     }
     
-    private void registerSensor(Player player) {
-        Block targetBlock = player.getTargetBlockExact(10);
-        
-        if (targetBlock == null || targetBlock.getType() != Material.CALIBRATED_SCULK_SENSOR) {
+    private void registerSensor(Player player, Location location) {
+        if (location == null) {
             player.sendMessage("§cYou must be looking at a calibrated sculk sensor to register it.");
             return;
         }
         
-        Location location = targetBlock.getLocation();
-        
         if (plugin.getNetworkRegistry().isRegistered(location)) {
             player.sendMessage("§cThis sensor is already registered.");
             return;
@@ -93,16 +134,12 @@ public class SculkSignalCommands implements CommandExecutor {
         player.sendMessage("§7Location: " + location.getBlockX() + ", " + location.getBlockY() + ", " + location.getBlockZ());
     }
     
-    private void unregisterSensor(Player player) {
-        Block targetBlock = player.getTargetBlockExact(10);
-        
-        if (targetBlock == null || targetBlock.getType() != Material.CALIBRATED_SCULK_SENSOR) {
+    private void unregisterSensor(Player player, Location location) {
+        if (location == null) {
             player.sendMessage("§cYou must be looking at a calibrated sculk sensor to unregister it.");
             return;
         }
         
-        Location location = targetBlock.getLocation();
-        
         if (!plugin.getNetworkRegistry().isRegistered(location)) {
             player.sendMessage("§cThis sensor is not registered.");
             return;
@@ -118,6 +155,93 @@ public class SculkSignalCommands implements CommandExecutor {
         player.sendMessage("§aCalibrated sculk sensor unregistered successfully!");
     }
     
+    private void toggleCritical(Player player, Location target) {
+        if (target == null) {
+            player.sendMessage("§cYou must be looking at a calibrated sculk sensor.");
+            return;
+        }
+        
+        SculkNode node = plugin.getNetworkRegistry().getSensor(target);
+        if (node == null) {
+            player.sendMessage("§cThis sensor is not registered.");
+            return;
+        }
+        
+        if (!node.getOwner().equals(player.getUniqueId()) && !player.hasPermission("sculksignal.admin")) {
+            player.sendMessage("§cYou can only change sensors you own.");
+            return;
+        }
+        
+        plugin.getNetworkRegistry().setSensorCritical(node, !node.isCritical());
+        if (node.isCritical()) {
+            player.sendMessage("§aSensor marked critical: signals to it will always load its chunk.");
+        } else {
+            player.sendMessage("§aSensor is no longer critical.");
+        }
+    }
+    
+    private void tuneSensor(Player player, String[] args, Location target) {
+        if (args.length < 2) {
+            player.sendMessage("§cUsage: /sculksignal tune <frequency...|all>");
+            return;
+        }
+        
+        if (target == null) {
+            player.sendMessage("§cYou must be looking at a calibrated sculk sensor.");
+            return;
+        }
+        
+        SculkNode node = plugin.getNetworkRegistry().getSensor(target);
+        if (node == null) {
+            player.sendMessage("§cThis sensor is not registered.");
+            return;
+        }
+        
+        if (!node.getOwner().equals(player.getUniqueId()) && !player.hasPermission("sculksignal.admin")) {
+            player.sendMessage("§cYou can only change sensors you own.");
+            return;
+        }
+        
+        int frequencies = 0;
+        if (!args[1].equalsIgnoreCase("all")) {
+            var supported = plugin.getPluginConfig().getSupportedFrequencies();
+            for (int i = 1; i < args.length; i++) {
+                int frequency;
+                try {
+                    frequency = Integer.parseInt(args[i]);
+                } catch (NumberFormatException e) {
+                    player.sendMessage("§cNot a frequency: " + args[i]);
+                    return;
+                }
+                if (!supported.contains(frequency)) {
+                    player.sendMessage("§cUnsupported frequency " + frequency + ". Supported: " + supported);
+                    return;
+                }
+                frequencies |= 1 << frequency;
+            }
+        }
+        
+        plugin.getNetworkRegistry().setSensorFrequencies(node, frequencies);
+        player.sendMessage("§aSensor now receives " + describeFrequencies(frequencies) + ".");
+    }
+    
+    private static String describeFrequencies(int frequencies) {
+        if (frequencies == 0) {
+            return "all frequencies";
+        }
+        
+        StringBuilder builder = new StringBuilder("frequency ");
+        for (int frequency = 1; frequency <= SculkNode.MAX_FREQUENCY; frequency++) {
+            if ((frequencies & (1 << frequency)) != 0) {
+                if (builder.length() > "frequency ".length()) {
+                    builder.append(", ");
+                }
+                builder.append(frequency);
+            }
+        }
+        return builder.toString();
+    }
+    
     private void listSensors(Player player) {
         var sensors = plugin.getNetworkRegistry().getAllSensors();
         
@@ -133,15 +257,12 @@ public class SculkSignalCommands implements CommandExecutor {
         });
     }
     
-    private void showSensorInfo(Player player) {
-        Block targetBlock = player.getTargetBlockExact(10);
-        
-        if (targetBlock == null || targetBlock.getType() != Material.CALIBRATED_SCULK_SENSOR) {
+    private void showSensorInfo(Player player, Location location) {
+        if (location == null) {
             player.sendMessage("§cYou must be looking at a calibrated sculk sensor.");
             return;
         }
         
-        Location location = targetBlock.getLocation();
         SculkNode node = plugin.getNetworkRegistry().getSensor(location);
         
         if (node == null) {
@@ -151,10 +272,119 @@ public class SculkSignalCommands implements CommandExecutor {
         
         player.sendMessage("§6=== Sensor Information ===");
         player.sendMessage("§eLocation: §7" + location.getBlockX() + ", " + location.getBlockY() + ", " + location.getBlockZ());
-        player.sendMessage("§eConnected Sensors: §7" + node.getConnectedSensors().size());
+        player.sendMessage("§eConnected Sensors: §7" + node.getConnectionCount());
+        player.sendMessage("§eCritical: §7" + (node.isCritical() ? "Yes" : "No"));
+        player.sendMessage("§eFrequencies: §7" + describeFrequencies(node.getFrequencies()));
         player.sendMessage("§eOwner: §7" + (node.getOwner().equals(player.getUniqueId()) ? "You" : "Another player"));
     }
     
+    private void showStats(Player player) {
+        NetworkRegistry.NetworkStats stats = plugin.getNetworkRegistry().getNetworkStats();
+        BroadcastPlanCache.CacheStats cache = plugin.getSignalPropagator().getPlanCacheStats();
+        
+        player.sendMessage("§6=== SculkSignal Statistics ===");
+        player.sendMessage("§eSensors: §7" + stats.totalSensors + " §eConnections: §7" + stats.totalConnections +
+                " §eChunks: §7" + stats.chunksWithSensors);
+        player.sendMessage("§eComponents: §7" + stats.components + " §eLargest: §7" + stats.largestComponent +
+                " §eIsolated: §7" + stats.isolatedSensors);
+        if (plugin.getNetworkRegistry().getShards().size() > 1) {
+            StringBuilder worlds = new StringBuilder();
+            for (WorldShard shard : plugin.getNetworkRegistry().getShards()) {
+                if (worlds.length() > 0) {
+                    worlds.append(", ");
+                }
+                worlds.append(shard.getWorldName()).append(' ').append(shard.getSensorCount());
+            }
+            player.sendMessage("§eSensors per world: §7" + worlds);
+        }
+        player.sendMessage("§ePlan cache: §7" + cache.entries + "/" + cache.maxEntries + " plans, " +
+                String.format("%.1f%%", cache.getHitRate() * 100) + " hit rate (" +
+                cache.hits + " hits, " + cache.misses + " misses, " + cache.evictions + " evictions)");
+        player.sendMessage("§ePlan cache memory: §7~" + (cache.estimatedBytes / 1024) + " KiB");
+        
+        SignalScheduler scheduler = plugin.getSignalPropagator().getScheduler();
+        player.sendMessage("§eActivations: §7" + scheduler.getDeliveredActivations() + " delivered, " +
+                scheduler.getMergedActivations() + " merged, " + scheduler.getPendingCount() + " pending, " +
+                plugin.getSignalPropagator().getUnheardSignals() + " signals with no tuned sensor");
+        player.sendMessage("§eScheduler: §7" + plugin.getExecutionBackend().getName());
+        ChunkLoadManager.TicketStats tickets = plugin.getChunkLoadManager().getTicketStats();
+        player.sendMessage("§eChunk tickets: §7" + tickets.tickets + " held (" + tickets.idle + " idle), " +
+                tickets.evictions + " evicted, " + tickets.refused + " refused, " + tickets.expired + " expired");
+        player.sendMessage("§eChunk unloads: §7" + tickets.pendingUnloads + " pending, " + tickets.unloadsLastTick +
+                " last tick, " + tickets.reloads + " reloaded soon after unloading");
+        ChunkLoadQueue.QueueStats queue = plugin.getChunkLoadManager().getLoadQueueStats();
+        player.sendMessage("§eChunk load queue: §7" + queue.depth + " queued, " + queue.dispatchedLastTick + "/" +
+                queue.budget + " loads last tick, " + String.format("%.1f", queue.getAverageWaitTicks()) +
+                " ticks avg wait, " + queue.late + " late, " + queue.saturatedTicks + " ticks at budget");
+        ChunkLoadManager.PrefetchStats prefetch = plugin.getChunkLoadManager().getPrefetchStats();
+        player.sendMessage("§eChunk prefetch: §7" + prefetch.requests + " loads (" + prefetch.pending + " pending), " +
+                prefetch.readyInTime + " ready in time " + String.format("(%.1f ticks ahead)", prefetch.getAverageLeadTicks()) +
+                ", " + prefetch.stalls + " stalls " + String.format("(%.1f ticks)", prefetch.getAverageStallTicks()));
+        ChunkOutbox.OutboxStats outbox = plugin.getSignalPropagator().getOutboxStats();
+        if (!plugin.getPluginConfig().isChunkLoadingEnabled() || outbox.pending > 0) {
+            player.sendMessage("§eHeld signals: §7" + outbox.pending + " in " + outbox.chunks + " unloaded chunks, " +
+                    outbox.applied + " applied, " + outbox.collapsed + " superseded, " + outbox.dropped + " dropped");
+        }
+        if (plugin.getPluginConfig().getClusterChunks() > 0) {
+            ClusterGraph.ClusterStats clusters = plugin.getNetworkRegistry().getClusterStats();
+            player.sendMessage("§eClusters: §7" + clusters.clusters + ", " + clusters.routes + " sparse routes, " +
+                    clusters.clustersCrossed + " crossed, " + clusters.clustersExpanded + " expanded, " +
+                    clusters.tableRebuilds + " rebuilt");
+        }
+        if (plugin.getPluginConfig().isAsyncRoutingEnabled()) {
+            player.sendMessage("§eAsync routes in flight: §7" + plugin.getSignalPropagator().getRoutesInFlight());
+        }
+        
+        NetworkJournal journal = plugin.getDataStorage().getJournal();
+        if (journal != null) {
+            player.sendMessage("§eJournal: §7" + (journal.getSize() / 1024) + " KiB, " +
+                    journal.getRecordsCommitted() + " records in " + journal.getCommitCount() + " commits, " +
+                    journal.getPendingCount() + " pending");
+        }
+
+        RegionStore regions = plugin.getDataStorage().getRegionStore();
+        if (regions.isPaging()) {
+            player.sendMessage("§eRegions: §7" + regions.getResidentRegionCount() + " resident of " +
+                    regions.getRegionCount() + " tracked, " + regions.getStubCount() + " stubs");
+        }
+    }
+    
+    private void trace(Player player, String[] args) {
+        String action = args.length > 1 ? args[1].toLowerCase() : "";
+        TraceRecorder recorder = plugin.getSignalPropagator().getTraceRecorder();
+        switch (action) {
+            case "start":
+                if (recorder != null) {
+                    player.sendMessage("§cAlready recording to " + recorder.getFile().getFileName() + ".");
+                    return;
+                }
+                
+                String name = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".sstrace";
+                Path file = plugin.getDataFolder().toPath().resolve("traces").resolve(name);
+                try {
+                    plugin.getSignalPropagator().startTrace(file);
+                    player.sendMessage("§aRecording trace to traces/" + name);
+                } catch (IOException e) {
+                    player.sendMessage("§cCould not start the trace: " + e.getMessage());
+                }
+                break;
+            case "stop":
+                recorder = plugin.getSignalPropagator().stopTrace();
+                if (recorder == null) {
+                    player.sendMessage("§cNo trace is being recorded.");
+                    return;
+                }
+                
+                player.sendMessage("§aTrace saved to traces/" + recorder.getFile().getFileName() + ": " +
+                        recorder.getRecordCount() + " records, " + (recorder.getBytesWritten() / 1024) + " KiB");
+                break;
+            default:
+                player.sendMessage(recorder != null
+                        ? "§7Recording to " + recorder.getFile().getFileName() + ", " + recorder.getRecordCount() + " records so far"
+                        : "§cUsage: /sculksignal trace <start|stop>");
+        }
+    }
+    
     private void reloadConfig(Player player) {
         plugin.reloadConfig();
         plugin.getPluginConfig().reload();
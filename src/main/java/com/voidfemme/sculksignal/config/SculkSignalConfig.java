@@ -20,6 +20,10 @@ public class SculkSignalConfig {
         this.config = plugin.getConfig();
     }
     
+    public boolean isChunkLoadingEnabled() {
+        return config.getBoolean("chunk-loading.enabled", true);
+    }
+    
     public int getMaxLoadTime() {
         return config.getInt("chunk-loading.max-load-time", 100);
     }
@@ -32,6 +36,18 @@ public class SculkSignalConfig {
         return config.getInt("chunk-loading.max-loaded-chunks", 50);
     }
     
+    public int getPrefetchHops() {
+        return config.getInt("chunk-loading.prefetch-hops", 3);
+    }
+    
+    public int getChunkLoadsPerTick() {
+        return config.getInt("chunk-loading.loads-per-tick", 4);
+    }
+    
+    public int getChunkUnloadsPerTick() {
+        return config.getInt("chunk-loading.unloads-per-tick", 8);
+    }
+    
     public int getDiscoveryRange() {
         return config.getInt("network.discovery-range", 32);
     }
@@ -40,10 +56,42 @@ public class SculkSignalConfig {
         return config.getBoolean("network.debug", false);
     }
     
+    public boolean isParallelRebuildEnabled() {
+        return config.getBoolean("network.parallel-rebuild", true);
+    }
+    
+    public int getRebuildParallelism() {
+        return config.getInt("network.rebuild-parallelism", 0);
+    }
+    
     public boolean isPersistNetworkEnabled() {
         return config.getBoolean("network.persist-network", true);
     }
     
+    public boolean isJournalEnabled() {
+        return config.getBoolean("network.journal", true);
+    }
+    
+    public int getJournalFlushIntervalMs() {
+        return config.getInt("network.journal-flush-interval-ms", 50);
+    }
+    
+    public int getJournalCompactSizeKb() {
+        return config.getInt("network.journal-compact-size-kb", 4096);
+    }
+    
+    public int getJournalCompactIntervalSeconds() {
+        return config.getInt("network.journal-compact-interval-seconds", 300);
+    }
+    
+    public boolean isLazyRegionsEnabled() {
+        return config.getBoolean("network.lazy-regions", false);
+    }
+    
+    public int getRegionIdleSeconds() {
+        return config.getInt("network.region-idle-seconds", 300);
+    }
+    
     public List<Integer> getSupportedFrequencies() {
         return config.getIntegerList("transmission.supported-frequencies");
     }
@@ -51,4 +99,36 @@ public class SculkSignalConfig {
     public int getPropagationDelay() {
         return config.getInt("transmission.propagation-delay", 5);
     }
+    
+    public int getPlanCacheSize() {
+        return config.getInt("transmission.plan-cache-size", 64);
+    }
+    
+    public int getMaxHops() {
+        return config.getInt("transmission.max-hops", 0);
+    }
+    
+    public int getAttenuationPerHop() {
+        return config.getInt("transmission.attenuation-per-hop", 0);
+    }
+    
+    public boolean isAsyncRoutingEnabled() {
+        return config.getBoolean("routing.async", false);
+    }
+    
+    public boolean isVirtualThreadRoutingEnabled() {
+        return config.getBoolean("routing.virtual-threads", true);
+    }
+    
+    public int getRoutingThreads() {
+        return config.getInt("routing.worker-threads", 2);
+    }
+    
+    public int getClusterChunks() {
+        return config.getInt("routing.cluster-chunks", 4);
+    }
+    
+    public String getSchedulerBackend() {
+        return config.getString("scheduler.backend", "auto");
+    }
 }
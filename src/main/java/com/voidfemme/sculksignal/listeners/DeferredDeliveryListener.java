@@ -0,0 +1,36 @@
+package com.sculksignal.listeners;
+
+import com.sculksignal.network.SignalPropagator;
+
+import org.bukkit.World;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.ChunkLoadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+
+/**
+ * Applies signals held for sensors in unloaded chunks once those chunks load
+ */
+public class DeferredDeliveryListener implements Listener {
+
+    private final SignalPropagator signalPropagator;
+
+    public DeferredDeliveryListener(SignalPropagator signalPropagator) {
+        this.signalPropagator = signalPropagator;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkLoad(ChunkLoadEvent event) {
+        World world = event.getWorld();
+        int chunkX = event.getChunk().getX();
+        int chunkZ = event.getChunk().getZ();
+        signalPropagator.getScheduler().execute(() -> signalPropagator.onChunkLoad(world, chunkX, chunkZ));
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onWorldUnload(WorldUnloadEvent event) {
+        World world = event.getWorld();
+        signalPropagator.getScheduler().execute(() -> signalPropagator.onWorldUnload(world));
+    }
+}
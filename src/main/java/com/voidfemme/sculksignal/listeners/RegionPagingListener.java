@@ -0,0 +1,50 @@
+package com.sculksignal.listeners;
+
+import com.sculksignal.scheduler.SignalScheduler;
+import com.sculksignal.storage.RegionStore;
+
+import org.bukkit.World;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.ChunkLoadEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+
+/**
+ * Pages network regions in and out of memory as their chunks load and unload.
+ * Chunk events can fire on a region thread, so the paging itself is handed
+ * to the engine thread.
+ */
+public class RegionPagingListener implements Listener {
+
+    private final RegionStore regionStore;
+    private final SignalScheduler scheduler;
+
+    public RegionPagingListener(RegionStore regionStore, SignalScheduler scheduler) {
+        this.regionStore = regionStore;
+        this.scheduler = scheduler;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkLoad(ChunkLoadEvent event) {
+        World world = event.getWorld();
+        int chunkX = event.getChunk().getX();
+        int chunkZ = event.getChunk().getZ();
+        scheduler.execute(() -> regionStore.onChunkLoad(world, chunkX, chunkZ));
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkUnload(ChunkUnloadEvent event) {
+        World world = event.getWorld();
+        int chunkX = event.getChunk().getX();
+        int chunkZ = event.getChunk().getZ();
+        scheduler.execute(() -> regionStore.onChunkUnload(world, chunkX, chunkZ));
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onWorldUnload(WorldUnloadEvent event) {
+        World world = event.getWorld();
+        scheduler.execute(() -> regionStore.onWorldUnload(world));
+    }
+}
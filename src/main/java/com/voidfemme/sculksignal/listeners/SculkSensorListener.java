@@ -6,6 +6,8 @@ import com.sculksignal.SculkSignalPlugin;
 import com.sculksignal.network.SculkNode;
 
 import org.bukkit.Material;
+import org.bukkit.block.Block;
+import org.bukkit.block.SculkSensor;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
 import org.bukkit.event.block.BlockRedstoneEvent;
@@ -18,28 +20,57 @@ public class SculkSensorListener implements Listener {
         this.plugin = plugin;
     }
 
+    /**
+     * BlockRedstoneEvent fires for every power change on the server, so the
+     * common case must stay cheap: rising edges only, then a bitset probe of
+     * the registered sensor positions before the block itself is touched.
+     * On Folia the event fires on the region thread, which cannot read the
+     * registry, so it probes the index's thread-safe column counts instead,
+     * then checks the block and hands the exact lookup and the signal to the
+     * engine thread.
+     */
     @EventHandler
     public void onSculkSensorActivate(BlockRedstoneEvent event) {
-        if (event.getBlock().getType() != Material.CALIBRATED_SCULK_SENSOR) {
-            return;
-        }
-
         // Only handle activation (new power > old power)
         if (event.getNewCurrent() <= event.getOldCurrent()) {
             return;
         }
 
-        SculkNode node = plugin.getNetworkRegistry().getSensor(event.getBlock().getLocation());
-        if (node == null) {
+        Block block = event.getBlock();
+        String worldName = block.getWorld().getName();
+        int x = block.getX();
+        int y = block.getY();
+        int z = block.getZ();
+        boolean engineThread = plugin.getExecutionBackend().isEngineThread();
+        if (engineThread
+                ? plugin.getNetworkRegistry().getSensorAt(worldName, x, y, z) == null
+                : !plugin.getNetworkRegistry().mayHaveSensorInColumn(worldName, x, z)) {
             return; // Not a registered sensor
         }
 
-        if (plugin.getPluginConfig().isDebugEnabled()) {
-            plugin.getLogger().info("Sculk sensor activated at " + node.getLocation() +
-                    " with signal strength " + event.getNewCurrent());
+        if (block.getType() != Material.CALIBRATED_SCULK_SENSOR) {
+            return; // Sensor replaced by another block without being unregistered
         }
 
-        // Use the SignalPropagator to handle the signal transmission
-        plugin.getSignalPropagator().propagateSignal(node, event.getNewCurrent());
+        // The frequency of the vibration that set the sensor off picks the channel
+        int frequency = block.getState(false) instanceof SculkSensor sensor
+                ? sensor.getLastVibrationFrequency()
+                : SculkNode.ANY_FREQUENCY;
+        int signalStrength = event.getNewCurrent();
+
+        plugin.getSignalPropagator().getScheduler().execute(() -> {
+            SculkNode node = plugin.getNetworkRegistry().getSensorAt(worldName, x, y, z);
+            if (node == null) {
+                return; // Not a registered sensor, or unregistered since
+            }
+
+            if (plugin.getPluginConfig().isDebugEnabled()) {
+                plugin.getLogger().info("Sculk sensor activated at " + node.getLocation() +
+                        " with signal strength " + signalStrength + " on frequency " + frequency);
+            }
+
+            // Use the SignalPropagator to handle the signal transmission
+            plugin.getSignalPropagator().propagateSignal(node, signalStrength, frequency);
+        });
     }
 }
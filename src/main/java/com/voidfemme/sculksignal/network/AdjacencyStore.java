@@ -0,0 +1,451 @@
+package com.sculksignal.network;
+
+import java.util.Arrays;
+
+/**
+ * Undirected sensor adjacency keyed by dense int node ids.
+ *
+ * Edges live in a compressed sparse row (CSR) base of two primitive arrays plus
+ * a small per-node overlay of edges added since the last compaction. Removing
+ * an edge tombstones it in place, so removing a node only touches its own
+ * neighbours. The overlay and tombstones are folded back into a fresh CSR base
+ * once enough changes pile up. Snapshots share the CSR base, which is copied
+ * before the next tombstone is written into it.
+ *
+ * Not thread-safe; the registry only mutates it from the server thread, and
+ * cursors must not be used across a mutation.
+ */
+public class AdjacencyStore implements SensorGraph {
+
+    private static final int TOMBSTONE = -1;
+    private static final int MIN_COMPACTION_THRESHOLD = 256;
+
+    // Node table
+    private SculkNode[] nodes;
+    private int[] freeIds;
+    private int freeCount;
+    private int highestId;
+
+    // CSR base: the neighbours of id are baseTargets[baseOffsets[id] .. baseOffsets[id + 1])
+    private int[] baseOffsets;
+    private int[] baseTargets;
+    private int baseNodeCount;
+    // A snapshot holds baseTargets, so it must be copied before it is written to
+    private boolean baseShared;
+
+    // Mutable overlay of edges added since the last compaction
+    private int[][] overlay;
+    private int[] overlaySizes;
+
+    private int[] degrees;
+    private int edgeCount;
+    private int pendingChanges;
+
+    private Observer observer;
+
+    public AdjacencyStore() {
+        this.nodes = new SculkNode[64];
+        this.freeIds = new int[16];
+        this.highestId = -1;
+        this.baseOffsets = new int[1];
+        this.baseTargets = new int[0];
+        this.overlay = new int[64][];
+        this.overlaySizes = new int[64];
+        this.degrees = new int[64];
+    }
+
+    /**
+     * Told about every change to the node table and edges, so derived
+     * structures can update incrementally
+     */
+    public interface Observer {
+        void onNodeAdded(int id);
+
+        /**
+         * Called while the node can still be looked up by id
+         */
+        void onNodeRemoved(int id);
+
+        void onEdgeChanged(int a, int b);
+
+        /**
+         * Every edge was replaced or removed at once
+         */
+        void onEdgesReset();
+    }
+
+    public void setObserver(Observer observer) {
+        this.observer = observer;
+    }
+
+    /**
+     * Give a node a dense id, reusing ids freed by {@link #release}
+     */
+    public int allocate(SculkNode node) {
+        int id;
+        if (freeCount > 0) {
+            id = freeIds[--freeCount];
+        } else {
+            id = ++highestId;
+            ensureCapacity(id + 1);
+        }
+        nodes[id] = node;
+        if (observer != null) {
+            observer.onNodeAdded(id);
+        }
+        return id;
+    }
+
+    /**
+     * Free a node's id. All of its edges must have been removed first.
+     */
+    public void release(int id) {
+        if (degrees[id] != 0) {
+            throw new IllegalStateException("Releasing node " + id + " with " + degrees[id] + " edges");
+        }
+        if (observer != null) {
+            observer.onNodeRemoved(id);
+        }
+
+        nodes[id] = null;
+        if (freeCount == freeIds.length) {
+            freeIds = Arrays.copyOf(freeIds, freeCount << 1);
+        }
+        freeIds[freeCount++] = id;
+    }
+
+    @Override
+    public SculkNode getNode(int id) {
+        return id >= 0 && id <= highestId ? nodes[id] : null;
+    }
+
+    /**
+     * One past the highest id ever handed out, for sizing per-id arrays
+     */
+    @Override
+    public int getIdBound() {
+        return highestId + 1;
+    }
+
+    @Override
+    public int getDegree(int id) {
+        return degrees[id];
+    }
+
+    /**
+     * Number of undirected edges
+     */
+    public int getEdgeCount() {
+        return edgeCount;
+    }
+
+    public boolean containsEdge(int a, int b) {
+        // Scan the endpoint with the smaller neighbour list
+        return degrees[a] <= degrees[b] ? containsDirected(a, b) : containsDirected(b, a);
+    }
+
+    /**
+     * Add an undirected edge. Returns false if it already existed.
+     */
+    public boolean addEdge(int a, int b) {
+        if (a == b || containsEdge(a, b)) {
+            return false;
+        }
+
+        appendOverlay(a, b);
+        appendOverlay(b, a);
+        edgeCount++;
+        onChanged();
+        if (observer != null) {
+            observer.onEdgeChanged(a, b);
+        }
+        return true;
+    }
+
+    /**
+     * Remove an undirected edge. Returns false if it did not exist.
+     */
+    public boolean removeEdge(int a, int b) {
+        if (!removeDirected(a, b)) {
+            return false;
+        }
+
+        removeDirected(b, a);
+        edgeCount--;
+        onChanged();
+        if (observer != null) {
+            observer.onEdgeChanged(a, b);
+        }
+        return true;
+    }
+
+    /**
+     * Remove every edge touching the node. Cost depends only on the degrees of
+     * the node and its neighbours.
+     */
+    public void removeAllEdges(int id) {
+        if (degrees[id] == 0) {
+            return;
+        }
+
+        NeighborCursor cursor = cursor();
+        cursor.reset(id);
+        for (int neighbor = cursor.next(); neighbor >= 0; neighbor = cursor.next()) {
+            removeDirected(neighbor, id);
+            edgeCount--;
+            if (observer != null) {
+                observer.onEdgeChanged(id, neighbor);
+            }
+        }
+
+        // Drop the node's own list wholesale
+        if (id < baseNodeCount) {
+            ownBase();
+            Arrays.fill(baseTargets, baseOffsets[id], baseOffsets[id + 1], TOMBSTONE);
+        }
+        overlaySizes[id] = 0;
+        overlay[id] = null;
+        degrees[id] = 0;
+        onChanged();
+    }
+
+    /**
+     * Remove every edge, keeping node ids
+     */
+    public void clearEdges() {
+        baseOffsets = new int[1];
+        baseTargets = new int[0];
+        baseNodeCount = 0;
+        baseShared = false;
+        Arrays.fill(overlay, null);
+        Arrays.fill(overlaySizes, 0);
+        Arrays.fill(degrees, 0);
+        edgeCount = 0;
+        pendingChanges = 0;
+        if (observer != null) {
+            observer.onEdgesReset();
+        }
+    }
+
+    /**
+     * Replace every edge with the given ones, building the new CSR base off to
+     * the side and swapping it in at the end. Each edge is packed as
+     * {@code (long) a << 32 | b} and must appear only once.
+     */
+    public void replaceEdges(long[] edges, int count) {
+        int nodeCount = highestId + 1;
+        int[] newDegrees = new int[degrees.length];
+        for (int i = 0; i < count; i++) {
+            newDegrees[(int) (edges[i] >>> 32)]++;
+            newDegrees[(int) edges[i]]++;
+        }
+
+        int[] offsets = new int[nodeCount + 1];
+        for (int id = 0; id < nodeCount; id++) {
+            offsets[id + 1] = offsets[id] + newDegrees[id];
+        }
+
+        int[] targets = new int[offsets[nodeCount]];
+        int[] cursors = Arrays.copyOf(offsets, nodeCount);
+        for (int i = 0; i < count; i++) {
+            int a = (int) (edges[i] >>> 32);
+            int b = (int) edges[i];
+            targets[cursors[a]++] = b;
+            targets[cursors[b]++] = a;
+        }
+
+        this.baseOffsets = offsets;
+        this.baseTargets = targets;
+        this.baseNodeCount = nodeCount;
+        this.baseShared = false;
+        this.degrees = newDegrees;
+        Arrays.fill(overlay, null);
+        Arrays.fill(overlaySizes, 0);
+        this.edgeCount = count;
+        this.pendingChanges = 0;
+        if (observer != null) {
+            observer.onEdgesReset();
+        }
+    }
+
+    /**
+     * Fold the overlay and tombstones into a fresh CSR base
+     */
+    public void compact() {
+        int nodeCount = highestId + 1;
+        int[] offsets = new int[nodeCount + 1];
+        for (int id = 0; id < nodeCount; id++) {
+            offsets[id + 1] = offsets[id] + degrees[id];
+        }
+
+        int[] targets = new int[offsets[nodeCount]];
+        NeighborCursor cursor = cursor();
+        for (int id = 0; id < nodeCount; id++) {
+            int write = offsets[id];
+            cursor.reset(id);
+            for (int neighbor = cursor.next(); neighbor >= 0; neighbor = cursor.next()) {
+                targets[write++] = neighbor;
+            }
+        }
+
+        this.baseOffsets = offsets;
+        this.baseTargets = targets;
+        this.baseNodeCount = nodeCount;
+        this.baseShared = false;
+        Arrays.fill(overlay, null);
+        Arrays.fill(overlaySizes, 0);
+        pendingChanges = 0;
+    }
+
+    /**
+     * Take an immutable snapshot of the graph that shares the CSR base with
+     * this store. Costs copies of the node table, degrees and overlay only.
+     */
+    public GraphSnapshot snapshot(long version) {
+        int idBound = highestId + 1;
+        int[][] overlayCopy = new int[idBound][];
+        for (int id = 0; id < idBound; id++) {
+            if (overlaySizes[id] > 0) {
+                overlayCopy[id] = Arrays.copyOf(overlay[id], overlaySizes[id]);
+            }
+        }
+
+        baseShared = true;
+        return new GraphSnapshot(version, Arrays.copyOf(nodes, idBound), Arrays.copyOf(degrees, idBound),
+                baseOffsets, baseTargets, baseNodeCount, overlayCopy, edgeCount);
+    }
+
+    /**
+     * Create a cursor for allocation-free iteration over neighbour ids
+     */
+    @Override
+    public NeighborCursor cursor() {
+        return new StoreCursor();
+    }
+
+    private boolean containsDirected(int from, int to) {
+        if (from < baseNodeCount) {
+            for (int i = baseOffsets[from], end = baseOffsets[from + 1]; i < end; i++) {
+                if (baseTargets[i] == to) {
+                    return true;
+                }
+            }
+        }
+
+        int[] extra = overlay[from];
+        for (int i = 0, size = overlaySizes[from]; i < size; i++) {
+            if (extra[i] == to) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean removeDirected(int from, int to) {
+        if (from < baseNodeCount) {
+            for (int i = baseOffsets[from], end = baseOffsets[from + 1]; i < end; i++) {
+                if (baseTargets[i] == to) {
+                    ownBase();
+                    baseTargets[i] = TOMBSTONE;
+                    degrees[from]--;
+                    return true;
+                }
+            }
+        }
+
+        int[] extra = overlay[from];
+        int size = overlaySizes[from];
+        for (int i = 0; i < size; i++) {
+            if (extra[i] == to) {
+                extra[i] = extra[size - 1];
+                overlaySizes[from] = size - 1;
+                degrees[from]--;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Copy the CSR base targets if a snapshot still holds them
+     */
+    private void ownBase() {
+        if (baseShared) {
+            baseTargets = baseTargets.clone();
+            baseShared = false;
+        }
+    }
+
+    private void appendOverlay(int from, int to) {
+        int[] extra = overlay[from];
+        int size = overlaySizes[from];
+        if (extra == null) {
+            extra = new int[4];
+            overlay[from] = extra;
+        } else if (size == extra.length) {
+            extra = Arrays.copyOf(extra, size << 1);
+            overlay[from] = extra;
+        }
+        extra[size] = to;
+        overlaySizes[from] = size + 1;
+        degrees[from]++;
+    }
+
+    private void onChanged() {
+        if (++pendingChanges > Math.max(MIN_COMPACTION_THRESHOLD, edgeCount >> 2)) {
+            compact();
+        }
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= nodes.length) {
+            return;
+        }
+
+        int capacity = Math.max(required, nodes.length << 1);
+        nodes = Arrays.copyOf(nodes, capacity);
+        overlay = Arrays.copyOf(overlay, capacity);
+        overlaySizes = Arrays.copyOf(overlaySizes, capacity);
+        degrees = Arrays.copyOf(degrees, capacity);
+    }
+
+    /**
+     * Read-only view over one node's neighbour ids, reading straight from the
+     * CSR base and overlay arrays without copying them
+     */
+    private final class StoreCursor implements NeighborCursor {
+
+        private int node;
+        private int position;
+        private int baseEnd;
+        private int overlayPosition;
+
+        @Override
+        public void reset(int id) {
+            this.node = id;
+            if (id < baseNodeCount) {
+                this.position = baseOffsets[id];
+                this.baseEnd = baseOffsets[id + 1];
+            } else {
+                this.position = 0;
+                this.baseEnd = 0;
+            }
+            this.overlayPosition = 0;
+        }
+
+        @Override
+        public int next() {
+            while (position < baseEnd) {
+                int target = baseTargets[position++];
+                if (target != TOMBSTONE) {
+                    return target;
+                }
+            }
+
+            if (overlayPosition < overlaySizes[node]) {
+                return overlay[node][overlayPosition++];
+            }
+            return -1;
+        }
+    }
+}
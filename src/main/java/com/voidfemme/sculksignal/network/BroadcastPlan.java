@@ -0,0 +1,203 @@
+package com.sculksignal.network;
+
+import com.sculksignal.util.ChunkCoordinate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Precomputed result of routing a signal on one frequency from one source:
+ * every target tuned to that frequency with the tick delay at which it fires,
+ * plus the chunks that must be loaded and the delays at which each is first
+ * and last needed. Sensors that only relay the signal are neither targets nor
+ * hold chunks.
+ *
+ * A plan may be cut off at a hop limit, in which case it only lists the
+ * targets within that many hops. Plans are immutable and only valid for the
+ * topology version and propagation delay they were built against.
+ */
+public final class BroadcastPlan {
+
+    // Rough per-entry sizes used for the cache's memory estimate
+    private static final int PLAN_OVERHEAD_BYTES = 64;
+    private static final int BYTES_PER_TARGET = 4 + 8 + 4;
+    private static final int BYTES_PER_CHUNK = 4 + 8 + 8 + 32;
+
+    private final SculkNode source;
+    private final int frequency;
+    private final int maxHops;
+    private final long topologyVersion;
+    private final int propagationDelay;
+    private final SculkNode[] targets;
+    private final long[] delays;
+    private final int[] hops;
+    private final List<ChunkCoordinate> requiredChunks;
+    private final long[] chunkDelays;
+    private final long[] chunkLastDelays;
+
+    private BroadcastPlan(SculkNode source, int frequency, int maxHops, long topologyVersion, int propagationDelay,
+                          SculkNode[] targets, long[] delays, int[] hops, List<ChunkCoordinate> requiredChunks,
+                          long[] chunkDelays, long[] chunkLastDelays) {
+        this.source = source;
+        this.frequency = frequency;
+        this.maxHops = maxHops;
+        this.topologyVersion = topologyVersion;
+        this.propagationDelay = propagationDelay;
+        this.targets = targets;
+        this.delays = delays;
+        this.hops = hops;
+        this.requiredChunks = requiredChunks;
+        this.chunkDelays = chunkDelays;
+        this.chunkLastDelays = chunkLastDelays;
+    }
+
+    /**
+     * Build a plan from a shortest-path tree, keeping the targets tuned to the
+     * frequency and the chunks they are in. The tree is in breadth-first
+     * order, so the targets come out sorted by delay.
+     */
+    public static BroadcastPlan fromTree(PathCalculator.ShortestPathTree tree,
+                                         Collection<ChunkCoordinate> requiredChunks,
+                                         long topologyVersion, int propagationDelay, int frequency) {
+        return fromTree(tree, requiredChunks, topologyVersion, propagationDelay, frequency,
+                PathCalculator.UNLIMITED_HOPS);
+    }
+
+    /**
+     * Build a plan from a shortest-path tree that was cut off at maxHops hops
+     */
+    public static BroadcastPlan fromTree(PathCalculator.ShortestPathTree tree,
+                                         Collection<ChunkCoordinate> requiredChunks,
+                                         long topologyVersion, int propagationDelay, int frequency, int maxHops) {
+        SculkNode[] targets = new SculkNode[Math.max(tree.size() - 1, 0)];
+        long[] delays = new long[targets.length];
+        int[] hops = new int[targets.length];
+        int count = 0;
+
+        // Index 0 is the source itself; breadth-first order means the first and
+        // last nodes seen in a chunk give the earliest and latest delays it is needed at
+        Map<ChunkCoordinate, Long> firstNeeded = new HashMap<>();
+        Map<ChunkCoordinate, Long> lastNeeded = new HashMap<>();
+        for (int i = 0; i < tree.size(); i++) {
+            SculkNode node = tree.getNode(i);
+            long delay = (long) tree.getDepth(i) * propagationDelay;
+            if (i > 0) {
+                if (!node.isTunedTo(frequency)) {
+                    continue;
+                }
+                targets[count] = node;
+                hops[count] = tree.getDepth(i);
+                delays[count++] = delay;
+            }
+            ChunkCoordinate chunk = new ChunkCoordinate(node.getWorldName(), node.getChunkX(), node.getChunkZ());
+            firstNeeded.putIfAbsent(chunk, delay);
+            lastNeeded.put(chunk, delay);
+        }
+
+        List<ChunkCoordinate> chunks = new ArrayList<>(firstNeeded.size());
+        for (ChunkCoordinate chunk : requiredChunks) {
+            if (firstNeeded.containsKey(chunk)) {
+                chunks.add(chunk);
+            }
+        }
+        long[] chunkDelays = new long[chunks.size()];
+        long[] chunkLastDelays = new long[chunks.size()];
+        for (int i = 0; i < chunkDelays.length; i++) {
+            chunkDelays[i] = firstNeeded.getOrDefault(chunks.get(i), 0L);
+            chunkLastDelays[i] = lastNeeded.getOrDefault(chunks.get(i), 0L);
+        }
+
+        return new BroadcastPlan(tree.getNode(0), frequency, maxHops, topologyVersion, propagationDelay,
+                Arrays.copyOf(targets, count), Arrays.copyOf(delays, count), Arrays.copyOf(hops, count),
+                Collections.unmodifiableList(chunks), chunkDelays, chunkLastDelays);
+    }
+
+    public SculkNode getSource() {
+        return source;
+    }
+
+    /**
+     * Frequency the plan routes, or {@link SculkNode#ANY_FREQUENCY}
+     */
+    public int getFrequency() {
+        return frequency;
+    }
+
+    /**
+     * Hop limit the plan was cut off at, or {@link PathCalculator#UNLIMITED_HOPS}
+     */
+    public int getMaxHops() {
+        return maxHops;
+    }
+
+    public long getTopologyVersion() {
+        return topologyVersion;
+    }
+
+    public int getPropagationDelay() {
+        return propagationDelay;
+    }
+
+    /**
+     * Whether the plan still matches the current network and configuration
+     */
+    public boolean isValid(long currentTopologyVersion, int currentPropagationDelay) {
+        return topologyVersion == currentTopologyVersion && propagationDelay == currentPropagationDelay;
+    }
+
+    public int getTargetCount() {
+        return targets.length;
+    }
+
+    public SculkNode getTarget(int index) {
+        return targets[index];
+    }
+
+    /**
+     * Ticks after the source activation at which the target at this index fires
+     */
+    public long getDelay(int index) {
+        return delays[index];
+    }
+
+    /**
+     * Hops from the source to the target at this index
+     */
+    public int getHops(int index) {
+        return hops[index];
+    }
+
+    public List<ChunkCoordinate> getRequiredChunks() {
+        return requiredChunks;
+    }
+
+    /**
+     * Ticks after the source activation at which the required chunk at this
+     * index is first needed
+     */
+    public long getChunkDelay(int index) {
+        return chunkDelays[index];
+    }
+
+    /**
+     * Ticks after the source activation at which the last target in the
+     * required chunk at this index fires
+     */
+    public long getChunkLastDelay(int index) {
+        return chunkLastDelays[index];
+    }
+
+    /**
+     * Approximate retained heap size of this plan, in bytes
+     */
+    public long estimateMemoryBytes() {
+        return PLAN_OVERHEAD_BYTES
+                + (long) targets.length * BYTES_PER_TARGET
+                + (long) requiredChunks.size() * BYTES_PER_CHUNK;
+    }
+}
@@ -0,0 +1,151 @@
+package com.sculksignal.network;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of broadcast plans keyed by source sensor, frequency and
+ * hop limit.
+ *
+ * Entries are checked against the registry topology version on lookup, so a
+ * plan built before any register/unregister/recalculation is never reused.
+ */
+public class BroadcastPlanCache {
+
+    private final LinkedHashMap<Key, BroadcastPlan> plans;
+    private int maxEntries;
+    private long estimatedBytes;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public BroadcastPlanCache(int maxEntries) {
+        this.maxEntries = Math.max(maxEntries, 0);
+        this.plans = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, BroadcastPlan> eldest) {
+                if (size() > BroadcastPlanCache.this.maxEntries) {
+                    estimatedBytes -= eldest.getValue().estimateMemoryBytes();
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    private static final class Key {
+        final SculkNode source;
+        final int frequency;
+        final int maxHops;
+
+        Key(SculkNode source, int frequency, int maxHops) {
+            this.source = source;
+            this.frequency = frequency;
+            this.maxHops = maxHops;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (!(obj instanceof Key)) return false;
+            Key other = (Key) obj;
+            return frequency == other.frequency && maxHops == other.maxHops && source.equals(other.source);
+        }
+
+        @Override
+        public int hashCode() {
+            return (source.hashCode() * 31 + frequency) * 31 + maxHops;
+        }
+    }
+
+    /**
+     * Get a still-valid plan for the source, frequency and hop limit, or null on a miss
+     */
+    public synchronized BroadcastPlan get(SculkNode source, int frequency, int maxHops, long topologyVersion,
+                                          int propagationDelay) {
+        Key key = new Key(source, frequency, maxHops);
+        BroadcastPlan plan = plans.get(key);
+        if (plan != null && plan.isValid(topologyVersion, propagationDelay)) {
+            hits++;
+            return plan;
+        }
+
+        if (plan != null) {
+            // Stale plan, drop it so it does not hold on to removed nodes
+            plans.remove(key);
+            estimatedBytes -= plan.estimateMemoryBytes();
+        }
+        misses++;
+        return null;
+    }
+
+    public synchronized void put(BroadcastPlan plan) {
+        if (maxEntries == 0) {
+            return;
+        }
+
+        BroadcastPlan previous = plans.put(new Key(plan.getSource(), plan.getFrequency(), plan.getMaxHops()), plan);
+        if (previous != null) {
+            estimatedBytes -= previous.estimateMemoryBytes();
+        }
+        estimatedBytes += plan.estimateMemoryBytes();
+    }
+
+    /**
+     * Change the capacity, evicting least-recently-used plans if it shrank
+     */
+    public synchronized void setMaxEntries(int maxEntries) {
+        this.maxEntries = Math.max(maxEntries, 0);
+
+        var iterator = plans.values().iterator();
+        while (plans.size() > this.maxEntries && iterator.hasNext()) {
+            estimatedBytes -= iterator.next().estimateMemoryBytes();
+            iterator.remove();
+            evictions++;
+        }
+    }
+
+    public synchronized void clear() {
+        plans.clear();
+        estimatedBytes = 0;
+    }
+
+    public synchronized CacheStats getStats() {
+        return new CacheStats(plans.size(), maxEntries, estimatedBytes, hits, misses, evictions);
+    }
+
+    /**
+     * Plan cache statistics data class
+     */
+    public static class CacheStats {
+        public final int entries;
+        public final int maxEntries;
+        public final long estimatedBytes;
+        public final long hits;
+        public final long misses;
+        public final long evictions;
+
+        public CacheStats(int entries, int maxEntries, long estimatedBytes,
+                          long hits, long misses, long evictions) {
+            this.entries = entries;
+            this.maxEntries = maxEntries;
+            this.estimatedBytes = estimatedBytes;
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+        }
+
+        public double getHitRate() {
+            long lookups = hits + misses;
+            return lookups == 0 ? 0.0 : (double) hits / lookups;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("CacheStats{entries=%d/%d, hitRate=%.1f%%, hits=%d, misses=%d, evictions=%d, bytes=%d}",
+                    entries, maxEntries, getHitRate() * 100, hits, misses, evictions, estimatedBytes);
+        }
+    }
+}
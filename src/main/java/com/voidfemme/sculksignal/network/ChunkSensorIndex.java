@@ -0,0 +1,200 @@
+package com.sculksignal.network;
+
+import com.sculksignal.util.ChunkCoordinate;
+import com.sculksignal.util.LongHashMap;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Spatial index of the sensors in a single world, bucketed by chunk.
+ *
+ * Chunks are keyed by {@link ChunkCoordinate#pack} so probing a chunk is a
+ * primitive hash lookup with no allocation. Not thread-safe; the registry
+ * only mutates it from the engine thread. The exception is
+ * {@link #mayContainColumn}, which region threads on Folia use to drop block
+ * events before handing them to the engine.
+ */
+public class ChunkSensorIndex {
+
+    // Counts of sensors per hashed block column, readable from any thread
+    private static final int COLUMN_SLOTS = 1 << 16;
+
+    private final LongHashMap<SensorBucket> buckets;
+    private final AtomicIntegerArray columnCounts;
+
+    public ChunkSensorIndex() {
+        this.buckets = new LongHashMap<>();
+        this.columnCounts = new AtomicIntegerArray(COLUMN_SLOTS);
+    }
+
+    /**
+     * Add a sensor to the bucket for its chunk
+     */
+    public void add(SculkNode node) {
+        long key = ChunkCoordinate.pack(node.getChunkX(), node.getChunkZ());
+        SensorBucket bucket = buckets.get(key);
+        if (bucket == null) {
+            bucket = new SensorBucket();
+            buckets.put(key, bucket);
+        }
+        bucket.add(node);
+        countColumn(node, 1);
+    }
+
+    /**
+     * Remove a sensor from the bucket for its chunk, dropping the bucket once empty
+     */
+    public boolean remove(SculkNode node) {
+        long key = ChunkCoordinate.pack(node.getChunkX(), node.getChunkZ());
+        SensorBucket bucket = buckets.get(key);
+        if (bucket == null || !bucket.remove(node)) {
+            return false;
+        }
+
+        if (bucket.size() == 0) {
+            buckets.remove(key);
+        }
+        countColumn(node, -1);
+        return true;
+    }
+
+    /**
+     * Get the bucket for a chunk, or null if the chunk has no sensors
+     */
+    public SensorBucket get(int chunkX, int chunkZ) {
+        return buckets.get(ChunkCoordinate.pack(chunkX, chunkZ));
+    }
+
+    /**
+     * Get the bucket for a packed chunk key, or null if the chunk has no sensors
+     */
+    public SensorBucket get(long chunkKey) {
+        return buckets.get(chunkKey);
+    }
+
+    /**
+     * Get the sensor at a block position without allocating, or null if there
+     * is none. Chunks without sensors cost one hash probe; blocks in a column
+     * without sensors one more bit test.
+     */
+    public SculkNode find(int blockX, int blockY, int blockZ) {
+        SensorBucket bucket = buckets.get(ChunkCoordinate.pack(blockX >> 4, blockZ >> 4));
+        return bucket != null ? bucket.find(blockX, blockY, blockZ) : null;
+    }
+
+    /**
+     * Whether a sensor may stand in the block column, safe to call from any
+     * thread. Never false for a column with a sensor indexed before the call;
+     * columns that share a slot with one can answer true.
+     */
+    public boolean mayContainColumn(int blockX, int blockZ) {
+        return columnCounts.get(columnSlot(blockX, blockZ)) != 0;
+    }
+
+    private void countColumn(SculkNode node, int delta) {
+        int slot = columnSlot((int) Math.floor(node.getX()), (int) Math.floor(node.getZ()));
+        // Only the engine thread writes, so no read-modify-write race
+        columnCounts.set(slot, columnCounts.get(slot) + delta);
+    }
+
+    private static int columnSlot(int blockX, int blockZ) {
+        long h = (((long) blockX << 32) | (blockZ & 0xFFFFFFFFL)) * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 48);
+    }
+
+    /**
+     * Packed keys of every chunk that holds at least one sensor
+     */
+    public long[] getChunkKeys() {
+        long[] keys = new long[buckets.size()];
+        int count = 0;
+        for (int slot = 0; slot < buckets.capacity(); slot++) {
+            if (buckets.valueAt(slot) != null) {
+                keys[count++] = buckets.keyAt(slot);
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Number of chunks that currently hold at least one sensor
+     */
+    public int getChunkCount() {
+        return buckets.size();
+    }
+
+    public boolean isEmpty() {
+        return buckets.isEmpty();
+    }
+
+    /**
+     * Compact list of the sensors in one chunk, with a bitset of the 16x16
+     * block columns that hold at least one of them. Order is not stable
+     * across removals.
+     */
+    public static final class SensorBucket {
+
+        private SculkNode[] nodes = new SculkNode[4];
+        private final long[] columns = new long[4];
+        private int size;
+
+        public int size() {
+            return size;
+        }
+
+        public SculkNode get(int index) {
+            return nodes[index];
+        }
+
+        void add(SculkNode node) {
+            if (size == nodes.length) {
+                SculkNode[] grown = new SculkNode[size << 1];
+                System.arraycopy(nodes, 0, grown, 0, size);
+                nodes = grown;
+            }
+            nodes[size++] = node;
+            int column = column(node);
+            columns[column >> 6] |= 1L << column;
+        }
+
+        boolean remove(SculkNode node) {
+            for (int i = 0; i < size; i++) {
+                if (nodes[i].equals(node)) {
+                    nodes[i] = nodes[--size];
+                    nodes[size] = null;
+                    clearColumnIfEmpty(column(node));
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        SculkNode find(int blockX, int blockY, int blockZ) {
+            int column = ((blockZ & 15) << 4) | (blockX & 15);
+            if ((columns[column >> 6] & (1L << column)) == 0) {
+                return null;
+            }
+
+            for (int i = 0; i < size; i++) {
+                SculkNode node = nodes[i];
+                if (node.getY() == blockY && node.getX() == blockX && node.getZ() == blockZ) {
+                    return node;
+                }
+            }
+            return null;
+        }
+
+        private void clearColumnIfEmpty(int column) {
+            for (int i = 0; i < size; i++) {
+                if (column(nodes[i]) == column) {
+                    return;
+                }
+            }
+            columns[column >> 6] &= ~(1L << column);
+        }
+
+        private static int column(SculkNode node) {
+            return (((int) Math.floor(node.getZ()) & 15) << 4) | ((int) Math.floor(node.getX()) & 15);
+        }
+    }
+}
@@ -0,0 +1,539 @@
+package com.sculksignal.network;
+
+import com.sculksignal.util.ChunkCoordinate;
+import com.sculksignal.util.LongHashMap;
+
+import java.util.Arrays;
+
+/**
+ * Two-level view of the sensor graph for routing signals to a few distant
+ * sensors without visiting every sensor in between.
+ *
+ * Sensors are grouped into square clusters of chunks. A sensor with a
+ * connection leaving its cluster is a portal, and each cluster keeps a table
+ * of hop counts from every portal to every member, found with searches that
+ * stay inside the cluster. A route then crosses whole clusters in one step per
+ * portal. The source's cluster, clusters cut by the range limit and clusters
+ * that are mostly portals are searched sensor by sensor instead. Hop counts
+ * come out the same as a flat breadth-first search, because any path splits
+ * into segments inside single clusters joined by connections between them.
+ *
+ * Clusters follow the adjacency store through its observer: adding or removing
+ * a sensor or connection only marks the clusters it touches, and their tables
+ * are rebuilt the next time a route passes through. Each world shard has its
+ * own. Not thread-safe; used from the engine thread only.
+ */
+public class ClusterGraph implements AdjacencyStore.Observer {
+
+    // Clusters with bigger portal tables, or fewer members per portal, are searched sensor by sensor
+    private static final int MAX_TABLE_ENTRIES = 1 << 20;
+    private static final int MIN_MEMBERS_PER_PORTAL = 4;
+    private static final int UNREACHABLE = -1;
+
+    private final AdjacencyStore adjacency;
+    private final LongHashMap<Cluster> clusters;
+    private int clusterChunks;
+
+    // Per node id: its cluster, and index among the cluster's members and portals (-1 if not a portal)
+    private Cluster[] clusterById;
+    private int[] memberIndex;
+    private int[] portalIndex;
+
+    // Search state, reset in O(1) by bumping the generation
+    private int[] distances;
+    private int[] stamps;
+    private int generation;
+    private int[] touched;
+    private int touchedCount;
+    private int maxHops;
+    // Dial's bucket queue: node ids waiting to be expanded, by hop count
+    private int[][] buckets;
+    private int[] bucketSizes;
+    private int queued;
+    private int highestBucket;
+
+    private long routes;
+    private long clustersCrossed;
+    private long clustersExpanded;
+    private long tableRebuilds;
+
+    public ClusterGraph(AdjacencyStore adjacency, int clusterChunks) {
+        this.adjacency = adjacency;
+        this.clusters = new LongHashMap<>();
+        this.clusterById = new Cluster[64];
+        this.memberIndex = new int[64];
+        this.portalIndex = new int[64];
+        this.distances = new int[64];
+        this.stamps = new int[64];
+        this.touched = new int[64];
+        this.buckets = new int[64][];
+        this.bucketSizes = new int[64];
+        this.clusterChunks = Math.max(clusterChunks, 0); // The store has no nodes yet
+    }
+
+    private static final class Cluster {
+        final int x;
+        final int z;
+        int[] members = new int[8];
+        int size;
+        boolean dirty = true;
+
+        // Built from the members when the cluster is next routed through
+        int[] portals;
+        int[] table; // portals.length rows of size hop counts
+        int[] inner; // Members that are not portals
+        int innerFrequencies; // Frequencies the inner members are tuned to, bit 0 for untuned
+        int minY;
+        int maxY;
+
+        // Whether the cluster lies wholly in range of the current route's source
+        int rangeGeneration;
+        boolean interior;
+
+        Cluster(int x, int z) {
+            this.x = x;
+            this.z = z;
+        }
+
+        void add(int id) {
+            if (size == members.length) {
+                members = Arrays.copyOf(members, size << 1);
+            }
+            members[size++] = id;
+            dirty = true;
+        }
+
+        void remove(int id) {
+            for (int i = 0; i < size; i++) {
+                if (members[i] == id) {
+                    members[i] = members[--size];
+                    dirty = true;
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Change the cluster size, regrouping every sensor if it differs. 0
+     * disables clustering and drops all clusters.
+     */
+    public void setClusterChunks(int clusterChunks) {
+        clusterChunks = Math.max(clusterChunks, 0);
+        if (clusterChunks == this.clusterChunks) {
+            return;
+        }
+
+        this.clusterChunks = clusterChunks;
+        clusters.clear();
+        Arrays.fill(clusterById, null);
+        if (clusterChunks == 0) {
+            return;
+        }
+        for (int id = 0; id < adjacency.getIdBound(); id++) {
+            if (adjacency.getNode(id) != null) {
+                onNodeAdded(id);
+            }
+        }
+    }
+
+    public int getClusterChunks() {
+        return clusterChunks;
+    }
+
+    @Override
+    public void onNodeAdded(int id) {
+        if (clusterChunks == 0) {
+            return;
+        }
+
+        SculkNode node = adjacency.getNode(id);
+        int x = Math.floorDiv(node.getChunkX(), clusterChunks);
+        int z = Math.floorDiv(node.getChunkZ(), clusterChunks);
+        long key = ChunkCoordinate.pack(x, z);
+        Cluster cluster = clusters.get(key);
+        if (cluster == null) {
+            cluster = new Cluster(x, z);
+            clusters.put(key, cluster);
+        }
+        cluster.add(id);
+        ensureCapacity(id + 1);
+        clusterById[id] = cluster;
+    }
+
+    @Override
+    public void onNodeRemoved(int id) {
+        Cluster cluster = clusterOf(id);
+        if (cluster == null) {
+            return;
+        }
+
+        cluster.remove(id);
+        clusterById[id] = null;
+        if (cluster.size == 0) {
+            clusters.remove(ChunkCoordinate.pack(cluster.x, cluster.z));
+        }
+    }
+
+    @Override
+    public void onEdgeChanged(int a, int b) {
+        markDirty(a);
+        markDirty(b);
+    }
+
+    @Override
+    public void onEdgesReset() {
+        for (int slot = 0; slot < clusters.capacity(); slot++) {
+            Cluster cluster = clusters.valueAt(slot);
+            if (cluster != null) {
+                cluster.dirty = true;
+            }
+        }
+    }
+
+    /**
+     * Note that a node was retuned: recompute the frequencies its cluster's
+     * inner members listen on, so the cluster neither skips the node's new
+     * frequencies nor keeps checking frequencies nobody listens on any more
+     */
+    public void onRetuned(SculkNode node) {
+        Cluster cluster = clusterOf(node.getId());
+        if (cluster == null || cluster.dirty || cluster.inner == null) {
+            return; // Computed when the table is next built
+        }
+
+        int innerFrequencies = 0;
+        for (int m : cluster.inner) {
+            int frequencies = adjacency.getNode(cluster.members[m]).getFrequencies();
+            innerFrequencies |= frequencies != 0 ? frequencies : 1;
+        }
+        cluster.innerFrequencies = innerFrequencies;
+    }
+
+    private void markDirty(int id) {
+        Cluster cluster = clusterOf(id);
+        if (cluster != null) {
+            cluster.dirty = true;
+        }
+    }
+
+    private Cluster clusterOf(int id) {
+        return id < clusterById.length ? clusterById[id] : null;
+    }
+
+    /**
+     * Find the portals of a cluster and their hop counts to every member,
+     * searching inside the cluster only
+     */
+    private void build(Cluster cluster) {
+        cluster.dirty = false;
+        tableRebuilds++;
+        ensureCapacity(adjacency.getIdBound());
+
+        SensorGraph.NeighborCursor cursor = adjacency.cursor();
+        int portalCount = 0;
+        cluster.minY = Integer.MAX_VALUE;
+        cluster.maxY = Integer.MIN_VALUE;
+        for (int m = 0; m < cluster.size; m++) {
+            int id = cluster.members[m];
+            SculkNode node = adjacency.getNode(id);
+            memberIndex[id] = m;
+            portalIndex[id] = -1;
+            cluster.minY = Math.min(cluster.minY, (int) Math.floor(node.getY()));
+            cluster.maxY = Math.max(cluster.maxY, (int) Math.floor(node.getY()));
+
+            cursor.reset(id);
+            for (int neighbor = cursor.next(); neighbor >= 0; neighbor = cursor.next()) {
+                if (clusterById[neighbor] != cluster) {
+                    portalIndex[id] = portalCount++;
+                    break;
+                }
+            }
+        }
+
+        cluster.portals = new int[portalCount];
+        cluster.inner = new int[cluster.size - portalCount];
+        cluster.innerFrequencies = 0;
+        int innerCount = 0;
+        for (int m = 0; m < cluster.size; m++) {
+            int id = cluster.members[m];
+            if (portalIndex[id] >= 0) {
+                cluster.portals[portalIndex[id]] = id;
+            } else {
+                cluster.inner[innerCount++] = m;
+                int frequencies = adjacency.getNode(id).getFrequencies();
+                cluster.innerFrequencies |= frequencies != 0 ? frequencies : 1;
+            }
+        }
+
+        // Crossing a cluster that is mostly portals saves nothing over walking it
+        if (portalCount * MIN_MEMBERS_PER_PORTAL > cluster.size ||
+                (long) portalCount * cluster.size > MAX_TABLE_ENTRIES) {
+            cluster.table = null;
+            return;
+        }
+
+        int[] table = new int[portalCount * cluster.size];
+        Arrays.fill(table, UNREACHABLE);
+        int[] queue = new int[cluster.size];
+        for (int p = 0; p < portalCount; p++) {
+            int row = p * cluster.size;
+            int head = 0;
+            int tail = 0;
+            table[row + memberIndex[cluster.portals[p]]] = 0;
+            queue[tail++] = cluster.portals[p];
+
+            while (head < tail) {
+                int current = queue[head++];
+                int nextHops = table[row + memberIndex[current]] + 1;
+                cursor.reset(current);
+                for (int neighbor = cursor.next(); neighbor >= 0; neighbor = cursor.next()) {
+                    if (clusterById[neighbor] != cluster) {
+                        continue;
+                    }
+                    int slot = row + memberIndex[neighbor];
+                    if (table[slot] == UNREACHABLE) {
+                        table[slot] = nextHops;
+                        queue[tail++] = neighbor;
+                    }
+                }
+            }
+        }
+        cluster.table = table;
+    }
+
+    /**
+     * Whether a route from the source may cross the cluster through its portal
+     * table, which needs every member in range of the source
+     */
+    private boolean isInterior(Cluster cluster, SculkNode source, double maxDistanceSquared) {
+        if (cluster.rangeGeneration == generation) {
+            return cluster.interior;
+        }
+
+        cluster.rangeGeneration = generation;
+        if (cluster.dirty) {
+            build(cluster);
+        }
+
+        // Farthest corner of the cluster's bounds from the source
+        int minX = cluster.x * clusterChunks * 16;
+        int minZ = cluster.z * clusterChunks * 16;
+        int maxX = minX + clusterChunks * 16 - 1;
+        int maxZ = minZ + clusterChunks * 16 - 1;
+        double dx = Math.max(Math.abs(source.getX() - minX), Math.abs(source.getX() - maxX));
+        double dy = Math.max(Math.abs(source.getY() - cluster.minY), Math.abs(source.getY() - cluster.maxY));
+        double dz = Math.max(Math.abs(source.getZ() - minZ), Math.abs(source.getZ() - maxZ));
+        cluster.interior = cluster.table != null && dx * dx + dy * dy + dz * dz <= maxDistanceSquared;
+        return cluster.interior;
+    }
+
+    /**
+     * Hop counts from the source to every sensor tuned to the frequency that
+     * is at most maxHops hops away, without leaving maxDistance blocks of the
+     * source. The search
+     * stops once {@code tunedTargets} tuned sensors have their final hop count
+     * (never, if negative). The result holds the source at index 0 followed by
+     * the tuned sensors in hop order, each with the source as its parent.
+     */
+    public PathCalculator.ShortestPathTree route(SculkNode source, int frequency, int tunedTargets,
+                                                 double maxDistance, int maxHops) {
+        routes++;
+        this.maxHops = maxHops;
+        ensureCapacity(adjacency.getIdBound());
+        if (++generation == 0) {
+            Arrays.fill(stamps, 0);
+            generation = 1;
+        }
+        touchedCount = 0;
+        Arrays.fill(bucketSizes, 0, highestBucket + 1, 0);
+        queued = 0;
+        highestBucket = 0;
+
+        double maxDistanceSquared = maxDistance * maxDistance;
+        Cluster sourceCluster = clusterOf(source.getId());
+        SensorGraph.NeighborCursor cursor = adjacency.cursor();
+        int tunedFound = 0;
+        int tunedBound = 0;
+        int scanned = 0;
+
+        reach(source.getId(), 0);
+        push(0, source.getId());
+        int hops = 0;
+        while (queued > 0) {
+            while (bucketSizes[hops] == 0) {
+                hops++;
+            }
+            int id = buckets[hops][--bucketSizes[hops]];
+            queued--;
+            if (hops > distances[id]) {
+                continue; // Superseded
+            }
+            if (tunedFound == tunedTargets && hops >= tunedBound) {
+                break; // Nothing left can get closer to a tuned sensor
+            }
+
+            Cluster cluster = clusterOf(id);
+            if (cluster != null && cluster != sourceCluster && isInterior(cluster, source, maxDistanceSquared)
+                    && portalIndex[id] >= 0) {
+                clustersCrossed++;
+                int row = portalIndex[id] * cluster.size;
+
+                // Connections out of the cluster
+                cursor.reset(id);
+                for (int neighbor = cursor.next(); neighbor >= 0; neighbor = cursor.next()) {
+                    SculkNode node = adjacency.getNode(neighbor);
+                    if (clusterById[neighbor] != cluster &&
+                            node.distanceSquaredTo(source.getX(), source.getY(), source.getZ()) <= maxDistanceSquared) {
+                        if (reach(neighbor, hops + 1)) {
+                            push(hops + 1, neighbor);
+                        }
+                    }
+                }
+
+                // Across the cluster to its other portals, and to its tuned members
+                for (int portal : cluster.portals) {
+                    int across = cluster.table[row + memberIndex[portal]];
+                    if (across > 0 && reach(portal, hops + across)) {
+                        push(hops + across, portal);
+                    }
+                }
+                if (frequency == SculkNode.ANY_FREQUENCY || (cluster.innerFrequencies & (1 | 1 << frequency)) != 0) {
+                    for (int m : cluster.inner) {
+                        int member = cluster.members[m];
+                        int across = cluster.table[row + m];
+                        if (across > 0 && adjacency.getNode(member).isTunedTo(frequency)) {
+                            reach(member, hops + across);
+                        }
+                    }
+                }
+            } else {
+                if (cluster != null && cluster != sourceCluster) {
+                    clustersExpanded++;
+                }
+                cursor.reset(id);
+                for (int neighbor = cursor.next(); neighbor >= 0; neighbor = cursor.next()) {
+                    SculkNode node = adjacency.getNode(neighbor);
+                    if (node.distanceSquaredTo(source.getX(), source.getY(), source.getZ()) <= maxDistanceSquared
+                            && reach(neighbor, hops + 1)) {
+                        push(hops + 1, neighbor);
+                    }
+                }
+            }
+
+            // Count tuned sensors the first time they are reached
+            for (; scanned < touchedCount; scanned++) {
+                int reached = touched[scanned];
+                if (reached != source.getId() && adjacency.getNode(reached).isTunedTo(frequency)) {
+                    tunedFound++;
+                    tunedBound = Math.max(tunedBound, distances[reached]);
+                }
+            }
+        }
+
+        return collect(source, frequency);
+    }
+
+    /**
+     * Record a hop count for a node if it is the first or a shorter one
+     * within the hop limit
+     */
+    private boolean reach(int id, int hops) {
+        if (hops > maxHops) {
+            return false;
+        }
+        if (stamps[id] != generation) {
+            stamps[id] = generation;
+            distances[id] = hops;
+            touched[touchedCount++] = id;
+            return true;
+        }
+        if (hops < distances[id]) {
+            distances[id] = hops;
+            return true;
+        }
+        return false;
+    }
+
+    private PathCalculator.ShortestPathTree collect(SculkNode source, int frequency) {
+        long[] order = new long[touchedCount];
+        int count = 0;
+        for (int i = 0; i < touchedCount; i++) {
+            int id = touched[i];
+            if (id != source.getId() && adjacency.getNode(id).isTunedTo(frequency)) {
+                order[count++] = (long) distances[id] << 32 | id;
+            }
+        }
+        Arrays.sort(order, 0, count);
+
+        PathCalculator.ShortestPathTree tree = new PathCalculator.ShortestPathTree(count + 1);
+        tree.add(source, -1, 0);
+        for (int i = 0; i < count; i++) {
+            tree.add(adjacency.getNode((int) order[i]), 0, (int) (order[i] >>> 32));
+        }
+        return tree;
+    }
+
+    private void push(int hops, int id) {
+        if (hops >= buckets.length) {
+            int capacity = Math.max(hops + 1, buckets.length << 1);
+            buckets = Arrays.copyOf(buckets, capacity);
+            bucketSizes = Arrays.copyOf(bucketSizes, capacity);
+        }
+        int[] bucket = buckets[hops];
+        if (bucket == null) {
+            bucket = buckets[hops] = new int[16];
+        } else if (bucketSizes[hops] == bucket.length) {
+            bucket = buckets[hops] = Arrays.copyOf(bucket, bucket.length << 1);
+        }
+        bucket[bucketSizes[hops]++] = id;
+        highestBucket = Math.max(highestBucket, hops);
+        queued++;
+    }
+
+    private void ensureCapacity(int idBound) {
+        if (idBound <= stamps.length) {
+            return;
+        }
+        int capacity = Math.max(idBound, stamps.length << 1);
+        clusterById = Arrays.copyOf(clusterById, capacity);
+        memberIndex = Arrays.copyOf(memberIndex, capacity);
+        portalIndex = Arrays.copyOf(portalIndex, capacity);
+        distances = Arrays.copyOf(distances, capacity);
+        stamps = Arrays.copyOf(stamps, capacity);
+        touched = Arrays.copyOf(touched, capacity);
+    }
+
+    public int getClusterCount() {
+        return clusters.size();
+    }
+
+    public ClusterStats getStats() {
+        return new ClusterStats(getClusterCount(), routes, clustersCrossed, clustersExpanded, tableRebuilds);
+    }
+
+    /**
+     * How often routes crossed clusters through their portal tables
+     */
+    public static class ClusterStats {
+        public final int clusters;
+        public final long routes;
+        public final long clustersCrossed;
+        public final long clustersExpanded;
+        public final long tableRebuilds;
+
+        public ClusterStats(int clusters, long routes, long clustersCrossed, long clustersExpanded, long tableRebuilds) {
+            this.clusters = clusters;
+            this.routes = routes;
+            this.clustersCrossed = clustersCrossed;
+            this.clustersExpanded = clustersExpanded;
+            this.tableRebuilds = tableRebuilds;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("ClusterStats{clusters=%d, routes=%d, crossed=%d, expanded=%d, rebuilds=%d}",
+                    clusters, routes, clustersCrossed, clustersExpanded, tableRebuilds);
+        }
+    }
+}
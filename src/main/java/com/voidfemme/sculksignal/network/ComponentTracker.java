@@ -0,0 +1,308 @@
+package com.sculksignal.network;
+
+import java.util.*;
+
+/**
+ * Keeps track of the connected components of the sensor graph as it changes.
+ *
+ * Merges relabel the smaller component into the larger one, so a node is
+ * relabelled at most O(log n) times over any sequence of additions. Removing a
+ * node re-walks only the component it belonged to, to find out whether it split.
+ * Each component also counts its sensors per frequency they are tuned to, so
+ * a signal can tell whether anyone in its component is listening.
+ * Not thread-safe; the registry only calls it from the server thread.
+ */
+public class ComponentTracker {
+
+    private final AdjacencyStore adjacency;
+    private final Map<Integer, Component> components;
+    private int nextComponentId;
+
+    public ComponentTracker(AdjacencyStore adjacency) {
+        this.adjacency = adjacency;
+        this.components = new HashMap<>();
+        this.nextComponentId = 1;
+    }
+
+    /**
+     * Members of one component and how many of them are tuned to each frequency.
+     * Index 0 counts untuned sensors, which hear every frequency.
+     */
+    private static final class Component {
+        final Set<SculkNode> members;
+        final int[] tuned = new int[SculkNode.MAX_FREQUENCY + 1];
+
+        Component(Set<SculkNode> members) {
+            this.members = members;
+            for (SculkNode member : members) {
+                count(member, 1);
+            }
+        }
+
+        void count(SculkNode node, int delta) {
+            int frequencies = node.getFrequencies();
+            if (frequencies == 0) {
+                tuned[0] += delta;
+                return;
+            }
+            for (int frequency = 1; frequency <= SculkNode.MAX_FREQUENCY; frequency++) {
+                if ((frequencies & (1 << frequency)) != 0) {
+                    tuned[frequency] += delta;
+                }
+            }
+        }
+
+        void remove(SculkNode node) {
+            if (members.remove(node)) {
+                count(node, -1);
+            }
+        }
+
+        void removeAll(Set<SculkNode> piece) {
+            for (SculkNode node : piece) {
+                remove(node);
+            }
+        }
+    }
+
+    /**
+     * Put a newly registered node into its own singleton component
+     */
+    public void addNode(SculkNode node) {
+        Set<SculkNode> members = new HashSet<>();
+        members.add(node);
+
+        int id = nextComponentId++;
+        components.put(id, new Component(members));
+        node.setComponentId(id);
+    }
+
+    /**
+     * Record an edge between two nodes, merging their components if they differ
+     */
+    public void connect(SculkNode a, SculkNode b) {
+        int idA = a.getComponentId();
+        int idB = b.getComponentId();
+        if (idA == idB) {
+            return;
+        }
+
+        Component membersA = components.get(idA);
+        Component membersB = components.get(idB);
+        if (membersA == null || membersB == null) {
+            return; // One side is not tracked (not registered)
+        }
+
+        // Relabel the smaller side into the larger one
+        if (membersA.members.size() < membersB.members.size()) {
+            merge(membersA, membersB, idB);
+            components.remove(idA);
+        } else {
+            merge(membersB, membersA, idA);
+            components.remove(idB);
+        }
+    }
+
+    /**
+     * Remove a node whose connections have already been dropped, splitting its
+     * former component if the node was holding it together
+     */
+    public void removeNode(SculkNode node, Collection<SculkNode> formerNeighbors) {
+        int id = node.getComponentId();
+        Component members = components.get(id);
+        node.setComponentId(0);
+        if (members == null) {
+            return;
+        }
+
+        members.remove(node);
+        if (members.members.isEmpty()) {
+            components.remove(id);
+            return;
+        }
+        if (formerNeighbors.size() < 2) {
+            return; // A leaf or isolated node can never split its component
+        }
+
+        // Walk out from each former neighbour. The first walk keeps the
+        // existing id; every further walk found a piece that broke away.
+        Set<SculkNode> seen = new HashSet<>();
+        boolean first = true;
+        for (SculkNode start : formerNeighbors) {
+            if (seen.contains(start) || start.getComponentId() != id) {
+                continue;
+            }
+
+            Set<SculkNode> piece = collectComponent(start, seen);
+            if (first) {
+                first = false;
+                if (piece.size() == members.members.size()) {
+                    return; // Still connected
+                }
+                continue;
+            }
+
+            int pieceId = nextComponentId++;
+            for (SculkNode member : piece) {
+                member.setComponentId(pieceId);
+            }
+            members.removeAll(piece);
+            components.put(pieceId, new Component(piece));
+        }
+    }
+
+    /**
+     * Remove a batch of nodes whose connections have already been dropped,
+     * re-walking each affected component once instead of once per node
+     */
+    public void removeNodes(Collection<SculkNode> removed) {
+        Set<Integer> affected = new HashSet<>();
+        for (SculkNode node : removed) {
+            int id = node.getComponentId();
+            Component members = components.get(id);
+            node.setComponentId(0);
+            if (members != null) {
+                members.remove(node);
+                affected.add(id);
+            }
+        }
+
+        for (int id : affected) {
+            Component members = components.remove(id);
+            if (members == null || members.members.isEmpty()) {
+                continue;
+            }
+
+            // The first piece keeps the existing id
+            Set<SculkNode> seen = new HashSet<>();
+            int pieceId = id;
+            for (SculkNode start : members.members) {
+                if (seen.contains(start)) {
+                    continue;
+                }
+
+                Set<SculkNode> piece = collectComponent(start, seen);
+                for (SculkNode member : piece) {
+                    member.setComponentId(pieceId);
+                }
+                components.put(pieceId, new Component(piece));
+                pieceId = nextComponentId++;
+            }
+        }
+    }
+
+    /**
+     * Recompute every component from scratch
+     */
+    public void rebuild(Collection<SculkNode> nodes) {
+        components.clear();
+
+        Set<SculkNode> seen = new HashSet<>();
+        for (SculkNode node : nodes) {
+            if (seen.contains(node)) {
+                continue;
+            }
+
+            Set<SculkNode> piece = collectComponent(node, seen);
+            int id = nextComponentId++;
+            for (SculkNode member : piece) {
+                member.setComponentId(id);
+            }
+            components.put(id, new Component(piece));
+        }
+    }
+
+    /**
+     * Number of sensors in the component with the given id, or 0 if unknown
+     */
+    public int getComponentSize(int componentId) {
+        Component members = components.get(componentId);
+        return members != null ? members.members.size() : 0;
+    }
+
+    /**
+     * Number of sensors in the component that a signal on the given frequency
+     * is delivered to, or 0 if the component is unknown
+     */
+    public int getTunedCount(int componentId, int frequency) {
+        Component members = components.get(componentId);
+        if (members == null) {
+            return 0;
+        }
+        if (frequency == SculkNode.ANY_FREQUENCY) {
+            return members.members.size();
+        }
+        return members.tuned[0] + members.tuned[frequency];
+    }
+
+    /**
+     * Change the frequencies a registered node is tuned to, keeping its
+     * component's counts in step
+     */
+    public void retune(SculkNode node, int frequencies) {
+        Component members = components.get(node.getComponentId());
+        if (members != null) {
+            members.count(node, -1);
+        }
+        node.setFrequencies(frequencies);
+        if (members != null) {
+            members.count(node, 1);
+        }
+    }
+
+    public int getComponentCount() {
+        return components.size();
+    }
+
+    public int getLargestComponentSize() {
+        int largest = 0;
+        for (Component members : components.values()) {
+            largest = Math.max(largest, members.members.size());
+        }
+        return largest;
+    }
+
+    /**
+     * Number of sensors that have no connections at all
+     */
+    public int getIsolatedSensorCount() {
+        int isolated = 0;
+        for (Component members : components.values()) {
+            if (members.members.size() == 1) {
+                isolated++;
+            }
+        }
+        return isolated;
+    }
+
+    private void merge(Component from, Component into, int intoId) {
+        for (SculkNode member : from.members) {
+            member.setComponentId(intoId);
+        }
+        into.members.addAll(from.members);
+        for (int frequency = 0; frequency < into.tuned.length; frequency++) {
+            into.tuned[frequency] += from.tuned[frequency];
+        }
+    }
+
+    private Set<SculkNode> collectComponent(SculkNode start, Set<SculkNode> seen) {
+        Set<SculkNode> piece = new HashSet<>();
+        Deque<SculkNode> queue = new ArrayDeque<>();
+        SensorGraph.NeighborCursor cursor = adjacency.cursor();
+        seen.add(start);
+        piece.add(start);
+        queue.add(start);
+
+        while (!queue.isEmpty()) {
+            cursor.reset(queue.poll().getId());
+            for (int id = cursor.next(); id >= 0; id = cursor.next()) {
+                SculkNode neighbor = adjacency.getNode(id);
+                if (seen.add(neighbor)) {
+                    piece.add(neighbor);
+                    queue.add(neighbor);
+                }
+            }
+        }
+        return piece;
+    }
+}
@@ -0,0 +1,176 @@
+package com.sculksignal.network;
+
+import com.sculksignal.util.ChunkCoordinate;
+import com.sculksignal.util.LongHashMap;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Recomputes every sensor connection in parallel on a fork-join pool.
+ *
+ * Work is split by chunk cell over a read-only snapshot of sensor positions,
+ * so worker threads never touch the live registry. Each undirected edge is
+ * found exactly once, from the endpoint with the lower id.
+ */
+public class ConnectionRebuilder {
+
+    // Cells per leaf task before a range is split further
+    private static final int CELLS_PER_TASK = 64;
+
+    private final double sensorRange;
+
+    public ConnectionRebuilder(double sensorRange) {
+        this.sensorRange = sensorRange;
+    }
+
+    /**
+     * Immutable copy of the sensor positions and chunk cells of one world
+     * shard, indexed by node id
+     */
+    public static final class Snapshot {
+        final double[] xs;
+        final double[] ys;
+        final double[] zs;
+        final long[] keys;
+        final int[][] members;
+        final LongHashMap<int[]> cellsByKey;
+
+        private Snapshot(int idBound, int cellCount) {
+            this.xs = new double[idBound];
+            this.ys = new double[idBound];
+            this.zs = new double[idBound];
+            this.keys = new long[cellCount];
+            this.members = new int[cellCount][];
+            this.cellsByKey = new LongHashMap<>(cellCount);
+        }
+
+        /**
+         * Copy the positions and chunk buckets of every sensor in the index
+         */
+        public static Snapshot capture(ChunkSensorIndex index, int idBound) {
+            long[] keys = index.getChunkKeys();
+            Snapshot snapshot = new Snapshot(idBound, keys.length);
+
+            for (int cell = 0; cell < keys.length; cell++) {
+                ChunkSensorIndex.SensorBucket bucket = index.get(keys[cell]);
+                int[] ids = new int[bucket.size()];
+                for (int i = 0; i < bucket.size(); i++) {
+                    SculkNode node = bucket.get(i);
+                    ids[i] = node.getId();
+                    snapshot.xs[node.getId()] = node.getX();
+                    snapshot.ys[node.getId()] = node.getY();
+                    snapshot.zs[node.getId()] = node.getZ();
+                }
+                snapshot.keys[cell] = keys[cell];
+                snapshot.members[cell] = ids;
+                snapshot.cellsByKey.put(keys[cell], ids);
+            }
+            return snapshot;
+        }
+    }
+
+    /**
+     * Compute every edge in the snapshot on the given pool. Returns the packed
+     * edges ({@code (long) a << 32 | b}) in an EdgeBuffer.
+     */
+    public EdgeBuffer computeEdges(Snapshot snapshot, ForkJoinPool pool) {
+        return pool.invoke(new CellRangeTask(snapshot, 0, snapshot.keys.length));
+    }
+
+    private void collectEdges(Snapshot snapshot, int fromCell, int toCell, EdgeBuffer out) {
+        double rangeSquared = sensorRange * sensorRange;
+        int chunkRadius = (int) Math.ceil(sensorRange / 16.0) + 1;
+
+        for (int cell = fromCell; cell < toCell; cell++) {
+            int cellX = ChunkCoordinate.unpackX(snapshot.keys[cell]);
+            int cellZ = ChunkCoordinate.unpackZ(snapshot.keys[cell]);
+
+            for (int a : snapshot.members[cell]) {
+                for (int cx = cellX - chunkRadius; cx <= cellX + chunkRadius; cx++) {
+                    for (int cz = cellZ - chunkRadius; cz <= cellZ + chunkRadius; cz++) {
+                        int[] others = snapshot.cellsByKey.get(ChunkCoordinate.pack(cx, cz));
+                        if (others == null) {
+                            continue;
+                        }
+
+                        for (int b : others) {
+                            // Emit each undirected edge once, from its lower id
+                            if (b <= a) {
+                                continue;
+                            }
+
+                            double dx = snapshot.xs[a] - snapshot.xs[b];
+                            double dy = snapshot.ys[a] - snapshot.ys[b];
+                            double dz = snapshot.zs[a] - snapshot.zs[b];
+                            if (dx * dx + dy * dy + dz * dz <= rangeSquared) {
+                                out.add(((long) a << 32) | b);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private final class CellRangeTask extends RecursiveTask<EdgeBuffer> {
+        private final Snapshot snapshot;
+        private final int fromCell;
+        private final int toCell;
+
+        CellRangeTask(Snapshot snapshot, int fromCell, int toCell) {
+            this.snapshot = snapshot;
+            this.fromCell = fromCell;
+            this.toCell = toCell;
+        }
+
+        @Override
+        protected EdgeBuffer compute() {
+            if (toCell - fromCell <= CELLS_PER_TASK) {
+                EdgeBuffer edges = new EdgeBuffer();
+                collectEdges(snapshot, fromCell, toCell, edges);
+                return edges;
+            }
+
+            int middle = (fromCell + toCell) >>> 1;
+            CellRangeTask left = new CellRangeTask(snapshot, fromCell, middle);
+            CellRangeTask right = new CellRangeTask(snapshot, middle, toCell);
+            left.fork();
+            EdgeBuffer edges = right.compute();
+            edges.addAll(left.join());
+            return edges;
+        }
+    }
+
+    /**
+     * Growable buffer of packed edges
+     */
+    public static final class EdgeBuffer {
+        private long[] edges = new long[64];
+        private int size;
+
+        void add(long edge) {
+            if (size == edges.length) {
+                edges = Arrays.copyOf(edges, size << 1);
+            }
+            edges[size++] = edge;
+        }
+
+        void addAll(EdgeBuffer other) {
+            if (size + other.size > edges.length) {
+                edges = Arrays.copyOf(edges, Math.max(size + other.size, edges.length << 1));
+            }
+            System.arraycopy(other.edges, 0, edges, size, other.size);
+            size += other.size;
+        }
+
+        public long[] array() {
+            return edges;
+        }
+
+        public int size() {
+            return size;
+        }
+    }
+}
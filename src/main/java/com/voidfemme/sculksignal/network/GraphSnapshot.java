@@ -0,0 +1,141 @@
+package com.sculksignal.network;
+
+/**
+ * Immutable copy of the sensor graph at one topology version.
+ *
+ * Snapshots are safe to traverse from any thread, which lets route
+ * computation run off the server thread while the live registry keeps changing.
+ *
+ * A snapshot of an {@link AdjacencyStore} shares the store's CSR base arrays
+ * rather than copying them; the store copies its base before it next writes
+ * to it. Only the node table, degrees and the small overlay of recent edges
+ * are copied, so taking one costs O(nodes) array copies, not a walk of every
+ * edge.
+ */
+public final class GraphSnapshot implements SensorGraph {
+
+    private static final int TOMBSTONE = -1;
+
+    private final long version;
+    private final SculkNode[] nodes;
+    private final int[] degrees;
+    private final int[] baseOffsets;
+    private final int[] baseTargets;
+    private final int baseNodeCount;
+    private final int[][] overlay;
+    private final int edgeCount;
+
+    GraphSnapshot(long version, SculkNode[] nodes, int[] degrees, int[] baseOffsets, int[] baseTargets,
+                  int baseNodeCount, int[][] overlay, int edgeCount) {
+        this.version = version;
+        this.nodes = nodes;
+        this.degrees = degrees;
+        this.baseOffsets = baseOffsets;
+        this.baseTargets = baseTargets;
+        this.baseNodeCount = baseNodeCount;
+        this.overlay = overlay;
+        this.edgeCount = edgeCount;
+    }
+
+    /**
+     * Copy any graph into a compact CSR snapshot
+     */
+    public static GraphSnapshot capture(SensorGraph graph, long version) {
+        int idBound = graph.getIdBound();
+        SculkNode[] nodes = new SculkNode[idBound];
+        int[] degrees = new int[idBound];
+        int[] offsets = new int[idBound + 1];
+
+        for (int id = 0; id < idBound; id++) {
+            nodes[id] = graph.getNode(id);
+            degrees[id] = nodes[id] != null ? graph.getDegree(id) : 0;
+            offsets[id + 1] = offsets[id] + degrees[id];
+        }
+
+        int[] targets = new int[offsets[idBound]];
+        NeighborCursor cursor = graph.cursor();
+        for (int id = 0; id < idBound; id++) {
+            if (nodes[id] == null) {
+                continue;
+            }
+
+            int write = offsets[id];
+            cursor.reset(id);
+            for (int neighbor = cursor.next(); neighbor >= 0; neighbor = cursor.next()) {
+                targets[write++] = neighbor;
+            }
+        }
+
+        return new GraphSnapshot(version, nodes, degrees, offsets, targets, idBound, new int[idBound][],
+                targets.length / 2);
+    }
+
+    /**
+     * Topology version of the registry this snapshot was taken from
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    @Override
+    public int getIdBound() {
+        return nodes.length;
+    }
+
+    @Override
+    public SculkNode getNode(int id) {
+        return id >= 0 && id < nodes.length ? nodes[id] : null;
+    }
+
+    @Override
+    public int getDegree(int id) {
+        return degrees[id];
+    }
+
+    /**
+     * Number of undirected edges
+     */
+    public int getEdgeCount() {
+        return edgeCount;
+    }
+
+    @Override
+    public NeighborCursor cursor() {
+        return new SnapshotCursor();
+    }
+
+    private final class SnapshotCursor implements NeighborCursor {
+        private int position;
+        private int baseEnd;
+        private int[] extra;
+        private int extraPosition;
+
+        @Override
+        public void reset(int id) {
+            if (id < baseNodeCount) {
+                this.position = baseOffsets[id];
+                this.baseEnd = baseOffsets[id + 1];
+            } else {
+                this.position = 0;
+                this.baseEnd = 0;
+            }
+            this.extra = overlay[id];
+            this.extraPosition = 0;
+        }
+
+        @Override
+        public int next() {
+            while (position < baseEnd) {
+                int target = baseTargets[position++];
+                if (target != TOMBSTONE) {
+                    return target;
+                }
+            }
+
+            if (extra != null && extraPosition < extra.length) {
+                return extra[extraPosition++];
+            }
+            return -1;
+        }
+    }
+}
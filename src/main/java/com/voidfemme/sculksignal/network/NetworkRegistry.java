@@ -9,20 +9,39 @@ import org.bukkit.Location;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
 
 /**
- * Registry for managing sculk sensor network with efficient spatial indexing
+ * Registry for managing sculk sensor network with efficient spatial indexing.
+ *
+ * Sensors are kept in one {@link WorldShard} per world, each with its own
+ * index, connections, components and topology version, so changes and
+ * searches in one world never look at another.
  */
 public class NetworkRegistry {
 
+    public static final double SENSOR_RANGE = 16.0; // Calibrated sculk sensor range
+
     private final SculkSignalPlugin plugin;
-    private final Map<Location, SculkNode> registeredSensors;
-    private final Map<ChunkCoordinate, Set<SculkNode>> sensorsByChunk;
+    private final Map<String, WorldShard> shards;
+    private final List<RegistryListener> listeners;
 
     public NetworkRegistry(SculkSignalPlugin plugin) {
         this.plugin = plugin;
-        this.registeredSensors = new ConcurrentHashMap<>();
-        this.sensorsByChunk = new ConcurrentHashMap<>();
+        this.shards = new ConcurrentHashMap<>();
+        this.listeners = new CopyOnWriteArrayList<>();
+    }
+
+    /**
+     * Add a listener for sensors joining or leaving the network
+     */
+    public void addListener(RegistryListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(RegistryListener listener) {
+        listeners.remove(listener);
     }
 
     /**
@@ -30,20 +49,28 @@ public class NetworkRegistry {
      */
     public void registerSensor(SculkNode node) {
         Location location = node.getLocation();
+        if (isRegistered(location)) {
+            return; // Ignore a second sensor at the same block
+        }
 
-        // Add to main registry
-        registeredSensors.put(location, node);
+        for (RegistryListener listener : listeners) {
+            listener.onSensorRegistering(node);
+        }
 
-        // Add to spatial index
-        ChunkCoordinate chunkCoord = new ChunkCoordinate(location);
-        sensorsByChunk.computeIfAbsent(chunkCoord, k -> ConcurrentHashMap.newKeySet()).add(node);
+        // Paging the neighbourhood in may have brought in a saved sensor at this block
+        WorldShard shard = getOrCreateShard(node.getWorldName());
+        if (shard.find(node) != null) {
+            return;
+        }
+        shard.add(node);
 
-        // Calculate connections to nearby sensors
-        calculateConnections(node);
+        for (RegistryListener listener : listeners) {
+            listener.onSensorRegistered(node);
+        }
 
         if (plugin.getPluginConfig().isDebugEnabled()) {
             plugin.getLogger().info("Registered sensor at " + location +
-                    " with " + node.getConnectedSensors().size() + " connections");
+                    " with " + node.getConnectionCount() + " connections");
         }
     }
 
@@ -51,56 +78,121 @@ public class NetworkRegistry {
      * Unregister a sculk sensor from the network
      */
     public void unregisterSensor(Location location) {
-        SculkNode node = registeredSensors.remove(location);
+        WorldShard shard = shards.get(location.getWorld().getName());
+        SculkNode node = shard != null
+                ? shard.find(location.getBlockX(), location.getBlockY(), location.getBlockZ())
+                : null;
         if (node == null) {
             return;
         }
 
-        // Remove from spatial index
-        ChunkCoordinate chunkCoord = new ChunkCoordinate(location);
-        Set<SculkNode> chunkSensors = sensorsByChunk.get(chunkCoord);
-        if (chunkSensors != null) {
-            chunkSensors.remove(node);
-            if (chunkSensors.isEmpty()) {
-                sensorsByChunk.remove(chunkCoord);
-            }
-        }
+        shard.remove(node);
 
-        // Remove all connections to this node
-        registeredSensors.values().forEach(other -> other.removeConnection(node));
+        for (RegistryListener listener : listeners) {
+            listener.onSensorUnregistered(node);
+        }
 
         if (plugin.getPluginConfig().isDebugEnabled()) {
             plugin.getLogger().info("Unregistered sensor at " + location);
         }
     }
 
+    /**
+     * Mark a registered sensor as critical or not. Returns false if nothing changed.
+     */
+    public boolean setSensorCritical(SculkNode node, boolean critical) {
+        if (node.getId() < 0 || node.isCritical() == critical) {
+            return false;
+        }
+
+        node.setCritical(critical);
+        for (RegistryListener listener : listeners) {
+            listener.onSensorChanged(node);
+        }
+        return true;
+    }
+
+    /**
+     * Tune a registered sensor to the frequencies in the mask (bit f for
+     * frequency f, 0 for every frequency). Returns false if nothing changed.
+     */
+    public boolean setSensorFrequencies(SculkNode node, int frequencies) {
+        if (node.getId() < 0 || node.getFrequencies() == frequencies) {
+            return false;
+        }
+
+        shards.get(node.getWorldName()).retune(node, frequencies);
+        for (RegistryListener listener : listeners) {
+            listener.onSensorChanged(node);
+        }
+        return true;
+    }
+
     /**
      * Check if a sensor is registered at the given location
      */
     public boolean isRegistered(Location location) {
-        return registeredSensors.containsKey(location);
+        return getSensor(location) != null;
     }
 
     /**
      * Get the sensor at the given location
      */
     public SculkNode getSensor(Location location) {
-        return registeredSensors.get(location);
+        return getSensorAt(location.getWorld().getName(),
+                location.getBlockX(), location.getBlockY(), location.getBlockZ());
+    }
+
+    /**
+     * Get the sensor at a block position without allocating, or null if there
+     * is none. Cheap enough to call for every block event on the server.
+     */
+    public SculkNode getSensorAt(String worldName, int blockX, int blockY, int blockZ) {
+        WorldShard shard = shards.get(worldName);
+        return shard != null ? shard.find(blockX, blockY, blockZ) : null;
+    }
+
+    /**
+     * Whether a sensor may be registered in the block column. Unlike the other
+     * lookups this is safe from any thread, for filtering block events on
+     * region threads before they are handed to the engine; a true answer still
+     * needs confirming there with {@link #getSensorAt}.
+     */
+    public boolean mayHaveSensorInColumn(String worldName, int blockX, int blockZ) {
+        WorldShard shard = shards.get(worldName);
+        return shard != null && shard.getIndex().mayContainColumn(blockX, blockZ);
     }
 
     /**
      * Get all registered sensors
      */
     public Map<Location, SculkNode> getAllSensors() {
-        return new HashMap<>(registeredSensors);
+        Map<Location, SculkNode> sensors = new HashMap<>();
+        for (WorldShard shard : shards.values()) {
+            for (SculkNode node : shard.getSensors()) {
+                sensors.put(node.getLocation(), node);
+            }
+        }
+        return sensors;
     }
 
     /**
      * Get all sensors in a specific chunk
      */
     public Set<SculkNode> getSensorsInChunk(ChunkCoordinate chunkCoord) {
-        Set<SculkNode> sensors = sensorsByChunk.get(chunkCoord);
-        return sensors != null ? new HashSet<>(sensors) : Collections.emptySet();
+        WorldShard shard = shards.get(chunkCoord.getWorldName());
+        ChunkSensorIndex.SensorBucket bucket = shard != null
+                ? shard.getIndex().get(chunkCoord.getX(), chunkCoord.getZ())
+                : null;
+        if (bucket == null) {
+            return Collections.emptySet();
+        }
+
+        Set<SculkNode> sensors = new HashSet<>(bucket.size() * 2);
+        for (int i = 0; i < bucket.size(); i++) {
+            sensors.add(bucket.get(i));
+        }
+        return sensors;
     }
 
     /**
@@ -108,83 +200,238 @@ public class NetworkRegistry {
      */
     public Set<SculkNode> getSensorsInRange(Location center, double maxDistance) {
         Set<SculkNode> nearBySensors = new HashSet<>();
-        ChunkCoordinate centerChunk = new ChunkCoordinate(center);
+        WorldShard shard = shards.get(center.getWorld().getName());
+        if (shard != null) {
+            shard.collectSensorsInRange(center.getX(), center.getY(), center.getZ(), maxDistance, nearBySensors);
+        }
+        return nearBySensors;
+    }
 
-        // Calculate how many chunks to check based on the range
-        int chunkRadius = (int) Math.ceil(maxDistance / 16.0) + 1;
+    /**
+     * Recalculate all connections in the network (expensive operation)
+     */
+    public void recalculateAllConnections() {
+        plugin.getLogger().info("Recalculating all network connections...");
+        long startTime = System.nanoTime();
+        int parallelism = 1;
+        ForkJoinPool pool = null;
+
+        if (plugin.getPluginConfig().isParallelRebuildEnabled()) {
+            parallelism = plugin.getPluginConfig().getRebuildParallelism();
+            if (parallelism <= 0) {
+                parallelism = Runtime.getRuntime().availableProcessors();
+            }
+            pool = new ForkJoinPool(parallelism);
+        }
 
-        for (int dx = -chunkRadius; dx <= chunkRadius; dx++) {
-            for (int dz = -chunkRadius; dz <= chunkRadius; dz++) {
-                ChunkCoordinate checkChunk = centerChunk.offset(dx, dz);
-                Set<SculkNode> chunkSensors = sensorsByChunk.get(checkChunk);
+        // Connections never cross worlds, so each shard is rebuilt on its own
+        int totalSensors = 0;
+        int totalConnections = 0;
+        try {
+            for (WorldShard shard : shards.values()) {
+                shard.rebuildConnections(pool);
+                totalSensors += shard.getSensorCount();
+                totalConnections += shard.getAdjacency().getEdgeCount();
+            }
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
+
+        long durationMs = (System.nanoTime() - startTime) / 1_000_000;
+
+        plugin.getLogger().info("Network recalculation complete in " + durationMs + " ms. " +
+                totalSensors + " sensors in " + shards.size() + " worlds, " +
+                totalConnections + " connections, parallelism " + parallelism);
+    }
+
+    /**
+     * Register a batch of previously saved sensors together with their saved
+     * connections, without searching for connections again. Edges are pairs of
+     * indices into {@code nodes}: edge i joins edges[2i] and edges[2i + 1].
+     * Sensors already registered at the same location are skipped along with
+     * their edges. Listeners only hear of the batch through
+     * {@link RegistryListener#onSensorsRestored}. Returns the number of
+     * sensors restored.
+     */
+    public int restoreSensors(List<SculkNode> nodes, int[] edges) {
+        if (nodes.isEmpty()) {
+            return 0;
+        }
+
+        // Split the batch by world, renumbering the edges within each part
+        Map<String, List<SculkNode>> byWorld = new HashMap<>();
+        int[] localIndex = new int[nodes.size()];
+        for (int i = 0; i < localIndex.length; i++) {
+            List<SculkNode> part = byWorld.computeIfAbsent(nodes.get(i).getWorldName(), k -> new ArrayList<>());
+            localIndex[i] = part.size();
+            part.add(nodes.get(i));
+        }
 
-                if (chunkSensors != null) {
-                    chunkSensors.stream()
-                            .filter(sensor -> center.distance(sensor.getLocation()) <= maxDistance)
-                            .forEach(nearBySensors::add);
+        Map<String, int[]> edgesByWorld = new HashMap<>();
+        Map<String, Integer> edgeCounts = new HashMap<>();
+        for (int i = 0; i + 1 < edges.length; i += 2) {
+            String worldName = nodes.get(edges[i]).getWorldName();
+            if (!worldName.equals(nodes.get(edges[i + 1]).getWorldName())) {
+                continue; // Connections never cross worlds
+            }
+
+            int count = edgeCounts.getOrDefault(worldName, 0);
+            int[] part = edgesByWorld.get(worldName);
+            if (part == null || count + 2 > part.length) {
+                part = part == null ? new int[Math.max(16, edges.length)] : Arrays.copyOf(part, part.length << 1);
+                edgesByWorld.put(worldName, part);
+            }
+            part[count] = localIndex[edges[i]];
+            part[count + 1] = localIndex[edges[i + 1]];
+            edgeCounts.put(worldName, count + 2);
+        }
+
+        List<SculkNode> restored = new ArrayList<>(nodes.size());
+        for (Map.Entry<String, List<SculkNode>> entry : byWorld.entrySet()) {
+            int[] part = edgesByWorld.get(entry.getKey());
+            int[] partEdges = part != null ? Arrays.copyOf(part, edgeCounts.get(entry.getKey())) : new int[0];
+            int[] ids = getOrCreateShard(entry.getKey()).restore(entry.getValue(), partEdges);
+            for (int i = 0; i < ids.length; i++) {
+                if (ids[i] >= 0) {
+                    restored.add(entry.getValue().get(i));
                 }
             }
         }
 
-        return nearBySensors;
+        if (!restored.isEmpty()) {
+            for (RegistryListener listener : listeners) {
+                listener.onSensorsRestored(restored);
+            }
+        }
+        return restored.size();
     }
 
     /**
-     * Calculate connections for a specific sensor
+     * Connect two registered sensors directly, without a range check. Used to
+     * restore saved connections that cross a region boundary. Returns false if
+     * they were already connected.
      */
-    private void calculateConnections(SculkNode newNode) {
-        final double SENSOR_RANGE = 16.0; // Calibrated sculk sensor range
-
-        // Clear existing connections for this node
-        newNode.getConnectedSensors().clear();
+    public boolean connectSensors(SculkNode a, SculkNode b) {
+        if (a.getId() < 0 || b.getId() < 0 || !a.getWorldName().equals(b.getWorldName())) {
+            return false;
+        }
 
-        // Find all sensors within range using spatial indexing
-        Set<SculkNode> nearBySensors = getSensorsInRange(newNode.getLocation(), SENSOR_RANGE);
+        return shards.get(a.getWorldName()).connect(a, b);
+    }
 
-        for (SculkNode other : nearBySensors) {
-            if (!other.equals(newNode) &&
-                    newNode.getLocation().getWorld().equals(other.getLocation().getWorld()) &&
-                    newNode.distanceTo(other) <= SENSOR_RANGE) {
+    /**
+     * Drop a batch of sensors from memory without notifying listeners. Unlike
+     * {@link #unregisterSensor}, this does not mean the sensors were removed
+     * from the world; it is how paged-out regions leave the registry.
+     */
+    public void evictSensors(Collection<SculkNode> nodes) {
+        Map<String, List<SculkNode>> byWorld = new HashMap<>();
+        for (SculkNode node : nodes) {
+            byWorld.computeIfAbsent(node.getWorldName(), k -> new ArrayList<>()).add(node);
+        }
 
-                // Create bidirectional connection
-                newNode.addConnection(other);
-                other.addConnection(newNode);
+        byWorld.forEach((worldName, part) -> {
+            WorldShard shard = shards.get(worldName);
+            if (shard != null) {
+                shard.evict(part);
             }
+        });
+    }
+
+    /**
+     * Sensors in a region of 2^shift by 2^shift chunks
+     */
+    public List<SculkNode> getSensorsInRegion(String worldName, int regionX, int regionZ, int shift) {
+        List<SculkNode> sensors = new ArrayList<>();
+        WorldShard shard = shards.get(worldName);
+        if (shard != null) {
+            shard.collectSensorsInRegion(regionX, regionZ, shift, sensors);
         }
+        return sensors;
     }
 
     /**
-     * Recalculate all connections in the network (expensive operation)
+     * The shard holding a world's sensors, or null if no sensor has been
+     * registered in that world yet
      */
-    public void recalculateAllConnections() {
-        plugin.getLogger().info("Recalculating all network connections...");
+    public WorldShard getShard(String worldName) {
+        return shards.get(worldName);
+    }
 
-        // Clear all connections
-        registeredSensors.values().forEach(node -> node.getConnectedSensors().clear());
+    /**
+     * Every world shard, including ones left empty
+     */
+    public Collection<WorldShard> getShards() {
+        return Collections.unmodifiableCollection(shards.values());
+    }
 
-        // Recalculate all connections
-        registeredSensors.values().forEach(this::calculateConnections);
+    private WorldShard getOrCreateShard(String worldName) {
+        return shards.computeIfAbsent(worldName,
+                name -> new WorldShard(name, plugin.getPluginConfig().getClusterChunks()));
+    }
 
-        int totalConnections = registeredSensors.values().stream()
-                .mapToInt(node -> node.getConnectedSensors().size())
-                .sum() / 2; // Divide by 2 because connections are bidirectional
+    /**
+     * Number of sensors in the same connected component as the given sensor,
+     * including itself. Returns 0 for unregistered sensors.
+     */
+    public int getComponentSize(SculkNode node) {
+        WorldShard shard = shards.get(node.getWorldName());
+        return shard != null ? shard.getComponentSize(node) : 0;
+    }
 
-        plugin.getLogger().info("Network recalculation complete. " +
-                registeredSensors.size() + " sensors, " +
-                totalConnections + " connections");
+    /**
+     * Number of sensors in the same connected component as the given sensor,
+     * including itself, that a signal on the given frequency is delivered to
+     */
+    public int getTunedSensorCount(SculkNode node, int frequency) {
+        WorldShard shard = shards.get(node.getWorldName());
+        return shard != null ? shard.getTunedCount(node, frequency) : 0;
     }
 
     /**
-     * Get network statistics
+     * Get network statistics, summed over every world
      */
     public NetworkStats getNetworkStats() {
-        int totalSensors = registeredSensors.size();
-        int totalConnections = registeredSensors.values().stream()
-                .mapToInt(node -> node.getConnectedSensors().size())
-                .sum() / 2;
-        int totalChunks = sensorsByChunk.size();
+        int totalSensors = 0;
+        int totalConnections = 0;
+        int totalChunks = 0;
+        int components = 0;
+        int largestComponent = 0;
+        int isolatedSensors = 0;
+        for (WorldShard shard : shards.values()) {
+            NetworkStats stats = shard.getStats();
+            totalSensors += stats.totalSensors;
+            totalConnections += stats.totalConnections;
+            totalChunks += stats.chunksWithSensors;
+            components += stats.components;
+            largestComponent = Math.max(largestComponent, stats.largestComponent);
+            isolatedSensors += stats.isolatedSensors;
+        }
+
+        return new NetworkStats(totalSensors, totalConnections, totalChunks,
+                components, largestComponent, isolatedSensors);
+    }
 
-        return new NetworkStats(totalSensors, totalConnections, totalChunks);
+    /**
+     * Cluster routing statistics, summed over every world
+     */
+    public ClusterGraph.ClusterStats getClusterStats() {
+        int clusters = 0;
+        long routes = 0;
+        long clustersCrossed = 0;
+        long clustersExpanded = 0;
+        long tableRebuilds = 0;
+        for (WorldShard shard : shards.values()) {
+            ClusterGraph.ClusterStats stats = shard.getClusterGraph().getStats();
+            clusters += stats.clusters;
+            routes += stats.routes;
+            clustersCrossed += stats.clustersCrossed;
+            clustersExpanded += stats.clustersExpanded;
+            tableRebuilds += stats.tableRebuilds;
+        }
+        return new ClusterGraph.ClusterStats(clusters, routes, clustersCrossed, clustersExpanded, tableRebuilds);
     }
 
     /**
@@ -194,17 +441,26 @@ public class NetworkRegistry {
         public final int totalSensors;
         public final int totalConnections;
         public final int chunksWithSensors;
+        public final int components;
+        public final int largestComponent;
+        public final int isolatedSensors;
 
-        public NetworkStats(int totalSensors, int totalConnections, int chunksWithSensors) {
+        public NetworkStats(int totalSensors, int totalConnections, int chunksWithSensors,
+                            int components, int largestComponent, int isolatedSensors) {
             this.totalSensors = totalSensors;
             this.totalConnections = totalConnections;
             this.chunksWithSensors = chunksWithSensors;
+            this.components = components;
+            this.largestComponent = largestComponent;
+            this.isolatedSensors = isolatedSensors;
         }
 
         @Override
         public String toString() {
-            return String.format("NetworkStats{sensors=%d, connections=%d, chunks=%d}",
-                    totalSensors, totalConnections, chunksWithSensors);
+            return String.format("NetworkStats{sensors=%d, connections=%d, chunks=%d, " +
+                            "components=%d, largestComponent=%d, isolated=%d}",
+                    totalSensors, totalConnections, chunksWithSensors,
+                    components, largestComponent, isolatedSensors);
         }
     }
 }
@@ -1,102 +1,288 @@
-package com.sculksignal.util;
+package com.sculksignal.network;
 
-import org.bukkit.Chunk;
-import org.bukkit.Location;
-import org.bukkit.World;
+import com.sculksignal.util.ChunkCoordinate;
 
-import java.util.Objects;
+import java.util.*;
 
 /**
- * Represents a chunk coordinate for efficient spatial indexing
+ * Graph traversal over the sensor network: reachability, paths and chunk requirements
  */
-public class ChunkCoordinate {
+public class PathCalculator {
 
-    private final String worldName;
-    private final int x;
-    private final int z;
+    /**
+     * Hop limit of a traversal that only stops at the distance limit
+     */
+    public static final int UNLIMITED_HOPS = Integer.MAX_VALUE;
 
-    public ChunkCoordinate(String worldName, int x, int z) {
-        this.worldName = worldName;
-        this.x = x;
-        this.z = z;
-    }
+    private final NetworkRegistry registry;
 
-    public ChunkCoordinate(Chunk chunk) {
-        this(chunk.getWorld().getName(), chunk.getX(), chunk.getZ());
+    public PathCalculator(NetworkRegistry registry) {
+        this.registry = registry;
     }
 
-    public ChunkCoordinate(Location location) {
-        this(location.getWorld().getName(),
-                location.getBlockX() >> 4,
-                location.getBlockZ() >> 4);
+    /**
+     * The graph of the source's world
+     */
+    private AdjacencyStore graphOf(SculkNode source) {
+        return registry.getShard(source.getWorldName()).getAdjacency();
     }
 
-    public String getWorldName() {
-        return worldName;
+    /**
+     * Build the shortest-path tree rooted at the source in a single breadth-first
+     * pass. Only sensors within maxDistance blocks of the source are visited.
+     */
+    public ShortestPathTree buildShortestPathTree(SculkNode source, double maxDistance) {
+        return buildShortestPathTree(source, maxDistance, 16);
     }
 
-    public int getX() {
-        return x;
+    /**
+     * Build the shortest-path tree, sizing its working set for the expected number
+     * of reachable nodes (typically the size of the source's component)
+     */
+    public ShortestPathTree buildShortestPathTree(SculkNode source, double maxDistance, int expectedSize) {
+        return buildShortestPathTree(graphOf(source), source, maxDistance, expectedSize);
     }
 
-    public int getZ() {
-        return z;
+    /**
+     * Build the shortest-path tree over the given graph. Safe to call off the
+     * server thread when the graph is a {@link GraphSnapshot}.
+     */
+    public static ShortestPathTree buildShortestPathTree(SensorGraph graph, SculkNode source,
+                                                         double maxDistance, int expectedSize) {
+        return buildShortestPathTree(graph, source, maxDistance, UNLIMITED_HOPS, expectedSize,
+                SculkNode.ANY_FREQUENCY, -1);
     }
 
     /**
-     * Get a chunk coordinate offset by the given amounts
+     * Build the shortest-path tree over the given graph, stopping as soon as
+     * {@code tunedTargets} sensors tuned to the frequency have been reached
+     * (never, if negative). Sensors past the last tuned one have nobody
+     * downstream to relay to, so the search does not need to reach them.
      */
-    public ChunkCoordinate offset(int dx, int dz) {
-        return new ChunkCoordinate(worldName, x + dx, z + dz);
+    public static ShortestPathTree buildShortestPathTree(SensorGraph graph, SculkNode source,
+                                                         double maxDistance, int expectedSize,
+                                                         int frequency, int tunedTargets) {
+        return buildShortestPathTree(graph, source, maxDistance, UNLIMITED_HOPS, expectedSize, frequency, tunedTargets);
     }
 
     /**
-     * Get all chunk coordinates in a 3x3 area around this chunk
+     * Build the shortest-path tree over the given graph, going no more than
+     * maxHops hops from the source. The search ends once the hop limit leaves
+     * nothing to expand, so its cost follows the limit rather than the size
+     * of the component. Node ids are taken from the graph rather than the
+     * nodes, which may have changed since a snapshot was taken; a source the
+     * graph does not hold gets a tree of itself alone.
      */
-    public ChunkCoordinate[] getNeighbors() {
-        ChunkCoordinate[] neighbors = new ChunkCoordinate[9];
-        int index = 0;
+    public static ShortestPathTree buildShortestPathTree(SensorGraph graph, SculkNode source,
+                                                         double maxDistance, int maxHops, int expectedSize,
+                                                         int frequency, int tunedTargets) {
+        SensorGraph.NeighborCursor cursor = graph.cursor();
+        double maxDistanceSquared = maxDistance * maxDistance;
+
+        ShortestPathTree tree = new ShortestPathTree(expectedSize);
+        tree.add(source, -1, 0);
+        int sourceId = source.getId();
+        if (sourceId < 0 || graph.getNode(sourceId) != source) {
+            return tree;
+        }
+
+        BitSet visited = new BitSet(graph.getIdBound());
+        visited.set(sourceId);
+        int tunedFound = 0;
 
-        for (int dx = -1; dx <= 1; dx++) {
-            for (int dz = -1; dz <= 1; dz++) {
-                neighbors[index++] = offset(dx, dz);
+        // The node list doubles as the BFS queue, with the graph ids alongside
+        int[] ids = new int[Math.max(expectedSize, 2)];
+        ids[0] = sourceId;
+        for (int head = 0; head < tree.size() && tunedFound != tunedTargets; head++) {
+            if (tree.getDepth(head) >= maxHops) {
+                break; // Everything after this is at least as deep
+            }
+            int nextDepth = tree.getDepth(head) + 1;
+
+            cursor.reset(ids[head]);
+            for (int id = cursor.next(); id >= 0; id = cursor.next()) {
+                if (visited.get(id)) {
+                    continue;
+                }
+
+                SculkNode neighbor = graph.getNode(id);
+                if (neighbor.distanceSquaredTo(source.getX(), source.getY(), source.getZ()) > maxDistanceSquared) {
+                    continue;
+                }
+
+                visited.set(id);
+                if (tree.size() == ids.length) {
+                    ids = Arrays.copyOf(ids, ids.length << 1);
+                }
+                ids[tree.size()] = id;
+                tree.add(neighbor, head, nextDepth);
+                if (neighbor.isTunedTo(frequency) && ++tunedFound == tunedTargets) {
+                    break;
+                }
             }
         }
 
-        return neighbors;
+        return tree;
     }
 
     /**
-     * Calculate distance between two chunk coordinates
+     * Find every sensor reachable from the source without leaving maxDistance blocks of it
      */
-    public double distance(ChunkCoordinate other) {
-        if (!worldName.equals(other.worldName)) {
-            return Double.MAX_VALUE;
-        }
+    public Set<SculkNode> findReachableSensors(SculkNode source, double maxDistance) {
+        return findReachableSensors(source, maxDistance, UNLIMITED_HOPS);
+    }
 
-        int dx = x - other.x;
-        int dz = z - other.z;
-        return Math.sqrt(dx * dx + dz * dz);
+    /**
+     * Find every sensor reachable from the source in at most maxHops hops,
+     * without leaving maxDistance blocks of it
+     */
+    public Set<SculkNode> findReachableSensors(SculkNode source, double maxDistance, int maxHops) {
+        ShortestPathTree tree = buildShortestPathTree(graphOf(source), source, maxDistance, maxHops, 16,
+                SculkNode.ANY_FREQUENCY, -1);
+        Set<SculkNode> reachable = new HashSet<>(tree.size() * 2);
+        for (int i = 0; i < tree.size(); i++) {
+            reachable.add(tree.getNode(i));
+        }
+        return reachable;
     }
 
-    @Override
-    public boolean equals(Object obj) {
-        if (this == obj)
-            return true;
-        if (obj == null || getClass() != obj.getClass())
-            return false;
+    /**
+     * Find the shortest hop path from source to target, or an empty list if
+     * the target is unreachable. The returned path includes both endpoints.
+     */
+    public List<SculkNode> findPath(SculkNode source, SculkNode target) {
+        if (source.equals(target)) {
+            return Collections.singletonList(source);
+        }
+
+        if (source.getId() < 0 || target.getId() < 0 || !source.getWorldName().equals(target.getWorldName())) {
+            return Collections.emptyList();
+        }
+
+        AdjacencyStore adjacency = graphOf(source);
+        SensorGraph.NeighborCursor cursor = adjacency.cursor();
+
+        // parents[id] holds the BFS parent id + 1, so 0 means unvisited
+        int[] parents = new int[adjacency.getIdBound()];
+        int[] queue = new int[adjacency.getIdBound()];
+        int head = 0;
+        int tail = 0;
+        parents[source.getId()] = source.getId() + 1;
+        queue[tail++] = source.getId();
+
+        while (head < tail) {
+            int current = queue[head++];
 
-        ChunkCoordinate that = (ChunkCoordinate) obj;
-        return x == that.x && z == that.z && Objects.equals(worldName, that.worldName);
+            cursor.reset(current);
+            for (int id = cursor.next(); id >= 0; id = cursor.next()) {
+                if (parents[id] != 0) {
+                    continue;
+                }
+                parents[id] = current + 1;
+
+                if (id == target.getId()) {
+                    LinkedList<SculkNode> path = new LinkedList<>();
+                    for (int step = id; step != source.getId(); step = parents[step] - 1) {
+                        path.addFirst(adjacency.getNode(step));
+                    }
+                    path.addFirst(source);
+                    return new ArrayList<>(path);
+                }
+                queue[tail++] = id;
+            }
+        }
+
+        return Collections.emptyList();
+    }
+
+    /**
+     * Get all chunks that must be loaded for a signal to travel the given path
+     */
+    public Set<ChunkCoordinate> getRequiredChunks(List<SculkNode> path) {
+        Set<ChunkCoordinate> chunks = new LinkedHashSet<>();
+        for (SculkNode node : path) {
+            chunks.add(new ChunkCoordinate(node.getWorldName(), node.getChunkX(), node.getChunkZ()));
+        }
+        return chunks;
     }
 
-    @Override
-    public int hashCode() {
-        return Objects.hash(worldName, x, z);
+    /**
+     * Get all chunks that must be loaded for a signal to reach every node in the tree
+     */
+    public static Set<ChunkCoordinate> getRequiredChunks(ShortestPathTree tree) {
+        Set<ChunkCoordinate> chunks = new LinkedHashSet<>();
+        for (int i = 0; i < tree.size(); i++) {
+            SculkNode node = tree.getNode(i);
+            chunks.add(new ChunkCoordinate(node.getWorldName(), node.getChunkX(), node.getChunkZ()));
+        }
+        return chunks;
     }
 
-    @Override
-    public String toString() {
-        return String.format("ChunkCoordinate{world=%s, x=%d, z=%d}", worldName, x, z);
+    /**
+     * Breadth-first shortest-path tree. Nodes are stored in visit order, so
+     * depths are non-decreasing and every parent index precedes its child.
+     */
+    public static class ShortestPathTree {
+
+        private SculkNode[] nodes;
+        private int[] parents;
+        private int[] depths;
+        private int size;
+
+        ShortestPathTree(int initialCapacity) {
+            int capacity = Math.max(initialCapacity, 2);
+            this.nodes = new SculkNode[capacity];
+            this.parents = new int[capacity];
+            this.depths = new int[capacity];
+        }
+
+        void add(SculkNode node, int parent, int depth) {
+            if (size == nodes.length) {
+                int capacity = size << 1;
+                nodes = Arrays.copyOf(nodes, capacity);
+                parents = Arrays.copyOf(parents, capacity);
+                depths = Arrays.copyOf(depths, capacity);
+            }
+            nodes[size] = node;
+            parents[size] = parent;
+            depths[size] = depth;
+            size++;
+        }
+
+        /**
+         * Number of nodes in the tree, including the root at index 0
+         */
+        public int size() {
+            return size;
+        }
+
+        public SculkNode getNode(int index) {
+            return nodes[index];
+        }
+
+        /**
+         * Index of the node's parent in this tree, or -1 for the root
+         */
+        public int getParent(int index) {
+            return parents[index];
+        }
+
+        /**
+         * Hop count from the root to the node
+         */
+        public int getDepth(int index) {
+            return depths[index];
+        }
+
+        /**
+         * Reconstruct the path from the root to the node at the given index
+         */
+        public List<SculkNode> getPathTo(int index) {
+            LinkedList<SculkNode> path = new LinkedList<>();
+            for (int i = index; i >= 0; i = parents[i]) {
+                path.addFirst(nodes[i]);
+            }
+            return new ArrayList<>(path);
+        }
     }
 }
@@ -0,0 +1,34 @@
+package com.sculksignal.network;
+
+import java.util.List;
+
+/**
+ * Notified on the server thread whenever a sensor joins, leaves or changes
+ * in the registry
+ */
+public interface RegistryListener {
+
+    /**
+     * Called before a sensor is added and its connections are searched for
+     */
+    default void onSensorRegistering(SculkNode node) {
+    }
+
+    void onSensorRegistered(SculkNode node);
+
+    void onSensorUnregistered(SculkNode node);
+
+    /**
+     * Called after saved sensors are brought back into memory, such as when
+     * their region is paged in. They were registered before, so this is not
+     * a change to the network.
+     */
+    default void onSensorsRestored(List<SculkNode> nodes) {
+    }
+
+    /**
+     * Called after a registered sensor's flags change
+     */
+    default void onSensorChanged(SculkNode node) {
+    }
+}
@@ -9,16 +9,38 @@ import java.util.UUID;
 
 public class SculkNode {
     
+    /**
+     * Frequency of a signal whose vibration frequency is unknown; every sensor hears it
+     */
+    public static final int ANY_FREQUENCY = 0;
+    public static final int MAX_FREQUENCY = 15;
+    
     private final Location location;
     private final UUID owner;
-    private final Set<SculkNode> connectedSensors;
+    private final String worldName;
+    private final int chunkX;
+    private final int chunkZ;
+    private AdjacencyStore adjacency;
+    private int id;
     private boolean isActive;
+    private boolean critical;
+    private int frequencies;
+    private int componentId;
     
     public SculkNode(Location location, UUID owner) {
+        this(location, owner, false, 0);
+    }
+    
+    public SculkNode(Location location, UUID owner, boolean critical, int frequencies) {
         this.location = location.clone();
         this.owner = owner;
-        this.connectedSensors = new HashSet<>();
+        this.worldName = location.getWorld().getName();
+        this.chunkX = location.getBlockX() >> 4;
+        this.chunkZ = location.getBlockZ() >> 4;
+        this.id = -1;
         this.isActive = false;
+        this.critical = critical;
+        this.frequencies = frequencies;
     }
     
     public Location getLocation() {
@@ -29,16 +51,85 @@ public class SculkNode {
         return owner;
     }
     
+    public String getWorldName() {
+        return worldName;
+    }
+    
+    public double getX() {
+        return location.getX();
+    }
+    
+    public double getY() {
+        return location.getY();
+    }
+    
+    public double getZ() {
+        return location.getZ();
+    }
+    
+    public int getChunkX() {
+        return chunkX;
+    }
+    
+    public int getChunkZ() {
+        return chunkZ;
+    }
+    
+    /**
+     * Dense id assigned on registration, or -1 while unregistered
+     */
+    public int getId() {
+        return id;
+    }
+    
+    void attach(AdjacencyStore adjacency, int id) {
+        this.adjacency = adjacency;
+        this.id = id;
+    }
+    
+    void detach() {
+        this.adjacency = null;
+        this.id = -1;
+    }
+    
+    /**
+     * Copy of the connected sensors. Traversals should use an
+     * {@link SensorGraph.NeighborCursor} instead to avoid the copy.
+     */
     public Set<SculkNode> getConnectedSensors() {
-        return new HashSet<>(connectedSensors);
+        if (adjacency == null) {
+            return new HashSet<>();
+        }
+        
+        Set<SculkNode> connected = new HashSet<>(adjacency.getDegree(id) * 2);
+        SensorGraph.NeighborCursor cursor = adjacency.cursor();
+        cursor.reset(id);
+        for (int neighbor = cursor.next(); neighbor >= 0; neighbor = cursor.next()) {
+            connected.add(adjacency.getNode(neighbor));
+        }
+        return connected;
+    }
+    
+    public int getConnectionCount() {
+        return adjacency != null ? adjacency.getDegree(id) : 0;
     }
     
+    /**
+     * Connect this node and another registered node in both directions
+     */
     public void addConnection(SculkNode node) {
-        connectedSensors.add(node);
+        if (adjacency != null && node.adjacency == adjacency) {
+            adjacency.addEdge(id, node.id);
+        }
     }
     
+    /**
+     * Disconnect this node and another registered node in both directions
+     */
     public void removeConnection(SculkNode node) {
-        connectedSensors.remove(node);
+        if (adjacency != null && node.adjacency == adjacency) {
+            adjacency.removeEdge(id, node.id);
+        }
     }
     
     public boolean isActive() {
@@ -49,6 +140,48 @@ public class SculkNode {
         this.isActive = active;
     }
     
+    /**
+     * Whether signals to this sensor load its chunk even when propagation
+     * is set not to load chunks
+     */
+    public boolean isCritical() {
+        return critical;
+    }
+    
+    void setCritical(boolean critical) {
+        this.critical = critical;
+    }
+    
+    /**
+     * Frequencies this sensor is tuned to, as a mask with bit f set for
+     * frequency f. 0 means it is not tuned and hears every frequency.
+     */
+    public int getFrequencies() {
+        return frequencies;
+    }
+    
+    void setFrequencies(int frequencies) {
+        this.frequencies = frequencies;
+    }
+    
+    /**
+     * Whether signals on the given frequency are delivered to this sensor
+     */
+    public boolean isTunedTo(int frequency) {
+        return frequencies == 0 || frequency == ANY_FREQUENCY || (frequencies & (1 << frequency)) != 0;
+    }
+    
+    /**
+     * Id of the connected component this node belongs to, or 0 if unregistered
+     */
+    public int getComponentId() {
+        return componentId;
+    }
+    
+    void setComponentId(int componentId) {
+        this.componentId = componentId;
+    }
+    
     public Chunk getChunk() {
         return location.getChunk();
     }
@@ -57,6 +190,16 @@ public class SculkNode {
         return location.distance(other.location);
     }
     
+    /**
+     * Squared distance to a point in this node's world, without copying the location
+     */
+    public double distanceSquaredTo(double x, double y, double z) {
+        double dx = location.getX() - x;
+        double dy = location.getY() - y;
+        double dz = location.getZ() - z;
+        return dx * dx + dy * dy + dz * dz;
+    }
+    
     @Override
     public boolean equals(Object obj) {
         if (this == obj) return true;
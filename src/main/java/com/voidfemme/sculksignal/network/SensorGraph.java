@@ -0,0 +1,42 @@
+package com.sculksignal.network;
+
+/**
+ * Read access to the sensor graph by dense node id. Implemented by the live
+ * {@link AdjacencyStore} and by immutable {@link GraphSnapshot}s, so the same
+ * traversal code runs on either.
+ */
+public interface SensorGraph {
+
+    /**
+     * One past the highest node id, for sizing per-id arrays
+     */
+    int getIdBound();
+
+    /**
+     * Node with the given id, or null if the id is unused
+     */
+    SculkNode getNode(int id);
+
+    int getDegree(int id);
+
+    /**
+     * Create a cursor for allocation-free iteration over neighbour ids
+     */
+    NeighborCursor cursor();
+
+    /**
+     * Reusable iterator over one node's neighbour ids
+     */
+    interface NeighborCursor {
+
+        /**
+         * Point the cursor at the neighbours of the given node
+         */
+        void reset(int id);
+
+        /**
+         * Next neighbour id, or -1 once every neighbour has been returned
+         */
+        int next();
+    }
+}
@@ -1,83 +1,427 @@
 package com.sculksignal.network;
 
 import com.sculksignal.SculkSignalPlugin;
+import com.sculksignal.scheduler.SignalScheduler;
+import com.sculksignal.scheduler.TimingWheel;
+import com.sculksignal.chunk.ChunkLoadManager;
+import com.sculksignal.chunk.ChunkOutbox;
+import com.sculksignal.trace.TraceRecorder;
 import com.sculksignal.util.ChunkCoordinate;
+import com.sculksignal.util.PackedBlockPos;
 
-import org.bukkit.scheduler.BukkitRunnable;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Handles the propagation of signals through the sculk sensor network
  */
 public class SignalPropagator {
 
+    private static final double MAX_ROUTE_DISTANCE = 1000.0;
+    // Route through clusters when at most one sensor in this many is tuned to the signal
+    private static final int SPARSE_TARGET_RATIO = 4;
+
     private final SculkSignalPlugin plugin;
-    private final PathCalculator pathCalculator;
+    private final BroadcastPlanCache planCache;
+    private final SignalScheduler scheduler;
+    private final ExecutorService routingExecutor;
+    private final AtomicInteger routesInFlight;
+    private final ChunkOutbox outbox;
+    private long unheardSignals;
+    private TraceRecorder traceRecorder;
 
     public SignalPropagator(SculkSignalPlugin plugin) {
         this.plugin = plugin;
-        this.pathCalculator = new PathCalculator(plugin.getNetworkRegistry());
+        this.planCache = new BroadcastPlanCache(plugin.getPluginConfig().getPlanCacheSize());
+        this.scheduler = new SignalScheduler(plugin, new ActivationHandler());
+        this.routingExecutor = plugin.getPluginConfig().isAsyncRoutingEnabled() ? createRoutingExecutor() : null;
+        this.routesInFlight = new AtomicInteger();
+        this.outbox = new ChunkOutbox();
+    }
+
+    /**
+     * Start the tick task that delivers scheduled activations
+     */
+    public void start() {
+        scheduler.start();
+    }
+
+    /**
+     * Stop delivering activations and drop anything still in flight
+     */
+    public void shutdown() {
+        stopTrace();
+        if (routingExecutor != null) {
+            routingExecutor.shutdownNow();
+        }
+        scheduler.stop();
+        outbox.clear();
     }
 
     /**
      * Propagate a signal from the source sensor to all reachable sensors
      */
     public void propagateSignal(SculkNode source, int signalStrength) {
+        propagateSignal(source, signalStrength, SculkNode.ANY_FREQUENCY);
+    }
+
+    /**
+     * Propagate a signal on a vibration frequency from the source sensor to
+     * the reachable sensors tuned to that frequency, with the hop limit and
+     * attenuation from the configuration. Sensors that are not tuned to it
+     * still relay the signal but are not activated.
+     */
+    public void propagateSignal(SculkNode source, int signalStrength, int frequency) {
+        propagateSignal(source, signalStrength, frequency, plugin.getPluginConfig().getMaxHops(),
+                plugin.getPluginConfig().getAttenuationPerHop());
+    }
+
+    /**
+     * Propagate a signal that goes at most maxHops hops (0 for no limit) and
+     * loses attenuation strength per hop. A sensor n hops away is activated
+     * with the source strength minus n times the attenuation, and the signal
+     * goes no further once that would reach 0, so a weak signal only explores
+     * the sensors close to its source.
+     */
+    public void propagateSignal(SculkNode source, int signalStrength, int frequency, int maxHops, int attenuation) {
+        if (traceRecorder != null) {
+            traceRecorder.recordSignal(source, signalStrength, frequency, maxHops, attenuation);
+        }
+
+        int hopLimit = getHopLimit(signalStrength, maxHops, attenuation);
+        if (hopLimit <= 0) {
+            return; // Too weak to reach even the nearest sensor
+        }
+
+        // Bring in any paged-out regions the signal could reach before routing over the graph
+        double maxDistance = Math.min(MAX_ROUTE_DISTANCE, (double) hopLimit * NetworkRegistry.SENSOR_RANGE);
+        plugin.getDataStorage().getRegionStore().pageInReachable(source, maxDistance);
+
+        // An isolated sensor has nobody to talk to
+        int componentSize = plugin.getNetworkRegistry().getComponentSize(source);
+        if (componentSize <= 1) {
+            return;
+        }
+
+        // Nobody in the component is listening on this frequency
+        int tunedTargets = plugin.getNetworkRegistry().getTunedSensorCount(source, frequency) -
+                (source.isTunedTo(frequency) ? 1 : 0);
+        if (tunedTargets <= 0) {
+            unheardSignals++;
+            return;
+        }
+
         if (plugin.getPluginConfig().isDebugEnabled()) {
             plugin.getLogger().info("Propagating signal from " + source.getLocation() +
-                    " with strength " + signalStrength);
+                    " with strength " + signalStrength + " on frequency " + frequency +
+                    (hopLimit != PathCalculator.UNLIMITED_HOPS ? " for up to " + hopLimit + " hops" : ""));
+        }
+
+        WorldShard shard = plugin.getNetworkRegistry().getShard(source.getWorldName());
+        long topologyVersion = shard.getTopologyVersion();
+        int propagationDelay = plugin.getPluginConfig().getPropagationDelay();
+
+        BroadcastPlan plan = planCache.get(source, frequency, hopLimit, topologyVersion, propagationDelay);
+        if (plan != null) {
+            executePlan(plan, signalStrength, attenuation);
+            return;
+        }
+
+        // A signal only a few sensors listen to crosses whole clusters instead of
+        // visiting every relay; a broadcast reaches everyone and gains nothing.
+        // The cluster tables are engine-thread state, so with workers available
+        // every route goes to them instead, where the flat search still stops
+        // at the last tuned sensor
+        int clusterChunks = plugin.getPluginConfig().getClusterChunks();
+        if (routingExecutor == null && clusterChunks > 0 &&
+                (long) tunedTargets * SPARSE_TARGET_RATIO <= componentSize) {
+            ClusterGraph clusterGraph = shard.getClusterGraph();
+            clusterGraph.setClusterChunks(clusterChunks);
+            PathCalculator.ShortestPathTree tree = clusterGraph.route(source, frequency, tunedTargets,
+                    MAX_ROUTE_DISTANCE, hopLimit);
+            plan = BroadcastPlan.fromTree(tree, PathCalculator.getRequiredChunks(tree), topologyVersion,
+                    propagationDelay, frequency, hopLimit);
+            cachePlan(plan);
+            executePlan(plan, signalStrength, attenuation);
+            return;
+        }
+
+        if (routingExecutor != null) {
+            routeAsync(shard, source, signalStrength, attenuation, frequency, hopLimit, tunedTargets, componentSize,
+                    propagationDelay);
+            return;
+        }
+
+        plan = buildPlan(shard.getAdjacency(), topologyVersion,
+                source, frequency, hopLimit, tunedTargets, componentSize, propagationDelay);
+        cachePlan(plan);
+        executePlan(plan, signalStrength, attenuation);
+    }
+
+    /**
+     * Number of hops a signal of the given strength travels: the configured
+     * cap, or less if attenuation wears it down to 0 first
+     */
+    static int getHopLimit(int signalStrength, int maxHops, int attenuation) {
+        int hopLimit = maxHops > 0 ? maxHops : PathCalculator.UNLIMITED_HOPS;
+        if (attenuation > 0) {
+            hopLimit = Math.min(hopLimit, Math.max(signalStrength - 1, 0) / attenuation);
+        }
+        return hopLimit;
+    }
+
+    /**
+     * Compute the plan on a worker over the latest published snapshot of the
+     * source's world, then hand only the finished plan back to the engine
+     * thread. The snapshot may be a few changes behind; such plans are used
+     * once and not cached. A source too new to be in it is routed here.
+     */
+    private void routeAsync(WorldShard shard, SculkNode source, int signalStrength, int attenuation, int frequency,
+                            int hopLimit, int tunedTargets, int componentSize, int propagationDelay) {
+        GraphSnapshot snapshot = shard.getGraphSnapshot(scheduler.getCurrentTick());
+        if (snapshot.getNode(source.getId()) != source) {
+            BroadcastPlan plan = buildPlan(shard.getAdjacency(), shard.getTopologyVersion(), source, frequency,
+                    hopLimit, tunedTargets, componentSize, propagationDelay);
+            cachePlan(plan);
+            executePlan(plan, signalStrength, attenuation);
+            return;
+        }
+
+        routesInFlight.incrementAndGet();
+        try {
+            routingExecutor.execute(() -> {
+                BroadcastPlan plan = buildPlan(snapshot, snapshot.getVersion(), source, frequency, hopLimit,
+                        tunedTargets, componentSize, propagationDelay);
+                scheduler.submit(() -> {
+                    routesInFlight.decrementAndGet();
+                    if (plan.getTopologyVersion() == shard.getTopologyVersion()) {
+                        cachePlan(plan);
+                    }
+                    executePlan(plan, signalStrength, attenuation);
+                });
+            });
+        } catch (RejectedExecutionException e) {
+            // Shutting down, the signal is dropped along with everything else in flight
+            routesInFlight.decrementAndGet();
         }
+    }
 
-        // Find all sensors reachable from this source
-        Set<SculkNode> reachableSensors = pathCalculator.findReachableSensors(source, 1000.0); // Max 1000 blocks
+    /**
+     * Build a broadcast plan from one breadth-first pass, which gives the hop
+     * depth of every reachable sensor. The pass ends once every tuned sensor
+     * in the component has been reached or the hop limit leaves nothing to
+     * expand. Touches nothing but the given graph.
+     */
+    private static BroadcastPlan buildPlan(SensorGraph graph, long topologyVersion, SculkNode source,
+                                           int frequency, int hopLimit, int tunedTargets, int componentSize,
+                                           int propagationDelay) {
+        PathCalculator.ShortestPathTree tree = PathCalculator.buildShortestPathTree(graph, source,
+                MAX_ROUTE_DISTANCE, hopLimit, componentSize, frequency, tunedTargets);
+        Set<ChunkCoordinate> requiredChunks = PathCalculator.getRequiredChunks(tree);
+        return BroadcastPlan.fromTree(tree, requiredChunks, topologyVersion, propagationDelay, frequency, hopLimit);
+    }
+
+    private void cachePlan(BroadcastPlan plan) {
+        planCache.setMaxEntries(plugin.getPluginConfig().getPlanCacheSize());
+        planCache.put(plan);
+    }
+
+    private ExecutorService createRoutingExecutor() {
+        if (plugin.getPluginConfig().isVirtualThreadRoutingEnabled()) {
+            return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("SculkSignal-Router-", 0).factory());
+        }
 
-        for (SculkNode target : reachableSensors) {
-            if (target.equals(source))
+        int threads = Math.max(1, plugin.getPluginConfig().getRoutingThreads());
+        return Executors.newFixedThreadPool(threads,
+                Thread.ofPlatform().name("SculkSignal-Router-", 0).daemon(true).factory());
+    }
+
+    /**
+     * Carry out a broadcast plan with proper timing and chunk loading.
+     * Each target is activated once, after one propagation delay per hop from the source,
+     * with the signal strength less the attenuation for each hop.
+     * With chunk loading off, only chunks holding critical sensors are loaded.
+     */
+    private void executePlan(BroadcastPlan plan, int signalStrength, int attenuation) {
+        if (plan.getTargetCount() == 0)
+            return;
+
+        Set<ChunkCoordinate> criticalChunks = plugin.getPluginConfig().isChunkLoadingEnabled()
+                ? null
+                : collectCriticalChunks(plan);
+
+        // Hold each chunk from a few hops ahead of the wavefront until the
+        // tick after its last activation has fired
+        long leadTicks = (long) plugin.getPluginConfig().getPrefetchHops() * plan.getPropagationDelay();
+        List<ChunkCoordinate> chunks = plan.getRequiredChunks();
+        for (int i = 0; i < chunks.size(); i++) {
+            ChunkCoordinate chunk = chunks.get(i);
+            if (criticalChunks != null && !criticalChunks.contains(chunk)) {
                 continue;
+            }
+            long acquireDelay = Math.max(plan.getChunkDelay(i) - leadTicks, 0);
+            long neededIn = plan.getChunkDelay(i) - acquireDelay;
+            long holdTicks = plan.getChunkLastDelay(i) + 1 - acquireDelay;
+            if (acquireDelay == 0) {
+                holdChunk(chunk, neededIn, holdTicks);
+            } else {
+                scheduler.runLater(() -> holdChunk(chunk, neededIn, holdTicks), acquireDelay);
+            }
+        }
+
+        // Schedule signal propagation with delays, skipping sensors unregistered
+        // since an asynchronously computed plan was built
+        for (int i = 0; i < plan.getTargetCount(); i++) {
+            SculkNode target = plan.getTarget(i);
+            int strength = signalStrength - plan.getHops(i) * attenuation;
+            if (target.getId() >= 0 && strength > 0) {
+                scheduler.scheduleActivation(target, strength, plan.getDelay(i));
+            }
+        }
+    }
 
-            // Calculate path and propagate with delay
-            List<SculkNode> path = pathCalculator.findPath(source, target);
-            if (!path.isEmpty()) {
-                propagateAlongPath(path, signalStrength);
+    private static Set<ChunkCoordinate> collectCriticalChunks(BroadcastPlan plan) {
+        Set<ChunkCoordinate> chunks = new HashSet<>();
+        for (int i = 0; i < plan.getTargetCount(); i++) {
+            SculkNode target = plan.getTarget(i);
+            if (target.isCritical()) {
+                chunks.add(new ChunkCoordinate(target.getWorldName(), target.getChunkX(), target.getChunkZ()));
             }
         }
+        return chunks;
+    }
+
+    private void holdChunk(ChunkCoordinate chunk, long neededIn, long holdTicks) {
+        ChunkLoadManager chunkLoadManager = plugin.getChunkLoadManager();
+        ChunkLoadManager.ChunkTicket ticket = chunkLoadManager.acquire(chunk, scheduler.getCurrentTick() + neededIn);
+        if (ticket != null) {
+            scheduler.runLater(() -> chunkLoadManager.release(ticket), holdTicks);
+        }
+    }
+
+    public SignalScheduler getScheduler() {
+        return scheduler;
     }
 
     /**
-     * Propagate signal along a specific path with proper timing and chunk loading
+     * Apply the signals held for a chunk that has just loaded. Runs at the
+     * start of the next tick so the chunk's network region is paged in first.
      */
-    private void propagateAlongPath(List<SculkNode> path, int signalStrength) {
-        if (path.size() < 2)
+    public void onChunkLoad(World world, int chunkX, int chunkZ) {
+        if (outbox.isEmpty() || !outbox.hasPending(world.getName(), chunkX, chunkZ)) {
             return;
+        }
+
+        String worldName = world.getName();
+        scheduler.submit(() -> deliverHeld(worldName, chunkX, chunkZ));
+    }
 
-        // Get all chunks that need to be loaded
-        Set<ChunkCoordinate> requiredChunks = pathCalculator.getRequiredChunks(path);
+    /**
+     * Drop the signals held for a world that is unloading
+     */
+    public void onWorldUnload(World world) {
+        outbox.clearWorld(world.getName());
+    }
 
-        // Load all chunks in the path
-        for (ChunkCoordinate chunk : requiredChunks) {
-            plugin.getChunkLoadManager().loadChunk(chunk.getWorldName(), chunk.getX(), chunk.getZ());
+    private void deliverHeld(String worldName, int chunkX, int chunkZ) {
+        World world = Bukkit.getWorld(worldName);
+        if (world == null || !world.isChunkLoaded(chunkX, chunkZ)) {
+            return; // Unloaded again; keep the signals for the next load
         }
 
-        // Schedule signal propagation with delays
-        int propagationDelay = plugin.getPluginConfig().getPropagationDelay();
+        outbox.drain(worldName, chunkX, chunkZ, (position, signalStrength) -> {
+            SculkNode sensor = plugin.getNetworkRegistry().getSensor(new Location(world,
+                    PackedBlockPos.unpackX(position), PackedBlockPos.unpackY(position), PackedBlockPos.unpackZ(position)));
+            if (sensor == null) {
+                return false;
+            }
+            activateSensor(sensor, signalStrength);
+            return true;
+        });
+    }
 
-        for (int i = 1; i < path.size(); i++) {
-            SculkNode targetNode = path.get(i);
-            long delay = (long) i * propagationDelay;
+    /**
+     * Signals held for sensors in unloaded chunks
+     */
+    public ChunkOutbox.OutboxStats getOutboxStats() {
+        return outbox.getStats();
+    }
 
-            new BukkitRunnable() {
-                @Override
-                public void run() {
-                    activateSensor(targetNode, signalStrength);
-                }
-            }.runTaskLater(plugin, delay);
+    /**
+     * Signals dropped because no sensor in the source's component was tuned to their frequency
+     */
+    public long getUnheardSignals() {
+        return unheardSignals;
+    }
+
+    /**
+     * Number of routes handed to worker threads whose plans have not come back yet
+     */
+    public int getRoutesInFlight() {
+        return routesInFlight.get();
+    }
+
+    /**
+     * Get broadcast plan cache statistics
+     */
+    public BroadcastPlanCache.CacheStats getPlanCacheStats() {
+        return planCache.getStats();
+    }
+
+    /**
+     * Start recording every signal and sensor change to a trace file, opening
+     * with the sensors in memory now. Engine thread only.
+     */
+    public void startTrace(Path file) throws IOException {
+        if (traceRecorder != null) {
+            throw new IllegalStateException("Already recording a trace to " + traceRecorder.getFile());
         }
+
+        TraceRecorder recorder = new TraceRecorder(file, scheduler::getCurrentTick, plugin.getLogger());
+        recorder.open();
+        recorder.recordSensors(plugin.getNetworkRegistry().getAllSensors().values());
+        plugin.getNetworkRegistry().addListener(recorder);
+        traceRecorder = recorder;
     }
 
     /**
-     * Activate a specific sensor with the given signal strength
+     * Stop recording and close the trace file. Returns the recorder that was
+     * stopped, or null if no trace was being recorded.
+     */
+    public TraceRecorder stopTrace() {
+        TraceRecorder recorder = traceRecorder;
+        if (recorder == null) {
+            return null;
+        }
+
+        traceRecorder = null;
+        plugin.getNetworkRegistry().removeListener(recorder);
+        recorder.close();
+        return recorder;
+    }
+
+    /**
+     * The trace being recorded, or null
+     */
+    public TraceRecorder getTraceRecorder() {
+        return traceRecorder;
+    }
+
+    /**
+     * Activate a specific sensor with the given signal strength. Runs on the
+     * engine thread; once activation touches the block it will have to go
+     * through ExecutionBackend.runAtChunk.
      */
     private void activateSensor(SculkNode sensor, int signalStrength) {
         // TODO: Implement actual sensor activation
@@ -92,11 +436,31 @@ public class SignalPropagator {
         sensor.setActive(true);
 
         // Schedule deactivation
-        new BukkitRunnable() {
-            @Override
-            public void run() {
-                sensor.setActive(false);
+        scheduler.scheduleDeactivation(sensor, 10); // Deactivate after 10 ticks
+    }
+
+    /**
+     * Applies the activations and deactivations the scheduler hands back each tick
+     */
+    private class ActivationHandler implements TimingWheel.Handler {
+        @Override
+        public void onActivate(SculkNode node, int signalStrength) {
+            World world = node.getLocation().getWorld();
+            if (!node.isCritical() && !plugin.getPluginConfig().isChunkLoadingEnabled()
+                    && !world.isChunkLoaded(node.getChunkX(), node.getChunkZ())) {
+                // Applied when something else loads the chunk
+                outbox.defer(node, signalStrength);
+                return;
             }
-        }.runTaskLater(plugin, 10); // Deactivate after 10 ticks
+
+            // Deferred until the chunk is in if the prefetch did not get there first
+            plugin.getChunkLoadManager().runWhenLoaded(world, node.getChunkX(), node.getChunkZ(),
+                    () -> activateSensor(node, signalStrength));
+        }
+
+        @Override
+        public void onDeactivate(SculkNode node) {
+            node.setActive(false);
+        }
     }
 }
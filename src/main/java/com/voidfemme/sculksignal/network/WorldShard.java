@@ -0,0 +1,359 @@
+package com.sculksignal.network;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * The sensors of a single world: their spatial index, connections,
+ * components, clusters and topology version.
+ *
+ * Connections never cross worlds, so a change in one world never touches
+ * another world's shard, and a plan routed in one world is not made stale by
+ * changes in another. Node ids are dense within the shard. Not thread-safe;
+ * the registry only uses it from the engine thread, apart from the graph
+ * snapshot, which can be traversed from anywhere.
+ */
+public class WorldShard {
+
+    private final String worldName;
+    private final ChunkSensorIndex index;
+    private final AdjacencyStore adjacency;
+    private final ComponentTracker componentTracker;
+    private final ClusterGraph clusterGraph;
+    private final AtomicLong topologyVersion;
+    private volatile GraphSnapshot graphSnapshot;
+    private long snapshotTick;
+    private int sensorCount;
+
+    WorldShard(String worldName, int clusterChunks) {
+        this.worldName = worldName;
+        this.index = new ChunkSensorIndex();
+        this.adjacency = new AdjacencyStore();
+        this.componentTracker = new ComponentTracker(adjacency);
+        this.clusterGraph = new ClusterGraph(adjacency, clusterChunks);
+        adjacency.setObserver(clusterGraph);
+        this.topologyVersion = new AtomicLong();
+    }
+
+    public String getWorldName() {
+        return worldName;
+    }
+
+    /**
+     * Get the sensor at a block position without allocating, or null if there is none
+     */
+    SculkNode find(int blockX, int blockY, int blockZ) {
+        return index.find(blockX, blockY, blockZ);
+    }
+
+    /**
+     * Get the sensor indexed at the same block as the given one
+     */
+    SculkNode find(SculkNode node) {
+        return index.find((int) Math.floor(node.getX()), (int) Math.floor(node.getY()), (int) Math.floor(node.getZ()));
+    }
+
+    ChunkSensorIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * Add a sensor and connect it to every sensor in range
+     */
+    void add(SculkNode node) {
+        node.attach(adjacency, adjacency.allocate(node));
+        index.add(node);
+        sensorCount++;
+
+        // Start in a component of its own, merged as connections are found
+        componentTracker.addNode(node);
+        connectInRange(node);
+        topologyVersion.incrementAndGet();
+    }
+
+    /**
+     * Remove a sensor and every connection it had
+     */
+    void remove(SculkNode node) {
+        index.remove(node);
+        sensorCount--;
+
+        // Remove all connections to this node, touching only its neighbours
+        Set<SculkNode> formerNeighbors = node.getConnectedSensors();
+        adjacency.removeAllEdges(node.getId());
+
+        // Split the node's component if it was the only link between two parts
+        componentTracker.removeNode(node, formerNeighbors);
+        adjacency.release(node.getId());
+        node.detach();
+        topologyVersion.incrementAndGet();
+    }
+
+    void retune(SculkNode node, int frequencies) {
+        componentTracker.retune(node, frequencies);
+        clusterGraph.onRetuned(node);
+        // Cached plans only list the sensors tuned to their frequency
+        topologyVersion.incrementAndGet();
+    }
+
+    private void connectInRange(SculkNode newNode) {
+        List<SculkNode> nearBySensors = new ArrayList<>();
+        collectSensorsInRange(newNode.getX(), newNode.getY(), newNode.getZ(), NetworkRegistry.SENSOR_RANGE,
+                nearBySensors);
+
+        for (SculkNode other : nearBySensors) {
+            // Create bidirectional connection, skipping edges already added from the other side
+            if (!other.equals(newNode) && adjacency.addEdge(newNode.getId(), other.getId())) {
+                componentTracker.connect(newNode, other);
+            }
+        }
+    }
+
+    /**
+     * Add every sensor within range of a point to the given collection. The
+     * chunk probes themselves do not allocate.
+     */
+    void collectSensorsInRange(double x, double y, double z, double maxDistance, Collection<SculkNode> out) {
+        int centerX = (int) Math.floor(x) >> 4;
+        int centerZ = (int) Math.floor(z) >> 4;
+        double maxDistanceSquared = maxDistance * maxDistance;
+
+        // Calculate how many chunks to check based on the range
+        int chunkRadius = (int) Math.ceil(maxDistance / 16.0) + 1;
+
+        for (int cx = centerX - chunkRadius; cx <= centerX + chunkRadius; cx++) {
+            for (int cz = centerZ - chunkRadius; cz <= centerZ + chunkRadius; cz++) {
+                ChunkSensorIndex.SensorBucket bucket = index.get(cx, cz);
+                if (bucket == null) {
+                    continue;
+                }
+
+                for (int i = 0; i < bucket.size(); i++) {
+                    SculkNode sensor = bucket.get(i);
+                    if (sensor.distanceSquaredTo(x, y, z) <= maxDistanceSquared) {
+                        out.add(sensor);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Add every sensor in a region of 2^shift by 2^shift chunks to the given list
+     */
+    void collectSensorsInRegion(int regionX, int regionZ, int shift, List<SculkNode> out) {
+        int size = 1 << shift;
+        int minX = regionX << shift;
+        int minZ = regionZ << shift;
+        for (int cx = minX; cx < minX + size; cx++) {
+            for (int cz = minZ; cz < minZ + size; cz++) {
+                ChunkSensorIndex.SensorBucket bucket = index.get(cx, cz);
+                if (bucket == null) {
+                    continue;
+                }
+
+                for (int i = 0; i < bucket.size(); i++) {
+                    out.add(bucket.get(i));
+                }
+            }
+        }
+    }
+
+    /**
+     * Recompute every connection in the shard, over a snapshot on the pool if
+     * one is given, otherwise one sensor at a time
+     */
+    void rebuildConnections(ForkJoinPool pool) {
+        if (pool != null) {
+            // Candidate edges are computed against a snapshot, then swapped in at once
+            ConnectionRebuilder rebuilder = new ConnectionRebuilder(NetworkRegistry.SENSOR_RANGE);
+            ConnectionRebuilder.EdgeBuffer edges = rebuilder.computeEdges(
+                    ConnectionRebuilder.Snapshot.capture(index, adjacency.getIdBound()), pool);
+            adjacency.replaceEdges(edges.array(), edges.size());
+        } else {
+            adjacency.clearEdges();
+            forEachSensor(this::connectInRange);
+            adjacency.compact();
+        }
+
+        componentTracker.rebuild(getSensors());
+        topologyVersion.incrementAndGet();
+    }
+
+    /**
+     * Add a batch of saved sensors with their saved connections. Edges are
+     * pairs of indices into {@code nodes}. Returns the node id each sensor was
+     * given, or -1 for sensors skipped because one is already registered at
+     * the same block.
+     */
+    int[] restore(List<SculkNode> nodes, int[] edges) {
+        boolean wasEmpty = sensorCount == 0;
+        int[] ids = new int[nodes.size()];
+
+        for (int i = 0; i < ids.length; i++) {
+            SculkNode node = nodes.get(i);
+            if (find(node) != null) {
+                ids[i] = -1;
+                continue;
+            }
+
+            node.attach(adjacency, adjacency.allocate(node));
+            index.add(node);
+            sensorCount++;
+            ids[i] = node.getId();
+        }
+
+        if (wasEmpty) {
+            // Fresh shard: build the CSR base in one pass
+            long[] packed = new long[edges.length / 2];
+            int count = 0;
+            for (int i = 0; i + 1 < edges.length; i += 2) {
+                int a = ids[edges[i]];
+                int b = ids[edges[i + 1]];
+                if (a >= 0 && b >= 0 && a != b) {
+                    packed[count++] = ((long) a << 32) | b;
+                }
+            }
+            adjacency.replaceEdges(packed, count);
+            componentTracker.rebuild(getSensors());
+        } else {
+            // Join the existing graph incrementally so the cost stays proportional to the batch
+            for (int id : ids) {
+                if (id >= 0) {
+                    componentTracker.addNode(adjacency.getNode(id));
+                }
+            }
+            for (int i = 0; i + 1 < edges.length; i += 2) {
+                int a = ids[edges[i]];
+                int b = ids[edges[i + 1]];
+                if (a >= 0 && b >= 0 && adjacency.addEdge(a, b)) {
+                    componentTracker.connect(adjacency.getNode(a), adjacency.getNode(b));
+                }
+            }
+        }
+        topologyVersion.incrementAndGet();
+        return ids;
+    }
+
+    boolean connect(SculkNode a, SculkNode b) {
+        if (!adjacency.addEdge(a.getId(), b.getId())) {
+            return false;
+        }
+
+        componentTracker.connect(a, b);
+        topologyVersion.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Drop the sensors that are still the ones indexed at their blocks
+     */
+    void evict(Collection<SculkNode> nodes) {
+        List<SculkNode> evicted = new ArrayList<>(nodes.size());
+        for (SculkNode node : nodes) {
+            if (find(node) == node && index.remove(node)) {
+                sensorCount--;
+                adjacency.removeAllEdges(node.getId());
+                evicted.add(node);
+            }
+        }
+
+        componentTracker.removeNodes(evicted);
+        for (SculkNode node : evicted) {
+            adjacency.release(node.getId());
+            node.detach();
+        }
+        topologyVersion.incrementAndGet();
+    }
+
+    private void forEachSensor(Consumer<SculkNode> action) {
+        for (long key : index.getChunkKeys()) {
+            ChunkSensorIndex.SensorBucket bucket = index.get(key);
+            for (int i = 0; i < bucket.size(); i++) {
+                action.accept(bucket.get(i));
+            }
+        }
+    }
+
+    /**
+     * Every sensor in the shard, in no particular order
+     */
+    List<SculkNode> getSensors() {
+        List<SculkNode> sensors = new ArrayList<>(sensorCount);
+        forEachSensor(sensors::add);
+        return sensors;
+    }
+
+    public int getSensorCount() {
+        return sensorCount;
+    }
+
+    public boolean isEmpty() {
+        return sensorCount == 0;
+    }
+
+    /**
+     * Adjacency of every sensor in the shard, keyed by {@link SculkNode#getId()}
+     */
+    public AdjacencyStore getAdjacency() {
+        return adjacency;
+    }
+
+    /**
+     * Clusters of the shard's graph for routing to a few distant sensors.
+     * Must be used from the engine thread.
+     */
+    public ClusterGraph getClusterGraph() {
+        return clusterGraph;
+    }
+
+    /**
+     * Immutable snapshot of the shard's graph, safe to traverse off the engine
+     * thread. A new one is taken at most once per tick: after a topology
+     * change, the first call in a tick publishes a fresh snapshot and later
+     * calls in the same tick get that one, even if the graph has changed
+     * again since. Plans routed over an older version are used but not
+     * cached. Must be called from the engine thread.
+     */
+    public GraphSnapshot getGraphSnapshot(long currentTick) {
+        long version = topologyVersion.get();
+        GraphSnapshot snapshot = graphSnapshot;
+        if (snapshot == null || (snapshot.getVersion() != version && snapshotTick != currentTick)) {
+            snapshot = adjacency.snapshot(version);
+            graphSnapshot = snapshot;
+            snapshotTick = currentTick;
+        }
+        return snapshot;
+    }
+
+    /**
+     * Version counter bumped on every change to this world's topology or to
+     * the frequencies its sensors are tuned to
+     */
+    public long getTopologyVersion() {
+        return topologyVersion.get();
+    }
+
+    int getComponentSize(SculkNode node) {
+        return componentTracker.getComponentSize(node.getComponentId());
+    }
+
+    int getTunedCount(SculkNode node, int frequency) {
+        return componentTracker.getTunedCount(node.getComponentId(), frequency);
+    }
+
+    /**
+     * Statistics for this world alone
+     */
+    public NetworkRegistry.NetworkStats getStats() {
+        return new NetworkRegistry.NetworkStats(sensorCount, adjacency.getEdgeCount(), index.getChunkCount(),
+                componentTracker.getComponentCount(),
+                componentTracker.getLargestComponentSize(),
+                componentTracker.getIsolatedSensorCount());
+    }
+}
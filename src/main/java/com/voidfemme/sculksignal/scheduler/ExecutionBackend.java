@@ -0,0 +1,76 @@
+package com.sculksignal.scheduler;
+
+import org.bukkit.World;
+import org.bukkit.plugin.Plugin;
+
+import java.util.logging.Level;
+
+/**
+ * Where the plugin's work runs.
+ *
+ * The network itself (registry, signal scheduler, chunk tickets) belongs to a
+ * single engine thread and is only ever touched from it. Blocks and chunks
+ * belong to whichever thread owns their region: the server thread on Paper,
+ * where everything is the engine thread, or a region thread on Folia, where
+ * the engine is the global region thread.
+ */
+public interface ExecutionBackend {
+
+    /**
+     * Handle to a repeating task
+     */
+    interface Task {
+        void cancel();
+    }
+
+    /**
+     * Short name shown in the stats
+     */
+    String getName();
+
+    /**
+     * Run work on the engine thread every periodTicks ticks, starting after delayTicks
+     */
+    Task runRepeating(Runnable work, long delayTicks, long periodTicks);
+
+    /**
+     * Whether the calling thread is the engine thread
+     */
+    boolean isEngineThread();
+
+    /**
+     * Run work on the thread that owns the chunk: right away if that is the
+     * calling thread, otherwise as soon as the owner gets to it
+     */
+    void runAtChunk(World world, int chunkX, int chunkZ, Runnable work);
+
+    /**
+     * Pick the backend named in the configuration. "auto" uses Folia's
+     * schedulers when the server is running Folia and Paper's otherwise.
+     */
+    static ExecutionBackend create(Plugin plugin, String name) {
+        boolean folia = switch (name.toLowerCase()) {
+            case "folia" -> true;
+            case "paper" -> false;
+            default -> {
+                if (!name.equalsIgnoreCase("auto")) {
+                    plugin.getLogger().log(Level.WARNING, "Unknown scheduler backend '" + name + "', using auto");
+                }
+                yield isFolia();
+            }
+        };
+        return folia ? new FoliaBackend(plugin) : new PaperBackend(plugin);
+    }
+
+    /**
+     * Whether the server is running Folia's regionised threading
+     */
+    static boolean isFolia() {
+        try {
+            Class.forName("io.papermc.paper.threadedregions.RegionizedServer");
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.sculksignal.scheduler;
+
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
+
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.plugin.Plugin;
+
+/**
+ * Runs the engine on Folia's global region thread and hands chunk work (the
+ * plugin's chunk tickets) to the region scheduler that owns the chunk.
+ * Propagation itself is not split by region: every signal is routed and
+ * activated on the global region thread, as it is on the server thread on
+ * Paper, so a busy network does not spread its work across regions.
+ */
+public class FoliaBackend implements ExecutionBackend {
+
+    private final Plugin plugin;
+
+    public FoliaBackend(Plugin plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public String getName() {
+        return "folia";
+    }
+
+    @Override
+    public Task runRepeating(Runnable work, long delayTicks, long periodTicks) {
+        // Folia rejects a first run at tick 0
+        ScheduledTask task = Bukkit.getGlobalRegionScheduler().runAtFixedRate(plugin, scheduled -> work.run(),
+                Math.max(delayTicks, 1), periodTicks);
+        return task::cancel;
+    }
+
+    @Override
+    public boolean isEngineThread() {
+        return Bukkit.isGlobalTickThread();
+    }
+
+    @Override
+    public void runAtChunk(World world, int chunkX, int chunkZ, Runnable work) {
+        if (Bukkit.isOwnedByCurrentRegion(world, chunkX, chunkZ)) {
+            work.run();
+        } else {
+            Bukkit.getRegionScheduler().execute(plugin, world, chunkX, chunkZ, work);
+        }
+    }
+}
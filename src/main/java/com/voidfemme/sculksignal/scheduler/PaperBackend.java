@@ -0,0 +1,50 @@
+package com.sculksignal.scheduler;
+
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitRunnable;
+import org.bukkit.scheduler.BukkitTask;
+
+/**
+ * Runs everything on the server thread through the Bukkit scheduler. The
+ * server thread owns every chunk, so it is also the engine thread.
+ */
+public class PaperBackend implements ExecutionBackend {
+
+    private final Plugin plugin;
+
+    public PaperBackend(Plugin plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public String getName() {
+        return "paper";
+    }
+
+    @Override
+    public Task runRepeating(Runnable work, long delayTicks, long periodTicks) {
+        BukkitTask task = new BukkitRunnable() {
+            @Override
+            public void run() {
+                work.run();
+            }
+        }.runTaskTimer(plugin, delayTicks, periodTicks);
+        return task::cancel;
+    }
+
+    @Override
+    public boolean isEngineThread() {
+        return Bukkit.isPrimaryThread();
+    }
+
+    @Override
+    public void runAtChunk(World world, int chunkX, int chunkZ, Runnable work) {
+        if (Bukkit.isPrimaryThread()) {
+            work.run();
+        } else {
+            Bukkit.getScheduler().runTask(plugin, work);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.sculksignal.scheduler;
+
+import com.sculksignal.SculkSignalPlugin;
+import com.sculksignal.network.SculkNode;
+
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Drives a {@link TimingWheel} from a single repeating task on the engine
+ * thread, so the number of scheduler entries stays at one no matter how many
+ * signals are in flight. Other threads hand work over through a lock-free
+ * queue that the tick drains first.
+ */
+public class SignalScheduler {
+
+    private static final int WHEEL_SLOTS = 256;
+
+    private final SculkSignalPlugin plugin;
+    private final TimingWheel wheel;
+    private final TimingWheel.Handler handler;
+    private final Queue<Runnable> handoffs;
+    private final PriorityQueue<DelayedTask> delayedTasks;
+    private long delayedSequence;
+    private ExecutionBackend.Task task;
+
+    private long firedTotal;
+    private int firedLastTick;
+
+    public SignalScheduler(SculkSignalPlugin plugin, TimingWheel.Handler handler) {
+        this.plugin = plugin;
+        this.wheel = new TimingWheel(WHEEL_SLOTS);
+        this.handler = handler;
+        this.handoffs = new ConcurrentLinkedQueue<>();
+        this.delayedTasks = new PriorityQueue<>(Comparator.comparingLong((DelayedTask t) -> t.dueTick)
+                .thenComparingLong(t -> t.sequence));
+    }
+
+    /**
+     * Work waiting for a later tick; the sequence keeps same-tick tasks in submission order
+     */
+    private static final class DelayedTask {
+        final long dueTick;
+        final long sequence;
+        final Runnable work;
+
+        DelayedTask(long dueTick, long sequence, Runnable work) {
+            this.dueTick = dueTick;
+            this.sequence = sequence;
+            this.work = work;
+        }
+    }
+
+    /**
+     * Start the repeating tick task
+     */
+    public void start() {
+        if (task != null) {
+            return;
+        }
+
+        task = plugin.getExecutionBackend().runRepeating(this::tick, 1, 1);
+    }
+
+    /**
+     * Stop the tick task and drop anything still pending
+     */
+    public void stop() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+        wheel.clear();
+        handoffs.clear();
+        delayedTasks.clear();
+    }
+
+    /**
+     * Hand work to the engine thread from any thread. It runs at the start of
+     * the next tick, before that tick's activations fire.
+     */
+    public void submit(Runnable work) {
+        handoffs.add(work);
+    }
+
+    /**
+     * Run work on the engine thread: right away if called from it, otherwise
+     * handed over as with {@link #submit}
+     */
+    public void execute(Runnable work) {
+        if (plugin.getExecutionBackend().isEngineThread()) {
+            work.run();
+        } else {
+            handoffs.add(work);
+        }
+    }
+
+    /**
+     * Run work on the engine thread after the given number of ticks, before
+     * that tick's activations fire. Engine thread only.
+     */
+    public void runLater(Runnable work, long delayTicks) {
+        long dueTick = wheel.getCurrentTick() + Math.max(delayTicks, 1);
+        delayedTasks.add(new DelayedTask(dueTick, delayedSequence++, work));
+    }
+
+    public void scheduleActivation(SculkNode node, int signalStrength, long delayTicks) {
+        wheel.schedule(TimingWheel.ACTIVATE, node, signalStrength, delayTicks);
+    }
+
+    public void scheduleDeactivation(SculkNode node, long delayTicks) {
+        wheel.schedule(TimingWheel.DEACTIVATE, node, 0, delayTicks);
+    }
+
+    public long getCurrentTick() {
+        return wheel.getCurrentTick();
+    }
+
+    public int getPendingCount() {
+        return wheel.getPendingCount();
+    }
+
+    public long getFiredTotal() {
+        return firedTotal;
+    }
+
+    public int getFiredLastTick() {
+        return firedLastTick;
+    }
+
+    /**
+     * Activations folded into another delivery to the same sensor on the same tick
+     */
+    public long getMergedActivations() {
+        return wheel.getActivationsMerged();
+    }
+
+    /**
+     * Activations actually applied to sensors
+     */
+    public long getDeliveredActivations() {
+        return wheel.getActivationsDelivered();
+    }
+
+    private void tick() {
+        Runnable work;
+        while ((work = handoffs.poll()) != null) {
+            work.run();
+        }
+
+        long nextTick = wheel.getCurrentTick() + 1;
+        while (!delayedTasks.isEmpty() && delayedTasks.peek().dueTick <= nextTick) {
+            delayedTasks.poll().work.run();
+        }
+
+        firedLastTick = wheel.advance(handler);
+        firedTotal += firedLastTick;
+    }
+}
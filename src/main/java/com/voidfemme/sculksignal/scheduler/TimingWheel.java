@@ -0,0 +1,276 @@
+package com.sculksignal.scheduler;
+
+import com.sculksignal.network.SculkNode;
+
+import java.util.Arrays;
+
+/**
+ * Hashed timing wheel of sensor activations and deactivations, advanced one
+ * server tick at a time.
+ *
+ * Each slot stores its entries in parallel primitive arrays, so scheduling
+ * never allocates once the slot has grown to its working size. Entries further
+ * out than one revolution stay in their slot until their tick comes round.
+ * Activations of the same node landing on the same tick are coalesced into one
+ * entry carrying the strongest signal.
+ * Not thread-safe; scheduled and advanced from the server thread only.
+ */
+public class TimingWheel {
+
+    public static final byte ACTIVATE = 1;
+    public static final byte DEACTIVATE = 2;
+
+    /**
+     * Receives the entries that fall due on a tick, one batch per tick
+     */
+    public interface Handler {
+        void onActivate(SculkNode node, int signalStrength);
+
+        void onDeactivate(SculkNode node);
+    }
+
+    private final Slot[] slots;
+    private final int mask;
+    private final Slot batch;
+    private long currentTick;
+    private int pending;
+
+    private long activationsScheduled;
+    private long activationsMerged;
+    private long activationsDelivered;
+
+    /**
+     * Create a wheel with the given number of slots, rounded up to a power of two
+     */
+    public TimingWheel(int slotCount) {
+        int size = Integer.highestOneBit(Math.max(slotCount, 2) - 1) << 1;
+        this.slots = new Slot[size];
+        for (int i = 0; i < size; i++) {
+            slots[i] = new Slot();
+        }
+        this.mask = size - 1;
+        this.batch = new Slot();
+    }
+
+    /**
+     * Schedule an entry to fire after the given number of ticks. Delays below
+     * one tick fire on the next advance.
+     */
+    public void schedule(byte kind, SculkNode node, int signalStrength, long delayTicks) {
+        long dueTick = currentTick + Math.max(delayTicks, 1);
+        Slot slot = slots[(int) (dueTick & mask)];
+
+        if (kind == ACTIVATE) {
+            activationsScheduled++;
+            if (slot.mergeActivation(node, signalStrength, dueTick)) {
+                activationsMerged++;
+                return;
+            }
+        }
+
+        slot.add(kind, node, signalStrength, dueTick);
+        pending++;
+    }
+
+    /**
+     * Advance one tick and hand every entry that fell due to the handler. The
+     * handler may schedule further entries while the batch is running.
+     */
+    public int advance(Handler handler) {
+        currentTick++;
+        Slot slot = slots[(int) (currentTick & mask)];
+        if (slot.size == 0) {
+            return 0;
+        }
+
+        // Move due entries out first so the handler can safely reschedule into this slot
+        batch.clear();
+        slot.drainDue(currentTick, batch);
+        pending -= batch.size;
+
+        for (int i = 0; i < batch.size; i++) {
+            if (batch.kinds[i] == ACTIVATE) {
+                activationsDelivered++;
+                handler.onActivate(batch.nodes[i], batch.strengths[i]);
+            } else {
+                handler.onDeactivate(batch.nodes[i]);
+            }
+        }
+
+        int fired = batch.size;
+        batch.clear();
+        return fired;
+    }
+
+    public long getCurrentTick() {
+        return currentTick;
+    }
+
+    /**
+     * Number of entries scheduled but not yet fired
+     */
+    public int getPendingCount() {
+        return pending;
+    }
+
+    /**
+     * Total activations requested, including those later merged into another
+     */
+    public long getActivationsScheduled() {
+        return activationsScheduled;
+    }
+
+    /**
+     * Activations folded into an existing entry for the same node and tick
+     */
+    public long getActivationsMerged() {
+        return activationsMerged;
+    }
+
+    /**
+     * Activations actually handed to the handler
+     */
+    public long getActivationsDelivered() {
+        return activationsDelivered;
+    }
+
+    /**
+     * Drop every pending entry
+     */
+    public void clear() {
+        for (Slot slot : slots) {
+            slot.clear();
+        }
+        pending = 0;
+    }
+
+    /**
+     * One wheel slot. Entries are kept in insertion order, with a small
+     * identity-keyed open-addressing table from node to its activation entry.
+     */
+    private static final class Slot {
+        SculkNode[] nodes = new SculkNode[8];
+        int[] strengths = new int[8];
+        long[] dueTicks = new long[8];
+        byte[] kinds = new byte[8];
+        int size;
+
+        // Activation index: entry index + 1 per table cell, 0 when empty
+        int[] activationTable = new int[16];
+        int indexed;
+
+        /**
+         * Raise the strength of an existing activation of the node due on the
+         * same tick. Returns false if there is none to merge into.
+         */
+        boolean mergeActivation(SculkNode node, int strength, long dueTick) {
+            int tableMask = activationTable.length - 1;
+            for (int cell = hash(node) & tableMask; activationTable[cell] != 0; cell = (cell + 1) & tableMask) {
+                int index = activationTable[cell] - 1;
+                if (nodes[index] == node && dueTicks[index] == dueTick) {
+                    strengths[index] = Math.max(strengths[index], strength);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        void add(byte kind, SculkNode node, int strength, long dueTick) {
+            append(kind, node, strength, dueTick);
+            if (kind == ACTIVATE) {
+                index(size - 1);
+            }
+        }
+
+        /**
+         * Add an entry without indexing it for coalescing
+         */
+        void append(byte kind, SculkNode node, int strength, long dueTick) {
+            if (size == nodes.length) {
+                int capacity = size << 1;
+                nodes = Arrays.copyOf(nodes, capacity);
+                strengths = Arrays.copyOf(strengths, capacity);
+                dueTicks = Arrays.copyOf(dueTicks, capacity);
+                kinds = Arrays.copyOf(kinds, capacity);
+            }
+            nodes[size] = node;
+            strengths[size] = strength;
+            dueTicks[size] = dueTick;
+            kinds[size] = kind;
+            size++;
+        }
+
+        /**
+         * Index an activation entry. Entries are indexed in order, so on growth
+         * only the ones before it are in the table to be carried over.
+         */
+        private void index(int entry) {
+            if ((indexed + 1) * 2 > activationTable.length) {
+                activationTable = new int[activationTable.length << 1];
+                indexed = 0;
+                for (int i = 0; i < entry; i++) {
+                    if (kinds[i] == ACTIVATE) {
+                        insert(i);
+                    }
+                }
+            }
+            insert(entry);
+        }
+
+        private void insert(int entry) {
+            int tableMask = activationTable.length - 1;
+            int cell = hash(nodes[entry]) & tableMask;
+            while (activationTable[cell] != 0) {
+                cell = (cell + 1) & tableMask;
+            }
+            activationTable[cell] = entry + 1;
+            indexed++;
+        }
+
+        private void clearIndex() {
+            if (indexed > 0) {
+                Arrays.fill(activationTable, 0);
+                indexed = 0;
+            }
+        }
+
+        private static int hash(SculkNode node) {
+            int h = System.identityHashCode(node);
+            return h ^ (h >>> 16);
+        }
+
+        /**
+         * Move every entry due at or before the tick into the batch, compacting the rest
+         */
+        void drainDue(long tick, Slot into) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                if (dueTicks[i] <= tick) {
+                    into.append(kinds[i], nodes[i], strengths[i], dueTicks[i]);
+                } else {
+                    nodes[kept] = nodes[i];
+                    strengths[kept] = strengths[i];
+                    dueTicks[kept] = dueTicks[i];
+                    kinds[kept] = kinds[i];
+                    kept++;
+                }
+            }
+            Arrays.fill(nodes, kept, size, null);
+            size = kept;
+
+            // Entries moved, so rebuild the index over what is left
+            clearIndex();
+            for (int i = 0; i < size; i++) {
+                if (kinds[i] == ACTIVATE) {
+                    index(i);
+                }
+            }
+        }
+
+        void clear() {
+            Arrays.fill(nodes, 0, size, null);
+            size = 0;
+            clearIndex();
+        }
+    }
+}
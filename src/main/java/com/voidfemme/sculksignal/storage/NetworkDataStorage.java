@@ -1,30 +1,331 @@
 package com.sculksignal.storage;
 
 import com.sculksignal.SculkSignalPlugin;
+import com.sculksignal.network.NetworkRegistry;
+import com.sculksignal.network.RegistryListener;
+import com.sculksignal.network.SculkNode;
+import com.sculksignal.scheduler.ExecutionBackend;
+import com.sculksignal.util.PackedBlockPos;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+
+/**
+ * Saves and loads the sensor network as one binary file per region, in the
+ * format described by {@link NetworkFileFormat}. Which regions are in memory
+ * is up to the {@link RegionStore}.
+ *
+ * With the journal enabled, every registration, removal and flag change is appended to a
+ * {@link NetworkJournal} instead, and region files are only rewritten when
+ * the journal is compacted or a region is paged out. On load the journal is
+ * replayed on top of the files, so a crash loses at most the records not yet
+ * committed.
+ */
+public class NetworkDataStorage implements RegistryListener {
+
+    private static final String JOURNAL_FILE = "journal.log";
+    private static final long COMPACTION_CHECK_TICKS = 20;
 
-public class NetworkDataStorage {
-    
     private final SculkSignalPlugin plugin;
-    
+    private final Path networkDirectory;
+    private final RegionStore regionStore;
+    private final AtomicBoolean compactionQueued;
+    private NetworkJournal journal;
+    private ExecutionBackend.Task compactionTask;
+    private long lastCompactionMillis;
+
     public NetworkDataStorage(SculkSignalPlugin plugin) {
         this.plugin = plugin;
+        this.networkDirectory = plugin.getDataFolder().toPath().resolve("networks");
+        this.regionStore = new RegionStore(plugin, networkDirectory);
+        this.compactionQueued = new AtomicBoolean();
     }
-    
+
+    /**
+     * Region files captured on the server thread, ready to be written from any thread
+     */
+    private static final class NetworkSnapshot {
+        final List<RegionStore.RegionWrite> regions;
+
+        NetworkSnapshot(List<RegionStore.RegionWrite> regions) {
+            this.regions = regions;
+        }
+
+        int getSensorCount() {
+            return regions.stream().mapToInt(RegionStore.RegionWrite::getSensorCount).sum();
+        }
+
+        int getConnectionCount() {
+            return regions.stream().mapToInt(RegionStore.RegionWrite::getConnectionCount).sum();
+        }
+    }
+
     public void saveNetworkData() {
         if (!plugin.getPluginConfig().isPersistNetworkEnabled()) {
             return;
         }
-        
-        // TODO: Implement network data persistence
+
+        regionStore.stopPaging();
+
+        if (journal != null) {
+            // Every change is already journaled; it only needs its final commit
+            long startTime = System.nanoTime();
+            stopJournal();
+            long durationMs = (System.nanoTime() - startTime) / 1_000_000;
+            plugin.getLogger().info("Flushed network journal (" + journal.getRecordsCommitted() +
+                    " records in " + journal.getCommitCount() + " commits this session) in " + durationMs + " ms");
+            journal = null;
+            return;
+        }
+
         plugin.getLogger().info("Saving network data...");
+        long startTime = System.nanoTime();
+
+        NetworkSnapshot snapshot = captureSnapshot();
+        try {
+            writeSnapshot(snapshot);
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to save network data", e);
+        }
+
+        long durationMs = (System.nanoTime() - startTime) / 1_000_000;
+        plugin.getLogger().info("Saved " + snapshot.regions.size() + " changed regions (" +
+                snapshot.getSensorCount() + " sensors) in " + durationMs + " ms");
     }
-    
+
     public void loadNetworkData() {
         if (!plugin.getPluginConfig().isPersistNetworkEnabled()) {
             return;
         }
-        
-        // TODO: Implement network data loading
-        plugin.getLogger().info("Loading network data...");
+
+        plugin.getNetworkRegistry().addListener(regionStore);
+
+        if (plugin.getPluginConfig().isLazyRegionsEnabled()) {
+            // Regions are paged in as their chunks load
+            long startTime = System.nanoTime();
+            regionStore.startPaging();
+            long durationMs = (System.nanoTime() - startTime) / 1_000_000;
+            plugin.getLogger().info("Paged in " + regionStore.getResidentRegionCount() +
+                    " network regions for loaded chunks in " + durationMs + " ms");
+        } else {
+            plugin.getLogger().info("Loading network data...");
+            regionStore.loadAll();
+        }
+
+        if (plugin.getPluginConfig().isJournalEnabled()) {
+            startJournal();
+        }
+    }
+
+    /**
+     * Replay the journal left by the last run, fold it into the network files
+     * and start journaling new changes
+     */
+    private void startJournal() {
+        Path journalFile = networkDirectory.resolve(JOURNAL_FILE);
+        NetworkJournal.ReadResult replay;
+        try {
+            replay = NetworkJournal.read(journalFile);
+        } catch (IOException e) {
+            // Leave the unreadable journal alone rather than overwrite records we could not read
+            plugin.getLogger().log(Level.SEVERE, "Failed to read network journal; journaling disabled", e);
+            return;
+        }
+
+        long startTime = System.nanoTime();
+        List<NetworkJournal.Record> skipped = replayRecords(replay.records);
+        if (replay.validLength < replay.fileLength) {
+            plugin.getLogger().warning("Discarded " + (replay.fileLength - replay.validLength) +
+                    " bytes of torn or corrupt records at the end of the network journal");
+        }
+
+        // Fold the replayed records into the network files so the journal starts empty
+        long keepLength = 0;
+        if (!replay.records.isEmpty()) {
+            try {
+                writeSnapshot(captureSnapshot());
+            } catch (IOException e) {
+                plugin.getLogger().log(Level.SEVERE, "Failed to compact network journal; keeping it", e);
+                keepLength = replay.validLength;
+            }
+
+            long durationMs = (System.nanoTime() - startTime) / 1_000_000;
+            plugin.getLogger().info("Replayed " + replay.records.size() + " network journal records in " +
+                    durationMs + " ms");
+        }
+
+        NetworkJournal opened = new NetworkJournal(journalFile,
+                plugin.getPluginConfig().getJournalFlushIntervalMs(), plugin.getLogger());
+        try {
+            opened.open(keepLength);
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to open network journal; journaling disabled", e);
+            return;
+        }
+
+        // Records for worlds that are not loaded are in no snapshot, so they
+        // are carried through every compaction until a run that loads the world
+        opened.carry(skipped);
+        if (!skipped.isEmpty()) {
+            plugin.getLogger().info("Kept " + skipped.size() +
+                    " network journal records for worlds that are not loaded");
+        }
+
+        this.journal = opened;
+        this.lastCompactionMillis = System.currentTimeMillis();
+        regionStore.setWriteQueue(opened);
+        plugin.getNetworkRegistry().addListener(this);
+
+        compactionTask = plugin.getExecutionBackend().runRepeating(this::checkCompaction,
+                COMPACTION_CHECK_TICKS, COMPACTION_CHECK_TICKS);
+    }
+
+    private void stopJournal() {
+        if (compactionTask != null) {
+            compactionTask.cancel();
+            compactionTask = null;
+        }
+        plugin.getNetworkRegistry().removeListener(this);
+        regionStore.setWriteQueue(null);
+        journal.close();
+    }
+
+    /**
+     * Apply journal records to the registry. Returns the records for worlds
+     * that are not loaded.
+     */
+    private List<NetworkJournal.Record> replayRecords(List<NetworkJournal.Record> records) {
+        NetworkRegistry registry = plugin.getNetworkRegistry();
+        List<NetworkJournal.Record> skipped = new ArrayList<>();
+
+        // Replay is idempotent: registering an occupied block or removing an
+        // empty one is ignored, so records already in the files are harmless
+        for (NetworkJournal.Record record : records) {
+            World world = Bukkit.getWorld(record.worldName);
+            if (world == null) {
+                skipped.add(record);
+                continue;
+            }
+
+            Location location = new Location(world,
+                    PackedBlockPos.unpackX(record.packedPosition),
+                    PackedBlockPos.unpackY(record.packedPosition),
+                    PackedBlockPos.unpackZ(record.packedPosition));
+            if (record.operation == NetworkJournal.REGISTER) {
+                registry.registerSensor(new SculkNode(location, record.owner));
+            } else if (record.operation == NetworkJournal.FLAGS) {
+                regionStore.pageInAround(location);
+                SculkNode node = registry.getSensor(location);
+                if (node != null) {
+                    registry.setSensorCritical(node, (record.flags & NetworkFileFormat.FLAG_CRITICAL) != 0);
+                    registry.setSensorFrequencies(node, record.flags >>> NetworkFileFormat.FREQUENCY_SHIFT);
+                }
+            } else {
+                regionStore.pageInAround(location);
+                registry.unregisterSensor(location);
+            }
+        }
+        return skipped;
+    }
+
+    @Override
+    public void onSensorRegistered(SculkNode node) {
+        journal.appendRegister(node.getWorldName(), RegionStore.pack(node), node.getOwner());
+    }
+
+    @Override
+    public void onSensorUnregistered(SculkNode node) {
+        journal.appendUnregister(node.getWorldName(), RegionStore.pack(node));
+    }
+
+    @Override
+    public void onSensorChanged(SculkNode node) {
+        journal.appendFlags(node.getWorldName(), RegionStore.pack(node), NetworkFileFormat.flags(node));
+    }
+
+    private void checkCompaction() {
+        if (compactionQueued.get() ||
+                (journal.getSize() <= journal.getCarriedSize() && journal.getPendingCount() == 0)) {
+            return;
+        }
+
+        long maxBytes = plugin.getPluginConfig().getJournalCompactSizeKb() * 1024L;
+        long intervalMillis = plugin.getPluginConfig().getJournalCompactIntervalSeconds() * 1000L;
+        if (journal.getSize() >= maxBytes || System.currentTimeMillis() - lastCompactionMillis >= intervalMillis) {
+            compact();
+        }
+    }
+
+    /**
+     * Fold the journal into the region files. Changed regions are captured on
+     * the calling (server) thread; the files are written by the journal thread.
+     */
+    public void compact() {
+        if (journal == null || !compactionQueued.compareAndSet(false, true)) {
+            return;
+        }
+
+        long startTime = System.nanoTime();
+        NetworkSnapshot snapshot = captureSnapshot();
+        lastCompactionMillis = System.currentTimeMillis();
+
+        journal.compact(() -> {
+            writeSnapshot(snapshot);
+            if (plugin.getPluginConfig().isDebugEnabled()) {
+                plugin.getLogger().info("Compacted network journal into " + snapshot.getSensorCount() +
+                        " sensors in " + (System.nanoTime() - startTime) / 1_000_000 + " ms");
+            }
+        }, () -> compactionQueued.set(false));
+    }
+
+    /**
+     * Journal of network changes, or null when journaling is off
+     */
+    public NetworkJournal getJournal() {
+        return journal;
+    }
+
+    /**
+     * Regions of the network and which of them are in memory
+     */
+    public RegionStore getRegionStore() {
+        return regionStore;
+    }
+
+    /**
+     * Encode every resident region with unsaved changes. Must run on the server thread.
+     */
+    private NetworkSnapshot captureSnapshot() {
+        return new NetworkSnapshot(regionStore.captureDirtyRegions());
+    }
+
+    /**
+     * Write a captured snapshot, throwing the first failure after attempting every region
+     */
+    private void writeSnapshot(NetworkSnapshot snapshot) throws IOException {
+        IOException failure = null;
+        for (RegionStore.RegionWrite region : snapshot.regions) {
+            try {
+                region.write();
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
     }
 }
@@ -0,0 +1,241 @@
+package com.sculksignal.storage;
+
+import com.sculksignal.network.SculkNode;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Binary on-disk format for one region of a world's sensor network.
+ *
+ * Layout (big-endian):
+ * <pre>
+ *   header   magic "SSNW" (int), format version (int), node count (int),
+ *            edge count (int), stub count (int, version 2+),
+ *            payload length (long), CRC32 of payload (long)
+ *   nodes    per node: packed block position (long), owner UUID (two longs),
+ *            flags (int, version 3+: critical bit, tuned frequencies above
+ *            {@link #FREQUENCY_SHIFT})
+ *   edges    per undirected edge inside the file: the two node indices (two ints)
+ *   stubs    per edge leaving the file: node index (int) and the packed
+ *            block position of the sensor at the other end (long)
+ * </pre>
+ * Files are read through a memory-mapped buffer and written to a temporary
+ * file that is then moved over the old one. Version 1 files have no stubs;
+ * nodes in version 1 and 2 files have no flags.
+ */
+public final class NetworkFileFormat {
+
+    public static final int MAGIC = 0x53534E57; // "SSNW"
+    public static final int VERSION = 3;
+
+    /**
+     * Node flag: signals to this sensor load its chunk even in no-load mode
+     */
+    public static final int FLAG_CRITICAL = 1;
+
+    /**
+     * Node flags above this bit hold the mask of frequencies the sensor is tuned to
+     */
+    public static final int FREQUENCY_SHIFT = 16;
+
+    static final int V1_HEADER_BYTES = 4 + 4 + 4 + 4 + 8 + 8;
+    static final int HEADER_BYTES = V1_HEADER_BYTES + 4;
+    static final int V2_NODE_BYTES = 8 + 8 + 8;
+    static final int NODE_BYTES = V2_NODE_BYTES + 4;
+    static final int EDGE_BYTES = 4 + 4;
+    static final int STUB_BYTES = 4 + 8;
+
+    private NetworkFileFormat() {
+    }
+
+    /**
+     * A sensor's flags as stored in network files, the journal and traces
+     */
+    public static int flags(SculkNode node) {
+        return (node.isCritical() ? FLAG_CRITICAL : 0) | (node.getFrequencies() << FREQUENCY_SHIFT);
+    }
+
+    /**
+     * Decoded contents of one network file. Edges are stored as pairs of node
+     * indices: edge i connects edges[2i] and edges[2i + 1]. Stub i connects
+     * node stubSources[i] to the sensor at packed position stubTargets[i],
+     * which lives in another file.
+     */
+    public static final class WorldData {
+        public final long[] positions;
+        public final long[] ownersMost;
+        public final long[] ownersLeast;
+        public final int[] flags;
+        public final int[] edges;
+        public final int[] stubSources;
+        public final long[] stubTargets;
+
+        public WorldData(long[] positions, long[] ownersMost, long[] ownersLeast, int[] flags,
+                         int[] edges, int[] stubSources, long[] stubTargets) {
+            this.positions = positions;
+            this.ownersMost = ownersMost;
+            this.ownersLeast = ownersLeast;
+            this.flags = flags;
+            this.edges = edges;
+            this.stubSources = stubSources;
+            this.stubTargets = stubTargets;
+        }
+
+        public int getNodeCount() {
+            return positions.length;
+        }
+
+        public int getEdgeCount() {
+            return edges.length / 2;
+        }
+
+        public int getStubCount() {
+            return stubSources.length;
+        }
+
+        public boolean isEmpty() {
+            return positions.length == 0 && stubSources.length == 0;
+        }
+    }
+
+    /**
+     * Write a network file, replacing any existing one atomically
+     */
+    public static void write(Path file, WorldData data) throws IOException {
+        int nodeCount = data.getNodeCount();
+        int edgeCount = data.getEdgeCount();
+        int stubCount = data.getStubCount();
+        long payloadLength = (long) nodeCount * NODE_BYTES + (long) edgeCount * EDGE_BYTES +
+                (long) stubCount * STUB_BYTES;
+        if (HEADER_BYTES + payloadLength > Integer.MAX_VALUE) {
+            throw new IOException("Network too large for a single file: " + nodeCount + " nodes, " + edgeCount + " edges");
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect((int) (HEADER_BYTES + payloadLength));
+        buffer.position(HEADER_BYTES);
+        for (int i = 0; i < nodeCount; i++) {
+            buffer.putLong(data.positions[i]);
+            buffer.putLong(data.ownersMost[i]);
+            buffer.putLong(data.ownersLeast[i]);
+            buffer.putInt(data.flags[i]);
+        }
+        for (int edge : data.edges) {
+            buffer.putInt(edge);
+        }
+        for (int i = 0; i < stubCount; i++) {
+            buffer.putInt(data.stubSources[i]);
+            buffer.putLong(data.stubTargets[i]);
+        }
+
+        CRC32 crc = new CRC32();
+        buffer.flip().position(HEADER_BYTES);
+        crc.update(buffer);
+
+        buffer.clear();
+        buffer.putInt(MAGIC)
+                .putInt(VERSION)
+                .putInt(nodeCount)
+                .putInt(edgeCount)
+                .putInt(stubCount)
+                .putLong(payloadLength)
+                .putLong(crc.getValue());
+        buffer.clear();
+
+        Files.createDirectories(file.getParent());
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Read and verify a network file through a memory-mapped buffer
+     */
+    public static WorldData read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < V1_HEADER_BYTES) {
+                throw new IOException("Truncated network file header: " + file);
+            }
+
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+            int magic = buffer.getInt();
+            int version = buffer.getInt();
+            if (magic != MAGIC) {
+                throw new IOException("Not a SculkSignal network file: " + file);
+            }
+            if (version < 1 || version > VERSION) {
+                throw new IOException("Unsupported network file version " + version + ": " + file);
+            }
+
+            int headerBytes = version == 1 ? V1_HEADER_BYTES : HEADER_BYTES;
+            int nodeCount = buffer.getInt();
+            int edgeCount = buffer.getInt();
+            int nodeBytes = version < 3 ? V2_NODE_BYTES : NODE_BYTES;
+            int stubCount = version == 1 ? 0 : buffer.getInt();
+            long payloadLength = buffer.getLong();
+            long checksum = buffer.getLong();
+
+            if (nodeCount < 0 || edgeCount < 0 || stubCount < 0 ||
+                    payloadLength != (long) nodeCount * nodeBytes + (long) edgeCount * EDGE_BYTES +
+                            (long) stubCount * STUB_BYTES ||
+                    headerBytes + payloadLength != size) {
+                throw new IOException("Corrupt network file header: " + file);
+            }
+
+            CRC32 crc = new CRC32();
+            crc.update(buffer.slice(headerBytes, (int) payloadLength));
+            if (crc.getValue() != checksum) {
+                throw new IOException("Network file checksum mismatch: " + file);
+            }
+
+            long[] positions = new long[nodeCount];
+            long[] ownersMost = new long[nodeCount];
+            long[] ownersLeast = new long[nodeCount];
+            int[] flags = new int[nodeCount];
+            for (int i = 0; i < nodeCount; i++) {
+                positions[i] = buffer.getLong();
+                ownersMost[i] = buffer.getLong();
+                ownersLeast[i] = buffer.getLong();
+                if (version >= 3) {
+                    flags[i] = buffer.getInt();
+                }
+            }
+
+            int[] edges = new int[edgeCount * 2];
+            buffer.asIntBuffer().get(edges);
+            buffer.position(buffer.position() + edges.length * 4);
+            for (int edge : edges) {
+                if (edge < 0 || edge >= nodeCount) {
+                    throw new IOException("Edge refers to missing node " + edge + ": " + file);
+                }
+            }
+
+            int[] stubSources = new int[stubCount];
+            long[] stubTargets = new long[stubCount];
+            for (int i = 0; i < stubCount; i++) {
+                stubSources[i] = buffer.getInt();
+                stubTargets[i] = buffer.getLong();
+                if (stubSources[i] < 0 || stubSources[i] >= nodeCount) {
+                    throw new IOException("Stub refers to missing node " + stubSources[i] + ": " + file);
+                }
+            }
+
+            return new WorldData(positions, ownersMost, ownersLeast, flags, edges, stubSources, stubTargets);
+        }
+    }
+}
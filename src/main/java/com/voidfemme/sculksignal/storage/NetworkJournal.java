@@ -0,0 +1,549 @@
+package com.sculksignal.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only write-ahead journal of sensor registrations, removals and flag
+ * changes.
+ *
+ * Records are encoded on the calling thread and handed to a single writer
+ * thread, which commits everything queued since its last pass with one write
+ * and one fsync (group commit). Compactions travel through the same queue, so
+ * a snapshot always covers exactly the records committed before it and the
+ * journal can be truncated once the snapshot is on disk.
+ *
+ * Record layout (big-endian): payload length (int), CRC32 of the payload
+ * (int), then the payload: operation (byte), packed block position (long),
+ * world name (unsigned short length + UTF-8 bytes) and, for registrations,
+ * the owner UUID (two longs) or, for flag changes, the new flags (int). Reading stops at the first torn or corrupt
+ * record, which is where a crash mid-write leaves the tail.
+ *
+ * Records no snapshot can cover, such as those for worlds that are not
+ * loaded, can be carried: they are committed like any other and written
+ * again at the start of the journal every time it is truncated.
+ */
+public class NetworkJournal {
+
+    public static final byte REGISTER = 1;
+    public static final byte UNREGISTER = 2;
+    public static final byte FLAGS = 3;
+
+    private static final int RECORD_HEADER_BYTES = 4 + 4;
+    private static final int MAX_PAYLOAD_BYTES = 1 + 8 + 2 + 0xFFFF + 16;
+    private static final long CLOSE_TIMEOUT_SECONDS = 30;
+
+    private final Path file;
+    private final long flushIntervalMs;
+    private final Logger logger;
+    private final BlockingQueue<Entry> queue;
+    private final AtomicLong size;
+    private final AtomicLong recordsCommitted;
+    private final AtomicLong commits;
+    private volatile List<ByteBuffer> carried;
+    private volatile long carriedSize;
+    private FileChannel channel;
+    private Thread writer;
+    private volatile boolean open;
+
+    public NetworkJournal(Path file, long flushIntervalMs, Logger logger) {
+        this.file = file;
+        this.flushIntervalMs = flushIntervalMs;
+        this.logger = logger;
+        this.queue = new LinkedBlockingQueue<>();
+        this.size = new AtomicLong();
+        this.recordsCommitted = new AtomicLong();
+        this.commits = new AtomicLong();
+        this.carried = List.of();
+    }
+
+    /**
+     * Writes a snapshot of the network during compaction
+     */
+    @FunctionalInterface
+    public interface SnapshotWriter {
+        void write() throws IOException;
+    }
+
+    /**
+     * A decoded journal record
+     */
+    public static final class Record {
+        public final byte operation;
+        public final String worldName;
+        public final long packedPosition;
+        public final UUID owner;
+        public final int flags;
+
+        public Record(byte operation, String worldName, long packedPosition, UUID owner, int flags) {
+            this.operation = operation;
+            this.worldName = worldName;
+            this.packedPosition = packedPosition;
+            this.owner = owner;
+            this.flags = flags;
+        }
+    }
+
+    /**
+     * Records read back from a journal file, and the length of its intact prefix
+     */
+    public static final class ReadResult {
+        public final List<Record> records;
+        public final long validLength;
+        public final long fileLength;
+
+        ReadResult(List<Record> records, long validLength, long fileLength) {
+            this.records = records;
+            this.validLength = validLength;
+            this.fileLength = fileLength;
+        }
+    }
+
+    /**
+     * Read every intact record from a journal file, stopping at the first torn
+     * or corrupt one
+     */
+    public static ReadResult read(Path file) throws IOException {
+        List<Record> records = new ArrayList<>();
+        if (!Files.exists(file)) {
+            return new ReadResult(records, 0, 0);
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long fileLength = channel.size();
+            if (fileLength == 0) {
+                return new ReadResult(records, 0, 0);
+            }
+
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileLength);
+            CRC32 crc = new CRC32();
+            long validLength = 0;
+
+            while (buffer.remaining() >= RECORD_HEADER_BYTES) {
+                int length = buffer.getInt();
+                int checksum = buffer.getInt();
+                if (length <= 0 || length > MAX_PAYLOAD_BYTES || length > buffer.remaining()) {
+                    break;
+                }
+
+                ByteBuffer payload = buffer.slice(buffer.position(), length);
+                crc.reset();
+                crc.update(payload.duplicate());
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+
+                Record record = decode(payload);
+                if (record == null) {
+                    break;
+                }
+                records.add(record);
+                buffer.position(buffer.position() + length);
+                validLength = buffer.position();
+            }
+
+            return new ReadResult(records, validLength, fileLength);
+        }
+    }
+
+    private static Record decode(ByteBuffer payload) {
+        try {
+            byte operation = payload.get();
+            long packedPosition = payload.getLong();
+            byte[] name = new byte[payload.getShort() & 0xFFFF];
+            payload.get(name);
+            String worldName = new String(name, StandardCharsets.UTF_8);
+
+            switch (operation) {
+                case REGISTER:
+                    UUID owner = new UUID(payload.getLong(), payload.getLong());
+                    if (owner.getMostSignificantBits() == 0 && owner.getLeastSignificantBits() == 0) {
+                        owner = null;
+                    }
+                    return new Record(operation, worldName, packedPosition, owner, 0);
+                case UNREGISTER:
+                    return new Record(operation, worldName, packedPosition, null, 0);
+                case FLAGS:
+                    return new Record(operation, worldName, packedPosition, null, payload.getInt());
+                default:
+                    return null;
+            }
+        } catch (RuntimeException e) {
+            // Underflow from a record whose checksum happened to match
+            return null;
+        }
+    }
+
+    /**
+     * Open the journal for appending and start the writer thread. The file is
+     * first truncated to {@code keepLength} bytes, which drops a torn tail or,
+     * with 0, records already folded into a snapshot.
+     */
+    public void open(long keepLength) throws IOException {
+        if (open) {
+            return;
+        }
+
+        Files.createDirectories(file.getParent());
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        channel.truncate(keepLength);
+        channel.position(channel.size());
+        size.set(channel.size());
+
+        open = true;
+        writer = new Thread(this::runWriter, "SculkSignal-Journal");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Queue a registration record. Does nothing once the journal is closed.
+     */
+    public void appendRegister(String worldName, long packedPosition, UUID owner) {
+        append(REGISTER, worldName, packedPosition, owner, 0);
+    }
+
+    /**
+     * Queue a removal record. Does nothing once the journal is closed.
+     */
+    public void appendUnregister(String worldName, long packedPosition) {
+        append(UNREGISTER, worldName, packedPosition, null, 0);
+    }
+
+    /**
+     * Queue a flag change record. Does nothing once the journal is closed.
+     */
+    public void appendFlags(String worldName, long packedPosition, int flags) {
+        append(FLAGS, worldName, packedPosition, null, flags);
+    }
+
+    /**
+     * Queue records that must outlive compaction. They are committed now and
+     * rewritten after every truncation, so they stay in the journal until a
+     * later run replays them. Does nothing once the journal is closed.
+     */
+    public void carry(List<Record> records) {
+        if (!open || records.isEmpty()) {
+            return;
+        }
+
+        List<ByteBuffer> encoded = new ArrayList<>(carried);
+        long bytes = carriedSize;
+        for (Record record : records) {
+            ByteBuffer buffer = encode(record.operation, record.worldName, record.packedPosition, record.owner,
+                    record.flags);
+            encoded.add(buffer);
+            bytes += buffer.remaining();
+            queue.add(Entry.record(buffer.duplicate()));
+        }
+        carried = List.copyOf(encoded);
+        carriedSize = bytes;
+    }
+
+    private void append(byte operation, String worldName, long packedPosition, UUID owner, int flags) {
+        if (open) {
+            queue.add(Entry.record(encode(operation, worldName, packedPosition, owner, flags)));
+        }
+    }
+
+    private static ByteBuffer encode(byte operation, String worldName, long packedPosition, UUID owner, int flags) {
+        byte[] name = worldName.getBytes(StandardCharsets.UTF_8);
+        if (name.length > 0xFFFF) {
+            throw new IllegalArgumentException("World name too long for the journal: " + worldName);
+        }
+
+        int payloadLength = 1 + 8 + 2 + name.length + (operation == REGISTER ? 16 : operation == FLAGS ? 4 : 0);
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_BYTES + payloadLength);
+        record.putInt(payloadLength).putInt(0);
+        record.put(operation).putLong(packedPosition).putShort((short) name.length).put(name);
+        if (operation == REGISTER) {
+            record.putLong(owner != null ? owner.getMostSignificantBits() : 0);
+            record.putLong(owner != null ? owner.getLeastSignificantBits() : 0);
+        } else if (operation == FLAGS) {
+            record.putInt(flags);
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), RECORD_HEADER_BYTES, payloadLength);
+        record.putInt(4, (int) crc.getValue());
+        record.clear();
+        return record;
+    }
+
+    /**
+     * Queue a compaction. Once every record queued before it is committed, the
+     * writer thread runs {@code snapshot} and, if it succeeds, truncates the
+     * journal. The snapshot must describe the network as of this call.
+     */
+    public void compact(SnapshotWriter snapshot, Runnable onComplete) {
+        if (open) {
+            queue.add(Entry.write(snapshot, onComplete, true));
+        }
+    }
+
+    /**
+     * Queue a file write on the writer thread, ordered after every record and
+     * compaction queued before it, without truncating the journal. Returns
+     * false if the journal is closed and nothing was queued.
+     */
+    public boolean submit(SnapshotWriter write) {
+        if (!open) {
+            return false;
+        }
+
+        queue.add(Entry.write(write, null, false));
+        return true;
+    }
+
+    /**
+     * Block until every record queued so far has been committed
+     */
+    public void flush() {
+        if (!open) {
+            return;
+        }
+
+        CountDownLatch latch = new CountDownLatch(1);
+        queue.add(Entry.barrier(latch, false));
+        awaitQuietly(latch);
+    }
+
+    /**
+     * Commit everything still queued, stop the writer thread and close the file
+     */
+    public void close() {
+        if (!open) {
+            return;
+        }
+
+        open = false;
+        CountDownLatch latch = new CountDownLatch(1);
+        queue.add(Entry.barrier(latch, true));
+        awaitQuietly(latch);
+
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(CLOSE_TIMEOUT_SECONDS));
+            channel.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to close network journal", e);
+        }
+    }
+
+    public boolean isOpen() {
+        return open;
+    }
+
+    /**
+     * Bytes committed to the journal file since it was last truncated,
+     * including carried records
+     */
+    public long getSize() {
+        return size.get();
+    }
+
+    /**
+     * Bytes of carried records, which compaction cannot remove
+     */
+    public long getCarriedSize() {
+        return carriedSize;
+    }
+
+    public int getCarriedCount() {
+        return carried.size();
+    }
+
+    public int getPendingCount() {
+        return queue.size();
+    }
+
+    public long getRecordsCommitted() {
+        return recordsCommitted.get();
+    }
+
+    /**
+     * Number of group commits, each ending in one fsync
+     */
+    public long getCommitCount() {
+        return commits.get();
+    }
+
+    private void runWriter() {
+        List<Entry> batch = new ArrayList<>();
+        boolean stopping = false;
+
+        while (!stopping) {
+            batch.clear();
+            try {
+                Entry first = queue.take();
+                batch.add(first);
+                // Give the server thread a moment to queue more records for the same fsync
+                if (first.record != null && flushIntervalMs > 0) {
+                    Thread.sleep(flushIntervalMs);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            queue.drainTo(batch);
+            stopping = process(batch);
+        }
+    }
+
+    /**
+     * Commit a batch, handling compactions and barriers in queue order.
+     * Returns true once a closing barrier has been processed.
+     */
+    private boolean process(List<Entry> batch) {
+        List<ByteBuffer> pending = new ArrayList<>();
+        boolean stopping = false;
+
+        for (Entry entry : batch) {
+            if (entry.record != null) {
+                pending.add(entry.record);
+                continue;
+            }
+
+            commit(pending);
+            if (entry.snapshot != null) {
+                runWrite(entry);
+            } else {
+                entry.latch.countDown();
+                stopping |= entry.stop;
+            }
+        }
+
+        commit(pending);
+        return stopping;
+    }
+
+    private void commit(List<ByteBuffer> records) {
+        if (records.isEmpty()) {
+            return;
+        }
+
+        try {
+            ByteBuffer[] buffers = records.toArray(new ByteBuffer[0]);
+            long remaining = 0;
+            for (ByteBuffer buffer : buffers) {
+                remaining += buffer.remaining();
+            }
+            while (remaining > 0) {
+                remaining -= channel.write(buffers);
+            }
+            channel.force(false);
+
+            size.set(channel.position());
+            recordsCommitted.addAndGet(records.size());
+            commits.incrementAndGet();
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Failed to commit " + records.size() + " network journal records", e);
+        }
+        records.clear();
+    }
+
+    private void runWrite(Entry entry) {
+        try {
+            entry.snapshot.write();
+            if (entry.truncate) {
+                channel.truncate(0);
+                channel.position(0);
+                writeCarried();
+                channel.force(true);
+                size.set(channel.position());
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.log(Level.SEVERE, entry.truncate
+                    ? "Network journal compaction failed; keeping the journal"
+                    : "Failed to write network data", e);
+        } finally {
+            if (entry.onComplete != null) {
+                entry.onComplete.run();
+            }
+        }
+    }
+
+    /**
+     * Write the carried records back at the start of a truncated journal
+     */
+    private void writeCarried() throws IOException {
+        List<ByteBuffer> records = carried;
+        if (records.isEmpty()) {
+            return;
+        }
+
+        ByteBuffer[] buffers = new ByteBuffer[records.size()];
+        long remaining = 0;
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = records.get(i).duplicate();
+            remaining += buffers[i].remaining();
+        }
+        while (remaining > 0) {
+            remaining -= channel.write(buffers);
+        }
+    }
+
+    private void awaitQuietly(CountDownLatch latch) {
+        try {
+            if (!latch.await(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                logger.warning("Timed out waiting for the network journal writer");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Queue entry: a record, a file write (truncating the journal for a
+     * compaction) or a barrier
+     */
+    private static final class Entry {
+        final ByteBuffer record;
+        final SnapshotWriter snapshot;
+        final Runnable onComplete;
+        final boolean truncate;
+        final CountDownLatch latch;
+        final boolean stop;
+
+        private Entry(ByteBuffer record, SnapshotWriter snapshot, Runnable onComplete, boolean truncate,
+                      CountDownLatch latch, boolean stop) {
+            this.record = record;
+            this.snapshot = snapshot;
+            this.onComplete = onComplete;
+            this.truncate = truncate;
+            this.latch = latch;
+            this.stop = stop;
+        }
+
+        static Entry record(ByteBuffer record) {
+            return new Entry(record, null, null, false, null, false);
+        }
+
+        static Entry write(SnapshotWriter snapshot, Runnable onComplete, boolean truncate) {
+            return new Entry(null, snapshot, onComplete, truncate, null, false);
+        }
+
+        static Entry barrier(CountDownLatch latch, boolean stop) {
+            return new Entry(null, null, null, false, latch, stop);
+        }
+    }
+}
@@ -0,0 +1,947 @@
+package com.sculksignal.storage;
+
+import com.sculksignal.SculkSignalPlugin;
+import com.sculksignal.network.AdjacencyStore;
+import com.sculksignal.network.NetworkRegistry;
+import com.sculksignal.network.RegistryListener;
+import com.sculksignal.network.SculkNode;
+import com.sculksignal.network.SensorGraph;
+import com.sculksignal.network.WorldShard;
+import com.sculksignal.scheduler.ExecutionBackend;
+import com.sculksignal.util.ChunkCoordinate;
+import com.sculksignal.util.LongHashMap;
+import com.sculksignal.util.PackedBlockPos;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
+import org.bukkit.Location;
+import org.bukkit.World;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+
+/**
+ * Keeps the sensor network on disk as one file per region of 32x32 chunks and
+ * tracks which regions are resident in the {@link NetworkRegistry}.
+ *
+ * Connections between two resident regions live in the registry like any
+ * other. A connection whose far end is in a region that is not resident is
+ * kept as a stub: the packed positions of its two sensors. Stubs are written
+ * into the region files and become real connections again when the far region
+ * is paged in, which is how routing follows a network across regions.
+ *
+ * In lazy mode a region is paged in when one of its chunks loads and paged
+ * out once it has had no loaded chunks for a while. Otherwise every region is
+ * paged in at startup and stays resident.
+ *
+ * Must only be used from the server thread; file writes are handed to the
+ * journal writer thread when a journal is open.
+ */
+public class RegionStore implements RegistryListener {
+
+    public static final int REGION_SHIFT = 5; // 32x32 chunks
+    private static final int BLOCK_SHIFT = REGION_SHIFT + 4;
+    private static final int REGION_BLOCKS = 1 << BLOCK_SHIFT;
+    private static final String FILE_PREFIX = "r.";
+    private static final String FILE_EXTENSION = ".ssn";
+    private static final long PAGE_OUT_CHECK_TICKS = 100;
+    private static final long[] NO_STUBS = new long[0];
+
+    private final SculkSignalPlugin plugin;
+    private final Path networkDirectory;
+    private final Map<String, WorldRegions> worlds;
+    private final Map<Path, NetworkFileFormat.WorldData> pendingWrites;
+    private NetworkJournal writeQueue;
+    private ExecutionBackend.Task pageOutTask;
+    private boolean paging;
+    private int[] indexScratch;
+    private final List<Region> closureScratch;
+
+    public RegionStore(SculkSignalPlugin plugin, Path networkDirectory) {
+        this.plugin = plugin;
+        this.networkDirectory = networkDirectory;
+        this.worlds = new HashMap<>();
+        this.pendingWrites = new ConcurrentHashMap<>();
+        this.indexScratch = new int[0];
+        this.closureScratch = new ArrayList<>();
+    }
+
+    /**
+     * Regions of one world that have been seen this session. Resident regions
+     * holding stubs are also listed on their own, so finding where a network
+     * leaves memory does not mean looking at every region. {@code stubEpoch}
+     * counts changes to that list and to which sensors it could lead from.
+     */
+    private static final class WorldRegions {
+        final World world;
+        final LongHashMap<Region> regions;
+        final List<Region> stubHolders;
+        long stubEpoch;
+
+        WorldRegions(World world) {
+            this.world = world;
+            this.regions = new LongHashMap<>();
+            this.stubHolders = new ArrayList<>();
+        }
+
+        /**
+         * Add a region to the stub holders or take it off, after its stubs or residency changed
+         */
+        void updateStubHolder(Region region) {
+            boolean holds = region.resident && region.stubCount > 0;
+            if (holds && region.holderIndex < 0) {
+                region.holderIndex = stubHolders.size();
+                stubHolders.add(region);
+            } else if (!holds && region.holderIndex >= 0) {
+                Region last = stubHolders.remove(stubHolders.size() - 1);
+                if (last != region) {
+                    stubHolders.set(region.holderIndex, last);
+                    last.holderIndex = region.holderIndex;
+                }
+                region.holderIndex = -1;
+            }
+        }
+    }
+
+    /**
+     * State of one region. {@code version} counts changes to the region's
+     * sensors and connections; the file is current when it matches
+     * {@code writtenVersion}.
+     */
+    private static final class Region {
+        final String worldName;
+        final int x;
+        final int z;
+        final Path file;
+        boolean resident;
+        boolean readFailed;
+        int loadedChunks;
+        long idleSince;
+        long version;
+        volatile long writtenVersion;
+        long closureEpoch;
+        int closureComponent;
+        int holderIndex;
+
+        // Pairs of packed positions: sensor in this region, sensor in a region that is not resident
+        long[] stubs;
+        int stubCount;
+
+        Region(String worldName, int x, int z, Path file) {
+            this.worldName = worldName;
+            this.x = x;
+            this.z = z;
+            this.file = file;
+            this.stubs = NO_STUBS;
+            this.closureEpoch = -1;
+            this.holderIndex = -1;
+        }
+
+        boolean isDirty() {
+            return version != writtenVersion;
+        }
+
+        void addStub(long source, long target) {
+            if (stubCount * 2 == stubs.length) {
+                stubs = Arrays.copyOf(stubs, Math.max(8, stubs.length << 1));
+            }
+            stubs[stubCount * 2] = source;
+            stubs[stubCount * 2 + 1] = target;
+            stubCount++;
+        }
+
+        /**
+         * Remove the stubs whose far end is in the given region, returning them as pairs
+         */
+        long[] takeStubsInto(int regionX, int regionZ) {
+            long[] taken = NO_STUBS;
+            int takenCount = 0;
+            int write = 0;
+            for (int i = 0; i < stubCount; i++) {
+                long source = stubs[i * 2];
+                long target = stubs[i * 2 + 1];
+                if (regionX(target) == regionX && regionZ(target) == regionZ) {
+                    if (takenCount * 2 == taken.length) {
+                        taken = Arrays.copyOf(taken, Math.max(8, taken.length << 1));
+                    }
+                    taken[takenCount * 2] = source;
+                    taken[takenCount * 2 + 1] = target;
+                    takenCount++;
+                } else {
+                    stubs[write * 2] = source;
+                    stubs[write * 2 + 1] = target;
+                    write++;
+                }
+            }
+            stubCount = write;
+            return Arrays.copyOf(taken, takenCount * 2);
+        }
+
+        void removeStubsFrom(long source) {
+            int write = 0;
+            for (int i = 0; i < stubCount; i++) {
+                if (stubs[i * 2] != source) {
+                    stubs[write * 2] = stubs[i * 2];
+                    stubs[write * 2 + 1] = stubs[i * 2 + 1];
+                    write++;
+                }
+            }
+            stubCount = write;
+        }
+
+        void clearStubs() {
+            stubs = NO_STUBS;
+            stubCount = 0;
+        }
+    }
+
+    /**
+     * An encoded region ready to be written from any thread
+     */
+    public final class RegionWrite implements NetworkJournal.SnapshotWriter {
+        private final Region region;
+        private final Path file;
+        private final NetworkFileFormat.WorldData data;
+        private final long capturedVersion;
+        // Data left in pendingWrites by a page-out that this write makes obsolete
+        private final NetworkFileFormat.WorldData supersedes;
+
+        private RegionWrite(Region region, NetworkFileFormat.WorldData data) {
+            this.region = region;
+            this.file = region.file;
+            this.data = data;
+            this.capturedVersion = region.version;
+            this.supersedes = pendingWrites.get(file);
+        }
+
+        /**
+         * Write of data a page-out left behind, for a region that is no longer tracked
+         */
+        private RegionWrite(Path file, NetworkFileFormat.WorldData data) {
+            this.region = null;
+            this.file = file;
+            this.data = data;
+            this.capturedVersion = 0;
+            this.supersedes = data;
+        }
+
+        public int getSensorCount() {
+            return data.getNodeCount();
+        }
+
+        public int getConnectionCount() {
+            return data.getEdgeCount() + data.getStubCount();
+        }
+
+        @Override
+        public void write() throws IOException {
+            if (data.isEmpty()) {
+                Files.deleteIfExists(file);
+            } else {
+                NetworkFileFormat.write(file, data);
+            }
+            if (region != null) {
+                region.writtenVersion = capturedVersion;
+            }
+            if (supersedes != null) {
+                pendingWrites.remove(file, supersedes);
+            }
+        }
+    }
+
+    /**
+     * Send file writes through the journal writer thread, or write inline when null
+     */
+    public void setWriteQueue(NetworkJournal journal) {
+        this.writeQueue = journal;
+    }
+
+    /**
+     * Page in every saved region of every loaded world, restoring all of them
+     * into the registry in one batch
+     */
+    public void loadAll() {
+        long startTime = System.nanoTime();
+        List<SculkNode> nodes = new ArrayList<>();
+        int[] edges = new int[0];
+        int edgeCount = 0;
+        List<Region> loaded = new ArrayList<>();
+        List<NetworkFileFormat.WorldData> loadedData = new ArrayList<>();
+
+        for (World world : Bukkit.getWorlds()) {
+            Path directory = getWorldDirectory(world.getName());
+            if (!Files.isDirectory(directory)) {
+                continue;
+            }
+
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, FILE_PREFIX + "*" + FILE_EXTENSION)) {
+                for (Path file : files) {
+                    Region region = getRegion(world, file);
+                    if (region == null || region.resident) {
+                        continue;
+                    }
+
+                    NetworkFileFormat.WorldData data = readRegion(region);
+                    if (data == null) {
+                        continue;
+                    }
+
+                    int offset = nodes.size();
+                    nodes.addAll(decode(world, data));
+                    if (edgeCount + data.edges.length > edges.length) {
+                        edges = Arrays.copyOf(edges, Math.max(edgeCount + data.edges.length, edges.length << 1));
+                    }
+                    for (int edge : data.edges) {
+                        edges[edgeCount++] = edge + offset;
+                    }
+
+                    region.resident = true;
+                    loaded.add(region);
+                    loadedData.add(data);
+                }
+            } catch (IOException e) {
+                plugin.getLogger().log(Level.SEVERE, "Failed to list saved networks for world " + world.getName(), e);
+            }
+        }
+
+        int restored = plugin.getNetworkRegistry().restoreSensors(nodes, Arrays.copyOf(edges, edgeCount));
+
+        // Every region is resident now, so each stub becomes a real connection
+        for (int i = 0; i < loaded.size(); i++) {
+            restoreStubs(loaded.get(i), loadedData.get(i));
+        }
+
+        long durationMs = (System.nanoTime() - startTime) / 1_000_000;
+        plugin.getLogger().info("Loaded " + restored + " sensors from " + loaded.size() + " regions in " +
+                durationMs + " ms");
+    }
+
+    /**
+     * Start lazy paging: page in the regions of chunks that are already loaded
+     * and start the task that pages idle regions out
+     */
+    public void startPaging() {
+        paging = true;
+        for (World world : Bukkit.getWorlds()) {
+            for (Chunk chunk : world.getLoadedChunks()) {
+                onChunkLoad(world, chunk.getX(), chunk.getZ());
+            }
+        }
+
+        if (pageOutTask == null) {
+            pageOutTask = plugin.getExecutionBackend().runRepeating(
+                    () -> pageOutIdle(plugin.getPluginConfig().getRegionIdleSeconds() * 1000L),
+                    PAGE_OUT_CHECK_TICKS, PAGE_OUT_CHECK_TICKS);
+        }
+    }
+
+    public void stopPaging() {
+        paging = false;
+        if (pageOutTask != null) {
+            pageOutTask.cancel();
+            pageOutTask = null;
+        }
+    }
+
+    /**
+     * Whether regions are paged in and out on demand
+     */
+    public boolean isPaging() {
+        return paging;
+    }
+
+    public void onChunkLoad(World world, int chunkX, int chunkZ) {
+        if (!paging) {
+            return;
+        }
+
+        Region region = getOrCreateRegion(world, chunkX >> REGION_SHIFT, chunkZ >> REGION_SHIFT);
+        region.loadedChunks++;
+        pageIn(region);
+    }
+
+    public void onChunkUnload(World world, int chunkX, int chunkZ) {
+        if (!paging) {
+            return;
+        }
+
+        WorldRegions regions = worlds.get(world.getName());
+        Region region = regions != null
+                ? regions.regions.get(ChunkCoordinate.pack(chunkX >> REGION_SHIFT, chunkZ >> REGION_SHIFT))
+                : null;
+        if (region != null && region.loadedChunks > 0 && --region.loadedChunks == 0) {
+            region.idleSince = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Page out every region of a world that is being unloaded
+     */
+    public void onWorldUnload(World world) {
+        WorldRegions regions = worlds.get(world.getName());
+        if (!paging || regions == null) {
+            return;
+        }
+
+        for (Region region : collectRegions(regions)) {
+            pageOut(region);
+        }
+        worlds.remove(world.getName());
+    }
+
+    /**
+     * Page out resident regions that have had no loaded chunks for at least
+     * the given time
+     */
+    public void pageOutIdle(long idleMillis) {
+        long now = System.currentTimeMillis();
+        int pagedOut = 0;
+        for (WorldRegions regions : new ArrayList<>(worlds.values())) {
+            for (Region region : collectRegions(regions)) {
+                if (region.resident && region.loadedChunks == 0 && now - region.idleSince >= idleMillis) {
+                    pageOut(region);
+                    pagedOut++;
+                }
+            }
+        }
+
+        if (pagedOut > 0 && plugin.getPluginConfig().isDebugEnabled()) {
+            plugin.getLogger().info("Paged out " + pagedOut + " idle regions");
+        }
+    }
+
+    /**
+     * Page in every region around a block that a sensor there could connect into
+     */
+    public void pageInAround(Location location) {
+        World world = location.getWorld();
+        double range = NetworkRegistry.SENSOR_RANGE;
+        int minX = (int) Math.floor(location.getX() - range) >> BLOCK_SHIFT;
+        int maxX = (int) Math.floor(location.getX() + range) >> BLOCK_SHIFT;
+        int minZ = (int) Math.floor(location.getZ() - range) >> BLOCK_SHIFT;
+        int maxZ = (int) Math.floor(location.getZ() + range) >> BLOCK_SHIFT;
+
+        for (int rx = minX; rx <= maxX; rx++) {
+            for (int rz = minZ; rz <= maxZ; rz++) {
+                pageIn(getOrCreateRegion(world, rx, rz));
+            }
+        }
+    }
+
+    /**
+     * Page in every region the source's network reaches through stubs, as far
+     * as a route from the source can go, so routing sees the whole network.
+     * Only resident regions holding stubs are looked at, and the result is
+     * remembered until the world's stubs or components change.
+     */
+    public void pageInReachable(SculkNode source, double maxDistance) {
+        WorldRegions regions = worlds.get(source.getWorldName());
+        if (!paging || regions == null || regions.stubHolders.isEmpty()) {
+            return;
+        }
+
+        Region start = regions.regions.get(ChunkCoordinate.pack(
+                (int) Math.floor(source.getX()) >> BLOCK_SHIFT, (int) Math.floor(source.getZ()) >> BLOCK_SHIFT));
+        if (start == null ||
+                (start.closureEpoch == regions.stubEpoch && start.closureComponent == source.getComponentId())) {
+            return;
+        }
+
+        long radius = (long) Math.ceil(maxDistance / REGION_BLOCKS);
+        double maxDistanceSquared = maxDistance * maxDistance;
+        List<Region> toPageIn = closureScratch;
+
+        do {
+            toPageIn.clear();
+            int componentId = source.getComponentId();
+
+            for (int h = 0; h < regions.stubHolders.size(); h++) {
+                Region region = regions.stubHolders.get(h);
+                if (Math.abs(region.x - start.x) > radius || Math.abs(region.z - start.z) > radius) {
+                    continue;
+                }
+
+                for (int i = 0; i < region.stubCount; i++) {
+                    long target = region.stubs[i * 2 + 1];
+                    if (source.distanceSquaredTo(PackedBlockPos.unpackX(target), PackedBlockPos.unpackY(target),
+                            PackedBlockPos.unpackZ(target)) > maxDistanceSquared) {
+                        continue;
+                    }
+
+                    SculkNode from = getSensor(regions.world, region.stubs[i * 2]);
+                    Region far = getOrCreateRegion(regions.world, regionX(target), regionZ(target));
+                    if (from != null && from.getComponentId() == componentId && !far.resident && !far.readFailed) {
+                        toPageIn.add(far);
+                    }
+                }
+            }
+
+            // Paging in changes the stub holders, so only once the scan is done
+            for (int i = 0; i < toPageIn.size(); i++) {
+                pageIn(toPageIn.get(i));
+            }
+        } while (!toPageIn.isEmpty());
+
+        start.closureEpoch = regions.stubEpoch;
+        start.closureComponent = source.getComponentId();
+    }
+
+    private void pageIn(Region region) {
+        if (region.resident || region.readFailed) {
+            return;
+        }
+
+        NetworkFileFormat.WorldData data = readRegion(region);
+        if (region.readFailed) {
+            return;
+        }
+
+        WorldRegions regions = worlds.get(region.worldName);
+        region.resident = true;
+        region.idleSince = System.currentTimeMillis();
+
+        if (data != null && !data.isEmpty()) {
+            plugin.getNetworkRegistry().restoreSensors(decode(regions.world, data), data.edges);
+            restoreStubs(region, data);
+        }
+
+        // Stubs held by resident neighbours that point into this region
+        for (int dx = -1; dx <= 1; dx++) {
+            for (int dz = -1; dz <= 1; dz++) {
+                Region neighbor = regions.regions.get(ChunkCoordinate.pack(region.x + dx, region.z + dz));
+                if ((dx == 0 && dz == 0) || neighbor == null || !neighbor.resident) {
+                    continue;
+                }
+
+                long[] taken = neighbor.takeStubsInto(region.x, region.z);
+                regions.updateStubHolder(neighbor);
+                for (int i = 0; i < taken.length; i += 2) {
+                    if (!connect(regions.world, taken[i], taken[i + 1])) {
+                        neighbor.version++; // The far sensor is gone; drop the stub on the next write
+                    }
+                }
+            }
+        }
+        regions.stubEpoch++;
+    }
+
+    private void pageOut(Region region) {
+        if (!region.resident || region.readFailed) {
+            return;
+        }
+
+        NetworkRegistry registry = plugin.getNetworkRegistry();
+        WorldRegions regions = worlds.get(region.worldName);
+        List<SculkNode> nodes = registry.getSensorsInRegion(region.worldName, region.x, region.z, REGION_SHIFT);
+        if (region.isDirty()) {
+            scheduleWrite(encode(region, nodes), true);
+        }
+
+        // Connections into resident neighbours become stubs on their side
+        if (!nodes.isEmpty()) {
+            AdjacencyStore adjacency = registry.getShard(region.worldName).getAdjacency();
+            SensorGraph.NeighborCursor cursor = adjacency.cursor();
+            for (SculkNode node : nodes) {
+                cursor.reset(node.getId());
+                for (int id = cursor.next(); id >= 0; id = cursor.next()) {
+                    SculkNode neighbor = adjacency.getNode(id);
+                    Region other = getRegion(regions, neighbor);
+                    if (other != region && other != null) {
+                        other.addStub(pack(neighbor), pack(node));
+                        regions.updateStubHolder(other);
+                    }
+                }
+            }
+        }
+
+        registry.evictSensors(nodes);
+        region.resident = false;
+        region.clearStubs();
+        regions.updateStubHolder(region);
+        regions.stubEpoch++;
+
+        if (nodes.isEmpty() && region.loadedChunks == 0 && !region.isDirty()) {
+            regions.regions.remove(ChunkCoordinate.pack(region.x, region.z));
+        }
+    }
+
+    /**
+     * Turn a region's saved stubs into connections where the far region is
+     * resident, and keep the rest as stubs
+     */
+    private void restoreStubs(Region region, NetworkFileFormat.WorldData data) {
+        WorldRegions regions = worlds.get(region.worldName);
+        for (int i = 0; i < data.getStubCount(); i++) {
+            long source = data.positions[data.stubSources[i]];
+            long target = data.stubTargets[i];
+            Region far = regions.regions.get(ChunkCoordinate.pack(regionX(target), regionZ(target)));
+
+            if (far != null && far.resident) {
+                if (!connect(regions.world, source, target)) {
+                    region.version++; // The far sensor is gone; drop the stub on the next write
+                }
+            } else {
+                region.addStub(source, target);
+            }
+        }
+        regions.updateStubHolder(region);
+    }
+
+    private boolean connect(World world, long source, long target) {
+        SculkNode a = getSensor(world, source);
+        SculkNode b = getSensor(world, target);
+        if (a == null || b == null) {
+            return false;
+        }
+
+        plugin.getNetworkRegistry().connectSensors(a, b);
+        return true;
+    }
+
+    /**
+     * Encode every resident region with unsaved changes, and every paged-out
+     * region whose file has not been written yet. Page-out writes are retried
+     * this way until they succeed, so a compaction never truncates the
+     * journal while the only copy of a region is in memory.
+     */
+    public List<RegionWrite> captureDirtyRegions() {
+        List<RegionWrite> writes = new ArrayList<>();
+        for (WorldRegions regions : worlds.values()) {
+            for (Region region : collectRegions(regions)) {
+                if (region.resident && region.isDirty()) {
+                    writes.add(encode(region, plugin.getNetworkRegistry().getSensorsInRegion(
+                            region.worldName, region.x, region.z, REGION_SHIFT)));
+                }
+            }
+        }
+
+        for (Map.Entry<Path, NetworkFileFormat.WorldData> pending : pendingWrites.entrySet()) {
+            if (!isResident(pending.getKey())) {
+                writes.add(new RegionWrite(pending.getKey(), pending.getValue()));
+            }
+        }
+        return writes;
+    }
+
+    private boolean isResident(Path file) {
+        for (WorldRegions regions : worlds.values()) {
+            for (int slot = 0; slot < regions.regions.capacity(); slot++) {
+                Region region = regions.regions.valueAt(slot);
+                if (region != null && region.resident && region.file.equals(file)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private void scheduleWrite(RegionWrite write, boolean pageOut) {
+        // A region paged out before its file is written is read back from memory
+        if (pageOut) {
+            pendingWrites.put(write.file, write.data);
+        }
+
+        NetworkJournal.SnapshotWriter task = () -> {
+            write.write();
+            if (pageOut) {
+                pendingWrites.remove(write.file, write.data);
+            }
+        };
+
+        if (writeQueue != null && writeQueue.submit(task)) {
+            return;
+        }
+        try {
+            task.write();
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to save network region " + write.file +
+                    "; it will be written again with the next save", e);
+        }
+    }
+
+    private RegionWrite encode(Region region, List<SculkNode> nodes) {
+        // Without a shard the world has no sensors in memory, so only the region's stubs are written
+        WorldShard shard = plugin.getNetworkRegistry().getShard(region.worldName);
+        AdjacencyStore adjacency = shard != null ? shard.getAdjacency() : new AdjacencyStore();
+        if (indexScratch.length < adjacency.getIdBound()) {
+            indexScratch = new int[Math.max(adjacency.getIdBound(), indexScratch.length << 1)];
+            Arrays.fill(indexScratch, -1);
+        }
+
+        int nodeCount = nodes.size();
+        long[] positions = new long[nodeCount];
+        long[] ownersMost = new long[nodeCount];
+        long[] ownersLeast = new long[nodeCount];
+        int[] flags = new int[nodeCount];
+        for (int i = 0; i < nodeCount; i++) {
+            SculkNode node = nodes.get(i);
+            indexScratch[node.getId()] = i;
+            positions[i] = pack(node);
+            flags[i] = NetworkFileFormat.flags(node);
+            UUID owner = node.getOwner();
+            if (owner != null) {
+                ownersMost[i] = owner.getMostSignificantBits();
+                ownersLeast[i] = owner.getLeastSignificantBits();
+            }
+        }
+
+        int[] edges = new int[16];
+        int edgeSize = 0;
+        int[] stubSources = new int[Math.max(4, region.stubCount)];
+        long[] stubTargets = new long[stubSources.length];
+        int stubSize = 0;
+
+        // Edges inside the region once each, from the lower id; edges leaving it as stubs
+        SensorGraph.NeighborCursor cursor = adjacency.cursor();
+        for (int i = 0; i < nodeCount; i++) {
+            int id = nodes.get(i).getId();
+            cursor.reset(id);
+            for (int neighbor = cursor.next(); neighbor >= 0; neighbor = cursor.next()) {
+                int local = indexScratch[neighbor];
+                if (local >= 0) {
+                    if (neighbor > id) {
+                        if (edgeSize + 2 > edges.length) {
+                            edges = Arrays.copyOf(edges, edges.length << 1);
+                        }
+                        edges[edgeSize++] = i;
+                        edges[edgeSize++] = local;
+                    }
+                } else {
+                    if (stubSize == stubSources.length) {
+                        stubSources = Arrays.copyOf(stubSources, stubSize << 1);
+                        stubTargets = Arrays.copyOf(stubTargets, stubSize << 1);
+                    }
+                    stubSources[stubSize] = i;
+                    stubTargets[stubSize++] = pack(adjacency.getNode(neighbor));
+                }
+            }
+        }
+
+        // Stubs into regions that are not resident
+        WorldRegions regions = worlds.get(region.worldName);
+        for (int i = 0; i < region.stubCount; i++) {
+            SculkNode source = getSensor(regions.world, region.stubs[i * 2]);
+            if (source == null || source.getId() < 0 || indexScratch[source.getId()] < 0) {
+                continue;
+            }
+            if (stubSize == stubSources.length) {
+                stubSources = Arrays.copyOf(stubSources, stubSize << 1);
+                stubTargets = Arrays.copyOf(stubTargets, stubSize << 1);
+            }
+            stubSources[stubSize] = indexScratch[source.getId()];
+            stubTargets[stubSize++] = region.stubs[i * 2 + 1];
+        }
+
+        for (SculkNode node : nodes) {
+            indexScratch[node.getId()] = -1;
+        }
+
+        return new RegionWrite(region, new NetworkFileFormat.WorldData(positions, ownersMost, ownersLeast,
+                flags, Arrays.copyOf(edges, edgeSize), Arrays.copyOf(stubSources, stubSize),
+                Arrays.copyOf(stubTargets, stubSize)));
+    }
+
+    @Override
+    public void onSensorRegistering(SculkNode node) {
+        // Neighbouring regions must be resident for the new sensor to find all its connections
+        pageInAround(node.getLocation());
+    }
+
+    @Override
+    public void onSensorRegistered(SculkNode node) {
+        WorldRegions regions = worlds.get(node.getWorldName());
+        Region region = getRegion(regions, node);
+        region.version++;
+
+        // A new connection across a boundary changes the neighbour's file too
+        AdjacencyStore adjacency = plugin.getNetworkRegistry().getShard(node.getWorldName()).getAdjacency();
+        SensorGraph.NeighborCursor cursor = adjacency.cursor();
+        cursor.reset(node.getId());
+        for (int id = cursor.next(); id >= 0; id = cursor.next()) {
+            Region other = getRegion(regions, adjacency.getNode(id));
+            if (other != region && other != null) {
+                other.version++;
+            }
+        }
+
+        // The sensor may have joined components that hold stubs
+        if (!regions.stubHolders.isEmpty()) {
+            regions.stubEpoch++;
+        }
+    }
+
+    @Override
+    public void onSensorUnregistered(SculkNode node) {
+        WorldRegions regions = worlds.get(node.getWorldName());
+        Region region = getRegion(regions, node);
+        if (region != null) {
+            region.version++;
+            region.removeStubsFrom(pack(node));
+            regions.updateStubHolder(region);
+        }
+    }
+
+    @Override
+    public void onSensorChanged(SculkNode node) {
+        Region region = getRegion(worlds.get(node.getWorldName()), node);
+        if (region != null) {
+            region.version++;
+        }
+    }
+
+    public int getRegionCount() {
+        int count = 0;
+        for (WorldRegions regions : worlds.values()) {
+            count += regions.regions.size();
+        }
+        return count;
+    }
+
+    public int getResidentRegionCount() {
+        int count = 0;
+        for (WorldRegions regions : worlds.values()) {
+            for (Region region : collectRegions(regions)) {
+                if (region.resident) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Connections currently held as stubs into regions that are not resident
+     */
+    public int getStubCount() {
+        int count = 0;
+        for (WorldRegions regions : worlds.values()) {
+            for (Region region : regions.stubHolders) {
+                count += region.stubCount;
+            }
+        }
+        return count;
+    }
+
+    private Path getWorldDirectory(String worldName) {
+        return networkDirectory.resolve(worldName);
+    }
+
+    private Region getOrCreateRegion(World world, int regionX, int regionZ) {
+        WorldRegions regions = worlds.computeIfAbsent(world.getName(), name -> new WorldRegions(world));
+        long key = ChunkCoordinate.pack(regionX, regionZ);
+        Region region = regions.regions.get(key);
+        if (region == null) {
+            Path file = getWorldDirectory(world.getName())
+                    .resolve(FILE_PREFIX + regionX + "." + regionZ + FILE_EXTENSION);
+            region = new Region(world.getName(), regionX, regionZ, file);
+            regions.regions.put(key, region);
+        }
+        return region;
+    }
+
+    /**
+     * Region for a file named r.&lt;x&gt;.&lt;z&gt;.ssn, or null if the name does not parse
+     */
+    private Region getRegion(World world, Path file) {
+        String name = file.getFileName().toString();
+        String[] parts = name.substring(FILE_PREFIX.length(), name.length() - FILE_EXTENSION.length()).split("\\.");
+        if (parts.length != 2) {
+            return null;
+        }
+
+        try {
+            return getOrCreateRegion(world, Integer.parseInt(parts[0]), Integer.parseInt(parts[1]));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static Region getRegion(WorldRegions regions, SculkNode node) {
+        if (regions == null) {
+            return null;
+        }
+        return regions.regions.get(ChunkCoordinate.pack(
+                (int) Math.floor(node.getX()) >> BLOCK_SHIFT, (int) Math.floor(node.getZ()) >> BLOCK_SHIFT));
+    }
+
+    private static List<Region> collectRegions(WorldRegions regions) {
+        List<Region> collected = new ArrayList<>(regions.regions.size());
+        for (int slot = 0; slot < regions.regions.capacity(); slot++) {
+            Region region = regions.regions.valueAt(slot);
+            if (region != null) {
+                collected.add(region);
+            }
+        }
+        return collected;
+    }
+
+    /**
+     * Read a region from its pending write or its file. Returns null if it has
+     * never been saved, and marks the region unreadable on failure so it is
+     * never overwritten.
+     */
+    private NetworkFileFormat.WorldData readRegion(Region region) {
+        NetworkFileFormat.WorldData pending = pendingWrites.get(region.file);
+        if (pending != null) {
+            region.version++; // The file is still behind; keep the region dirty until it is written
+            return pending;
+        }
+        if (!Files.exists(region.file)) {
+            return null;
+        }
+
+        try {
+            return NetworkFileFormat.read(region.file);
+        } catch (IOException e) {
+            region.readFailed = true;
+            plugin.getLogger().log(Level.SEVERE, "Failed to load network region " + region.file +
+                    "; it will not be paged in or overwritten", e);
+            return null;
+        }
+    }
+
+    private SculkNode getSensor(World world, long position) {
+        return plugin.getNetworkRegistry().getSensor(new Location(world,
+                PackedBlockPos.unpackX(position), PackedBlockPos.unpackY(position), PackedBlockPos.unpackZ(position)));
+    }
+
+    private static List<SculkNode> decode(World world, NetworkFileFormat.WorldData data) {
+        List<SculkNode> nodes = new ArrayList<>(data.getNodeCount());
+        for (int i = 0; i < data.getNodeCount(); i++) {
+            long position = data.positions[i];
+            Location location = new Location(world,
+                    PackedBlockPos.unpackX(position),
+                    PackedBlockPos.unpackY(position),
+                    PackedBlockPos.unpackZ(position));
+            UUID owner = data.ownersMost[i] == 0 && data.ownersLeast[i] == 0
+                    ? null
+                    : new UUID(data.ownersMost[i], data.ownersLeast[i]);
+            boolean critical = (data.flags[i] & NetworkFileFormat.FLAG_CRITICAL) != 0;
+            nodes.add(new SculkNode(location, owner, critical, data.flags[i] >>> NetworkFileFormat.FREQUENCY_SHIFT));
+        }
+        return nodes;
+    }
+
+    static long pack(SculkNode node) {
+        return PackedBlockPos.pack((int) Math.floor(node.getX()), (int) Math.floor(node.getY()),
+                (int) Math.floor(node.getZ()));
+    }
+
+    private static int regionX(long position) {
+        return PackedBlockPos.unpackX(position) >> BLOCK_SHIFT;
+    }
+
+    private static int regionZ(long position) {
+        return PackedBlockPos.unpackZ(position) >> BLOCK_SHIFT;
+    }
+}
@@ -0,0 +1,194 @@
+package com.sculksignal.trace;
+
+import com.sculksignal.storage.NetworkFileFormat;
+import com.sculksignal.util.PackedBlockPos;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads a trace written by {@link TraceRecorder} one record at a time.
+ *
+ * The current record is exposed through the getters and replaced by each
+ * call to {@link #next()}; WORLD records are consumed internally. Reading
+ * stops at the end of the file or at a record cut short, which is where a
+ * crash mid-recording leaves the tail.
+ */
+public class TraceReader implements Closeable {
+
+    private static final int MAX_WORLD_NAME_BYTES = 0xFFFF;
+
+    private final DataInputStream in;
+    private final long startedAt;
+    private final List<String> worldNames;
+    private byte type;
+    private long tick;
+    private String worldName;
+    private long position;
+    private int flags;
+    private int strength;
+    private int frequency;
+    private int maxHops;
+    private int attenuation;
+
+    public TraceReader(Path file) throws IOException {
+        this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 64 * 1024));
+        this.worldNames = new ArrayList<>();
+
+        try {
+            if (in.readInt() != TraceRecorder.MAGIC) {
+                throw new IOException("Not a SculkSignal trace: " + file);
+            }
+            int version = in.readInt();
+            if (version != TraceRecorder.VERSION) {
+                throw new IOException("Unsupported trace version " + version + ": " + file);
+            }
+            this.startedAt = in.readLong();
+        } catch (IOException e) {
+            in.close();
+            throw e instanceof EOFException ? new IOException("Trace header cut short: " + file, e) : e;
+        }
+    }
+
+    /**
+     * Move to the next record. Returns false at the end of the trace.
+     */
+    public boolean next() throws IOException {
+        try {
+            while (true) {
+                int next = in.read();
+                if (next < 0) {
+                    return false;
+                }
+
+                type = (byte) next;
+                tick += readVarLong();
+                if (type == TraceRecorder.WORLD) {
+                    int index = (int) readVarLong();
+                    int length = (int) readVarLong();
+                    if (index != worldNames.size() || length > MAX_WORLD_NAME_BYTES) {
+                        return false; // Corrupt
+                    }
+                    byte[] name = new byte[length];
+                    in.readFully(name);
+                    worldNames.add(new String(name, StandardCharsets.UTF_8));
+                    continue;
+                }
+
+                int index = (int) readVarLong();
+                if (index < 0 || index >= worldNames.size()) {
+                    return false;
+                }
+                worldName = worldNames.get(index);
+                position = in.readLong();
+
+                switch (type) {
+                    case TraceRecorder.SENSOR, TraceRecorder.FLAGS -> flags = (int) readVarLong();
+                    case TraceRecorder.REMOVE -> {
+                    }
+                    case TraceRecorder.SIGNAL -> {
+                        strength = in.readUnsignedByte();
+                        frequency = in.readUnsignedByte();
+                        maxHops = (int) readVarLong();
+                        attenuation = (int) readVarLong();
+                    }
+                    default -> {
+                        return false; // Unknown record type
+                    }
+                }
+                return true;
+            }
+        } catch (EOFException e) {
+            return false; // Torn tail
+        }
+    }
+
+    private long readVarLong() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new EOFException("Varint too long");
+    }
+
+    /**
+     * Wall clock time the recording started, in epoch millis
+     */
+    public long getStartedAt() {
+        return startedAt;
+    }
+
+    /**
+     * Type of the current record: SENSOR, REMOVE, FLAGS or SIGNAL
+     */
+    public byte getType() {
+        return type;
+    }
+
+    /**
+     * Ticks from the start of the recording to the current record
+     */
+    public long getTick() {
+        return tick;
+    }
+
+    public String getWorldName() {
+        return worldName;
+    }
+
+    public int getX() {
+        return PackedBlockPos.unpackX(position);
+    }
+
+    public int getY() {
+        return PackedBlockPos.unpackY(position);
+    }
+
+    public int getZ() {
+        return PackedBlockPos.unpackZ(position);
+    }
+
+    public boolean isCritical() {
+        return (flags & NetworkFileFormat.FLAG_CRITICAL) != 0;
+    }
+
+    public int getFrequencies() {
+        return flags >>> NetworkFileFormat.FREQUENCY_SHIFT;
+    }
+
+    public int getSignalStrength() {
+        return strength;
+    }
+
+    public int getFrequency() {
+        return frequency;
+    }
+
+    /**
+     * Hop cap the signal was sent with, 0 for none
+     */
+    public int getMaxHops() {
+        return maxHops;
+    }
+
+    public int getAttenuation() {
+        return attenuation;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
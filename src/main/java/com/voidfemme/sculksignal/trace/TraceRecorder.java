@@ -0,0 +1,290 @@
+package com.sculksignal.trace;
+
+import com.sculksignal.network.RegistryListener;
+import com.sculksignal.network.SculkNode;
+import com.sculksignal.storage.NetworkFileFormat;
+import com.sculksignal.util.PackedBlockPos;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Records signals and sensor changes to a compact binary trace that can be
+ * replayed without a server.
+ *
+ * Records are encoded on the engine thread into a block buffer, and full
+ * blocks are handed to a writer thread that appends them to the file. There
+ * is no fsync: a trace is a diagnostic, and a crash loses at most the block
+ * that was being filled.
+ *
+ * Layout (big-endian): magic "SSTR" (int), format version (int) and the wall
+ * clock time recording started (long, epoch millis), then records. Each
+ * record is its type (byte) and the ticks since the previous record
+ * (varint), followed by:
+ * <pre>
+ *   WORLD   world index (varint), name (varint length + UTF-8), before the
+ *           first record in that world
+ *   SENSOR  world index (varint), packed block position (long), flags
+ *           (varint, laid out as in network files)
+ *   REMOVE  world index (varint), packed block position (long)
+ *   FLAGS   world index (varint), packed block position (long), flags (varint)
+ *   SIGNAL  world index (varint), packed block position (long), strength
+ *           (byte), frequency (byte), hop cap (varint, 0 for none),
+ *           attenuation per hop (varint)
+ * </pre>
+ * A trace opens with a SENSOR record for every sensor in memory, so it can be
+ * replayed from an empty network, and sensors paged in from region files
+ * while recording get one too. Connections are not recorded; a replay finds
+ * them again by range.
+ */
+public class TraceRecorder implements RegistryListener {
+
+    public static final int MAGIC = 0x53535452; // "SSTR"
+    public static final int VERSION = 1;
+
+    public static final byte WORLD = 1;
+    public static final byte SENSOR = 2;
+    public static final byte REMOVE = 3;
+    public static final byte FLAGS = 4;
+    public static final byte SIGNAL = 5;
+
+    private static final int BLOCK_BYTES = 64 * 1024;
+    /** Largest record other than WORLD: type, tick delta, world index, position, flags or signal fields */
+    private static final int MAX_RECORD_BYTES = 1 + 10 + 5 + 8 + 1 + 1 + 5 + 5;
+    private static final long CLOSE_TIMEOUT_SECONDS = 30;
+
+    private final Path file;
+    private final LongSupplier clock;
+    private final Logger logger;
+    private final BlockingQueue<ByteBuffer> queue;
+    private final Map<String, Integer> worldIndices;
+    private final AtomicLong bytesWritten;
+    private FileChannel channel;
+    private Thread writer;
+    private ByteBuffer block;
+    private long lastTick;
+    private long recordCount;
+    private boolean open;
+    private volatile boolean failed;
+
+    /**
+     * A recorder writing to the given file, stamping records with the ticks
+     * from the clock
+     */
+    public TraceRecorder(Path file, LongSupplier clock, Logger logger) {
+        this.file = file;
+        this.clock = clock;
+        this.logger = logger;
+        this.queue = new LinkedBlockingQueue<>();
+        this.worldIndices = new HashMap<>();
+        this.bytesWritten = new AtomicLong();
+    }
+
+    /**
+     * Create the file, write the header and start the writer thread
+     */
+    public void open() throws IOException {
+        if (open) {
+            return;
+        }
+
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        block = ByteBuffer.allocate(BLOCK_BYTES);
+        block.putInt(MAGIC).putInt(VERSION).putLong(System.currentTimeMillis());
+        lastTick = clock.getAsLong();
+
+        open = true;
+        writer = new Thread(this::runWriter, "SculkSignal-Trace");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Record the sensors already in the network
+     */
+    public void recordSensors(Collection<SculkNode> nodes) {
+        for (SculkNode node : nodes) {
+            onSensorRegistered(node);
+        }
+    }
+
+    /**
+     * Record a signal leaving a sensor, with the hop cap and attenuation it was sent with
+     */
+    public void recordSignal(SculkNode source, int signalStrength, int frequency, int maxHops, int attenuation) {
+        if (!beginRecord(SIGNAL, source)) {
+            return;
+        }
+
+        block.put((byte) signalStrength).put((byte) frequency);
+        putVarLong(block, Math.max(maxHops, 0));
+        putVarLong(block, Math.max(attenuation, 0));
+    }
+
+    @Override
+    public void onSensorRegistered(SculkNode node) {
+        if (beginRecord(SENSOR, node)) {
+            putVarLong(block, NetworkFileFormat.flags(node) & 0xFFFFFFFFL);
+        }
+    }
+
+    @Override
+    public void onSensorsRestored(List<SculkNode> nodes) {
+        recordSensors(nodes);
+    }
+
+    @Override
+    public void onSensorUnregistered(SculkNode node) {
+        beginRecord(REMOVE, node);
+    }
+
+    @Override
+    public void onSensorChanged(SculkNode node) {
+        if (beginRecord(FLAGS, node)) {
+            putVarLong(block, NetworkFileFormat.flags(node) & 0xFFFFFFFFL);
+        }
+    }
+
+    /**
+     * Write the fields every sensor record starts with. Returns false if the
+     * recorder is closed and nothing was written.
+     */
+    private boolean beginRecord(byte type, SculkNode node) {
+        if (!open || failed) {
+            return false;
+        }
+
+        Integer worldIndex = worldIndices.get(node.getWorldName());
+        if (worldIndex == null) {
+            worldIndex = worldIndices.size();
+            worldIndices.put(node.getWorldName(), worldIndex);
+            byte[] name = node.getWorldName().getBytes(StandardCharsets.UTF_8);
+            reserve(1 + 10 + 5 + 5 + name.length);
+            putHeader(WORLD);
+            putVarLong(block, worldIndex);
+            putVarLong(block, name.length);
+            block.put(name);
+        }
+
+        reserve(MAX_RECORD_BYTES);
+        putHeader(type);
+        putVarLong(block, worldIndex);
+        block.putLong(PackedBlockPos.pack((int) Math.floor(node.getX()), (int) Math.floor(node.getY()),
+                (int) Math.floor(node.getZ())));
+        return true;
+    }
+
+    private void putHeader(byte type) {
+        long tick = clock.getAsLong();
+        block.put(type);
+        putVarLong(block, Math.max(tick - lastTick, 0));
+        lastTick = Math.max(tick, lastTick);
+        recordCount++;
+    }
+
+    /**
+     * Hand the current block to the writer if the next record might not fit
+     */
+    private void reserve(int bytes) {
+        if (block.remaining() >= bytes) {
+            return;
+        }
+
+        block.flip();
+        queue.add(block);
+        block = ByteBuffer.allocate(Math.max(BLOCK_BYTES, bytes));
+    }
+
+    /**
+     * Unsigned LEB128: seven bits per byte, low bits first
+     */
+    private static void putVarLong(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    /**
+     * Write out the block being filled, stop the writer thread and close the file
+     */
+    public void close() {
+        if (!open) {
+            return;
+        }
+
+        open = false;
+        block.flip();
+        queue.add(block);
+        queue.add(ByteBuffer.allocate(0)); // Tells the writer to stop
+        block = null;
+
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(CLOSE_TIMEOUT_SECONDS));
+            channel.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to close trace " + file, e);
+        }
+    }
+
+    private void runWriter() {
+        try {
+            while (true) {
+                ByteBuffer buffer = queue.take();
+                if (!buffer.hasRemaining()) {
+                    return;
+                }
+
+                while (buffer.hasRemaining()) {
+                    bytesWritten.addAndGet(channel.write(buffer));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Failed to write trace " + file + "; the rest of the recording is lost", e);
+            failed = true;
+            queue.clear();
+        }
+    }
+
+    public boolean isOpen() {
+        return open;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * Bytes written to the file so far, not counting the block being filled
+     */
+    public long getBytesWritten() {
+        return bytesWritten.get();
+    }
+}
@@ -43,6 +43,28 @@ public class ChunkCoordinate {
         return z;
     }
 
+    /**
+     * Get this coordinate packed into a single long (see {@link #pack})
+     */
+    public long toKey() {
+        return pack(x, z);
+    }
+
+    /**
+     * Pack chunk x/z into a long key, x in the high half and z in the low half
+     */
+    public static long pack(int chunkX, int chunkZ) {
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+
+    public static int unpackX(long key) {
+        return (int) (key >> 32);
+    }
+
+    public static int unpackZ(long key) {
+        return (int) key;
+    }
+
     /**
      * Get a chunk coordinate offset by the given amounts
      */
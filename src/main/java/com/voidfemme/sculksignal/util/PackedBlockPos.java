@@ -0,0 +1,34 @@
+package com.sculksignal.util;
+
+/**
+ * Packs block positions into a single long using the vanilla layout:
+ * 26 bits of x, 26 bits of z and 12 bits of y, each two's complement
+ */
+public final class PackedBlockPos {
+
+    private static final int XZ_BITS = 26;
+    private static final int Y_BITS = 12;
+    private static final long XZ_MASK = (1L << XZ_BITS) - 1;
+    private static final long Y_MASK = (1L << Y_BITS) - 1;
+
+    private PackedBlockPos() {
+    }
+
+    public static long pack(int x, int y, int z) {
+        return ((x & XZ_MASK) << (XZ_BITS + Y_BITS))
+                | ((z & XZ_MASK) << Y_BITS)
+                | (y & Y_MASK);
+    }
+
+    public static int unpackX(long packed) {
+        return (int) (packed >> (XZ_BITS + Y_BITS));
+    }
+
+    public static int unpackY(long packed) {
+        return (int) (packed << (64 - Y_BITS) >> (64 - Y_BITS));
+    }
+
+    public static int unpackZ(long packed) {
+        return (int) (packed << (64 - XZ_BITS - Y_BITS) >> (64 - XZ_BITS));
+    }
+}
@@ -0,0 +1,175 @@
+package com.sculksignal.network;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class AdjacencyStoreTest {
+
+    private static AdjacencyStore storeWith(int nodes) {
+        AdjacencyStore store = new AdjacencyStore();
+        for (int i = 0; i < nodes; i++) {
+            assertEquals(i, store.allocate(mock(SculkNode.class)));
+        }
+        return store;
+    }
+
+    private static long edge(int a, int b) {
+        return ((long) a << 32) | b;
+    }
+
+    private static Set<Integer> neighbors(SensorGraph graph, int id) {
+        Set<Integer> neighbors = new TreeSet<>();
+        SensorGraph.NeighborCursor cursor = graph.cursor();
+        cursor.reset(id);
+        for (int neighbor = cursor.next(); neighbor >= 0; neighbor = cursor.next()) {
+            assertTrue(neighbors.add(neighbor), "Neighbour " + neighbor + " of " + id + " listed twice");
+        }
+        return neighbors;
+    }
+
+    @Test
+    void overlayEdgesAreListedAfterTheBase() {
+        AdjacencyStore store = storeWith(4);
+        store.replaceEdges(new long[]{edge(0, 1), edge(1, 2)}, 2);
+        assertTrue(store.addEdge(0, 3));
+        assertFalse(store.addEdge(3, 0), "Already present in the overlay");
+        assertFalse(store.addEdge(2, 1), "Already present in the base");
+        assertFalse(store.addEdge(2, 2));
+
+        assertEquals(Set.of(1, 3), neighbors(store, 0));
+        assertEquals(Set.of(0, 2), neighbors(store, 1));
+        assertEquals(Set.of(0), neighbors(store, 3));
+        assertEquals(2, store.getDegree(0));
+        assertEquals(3, store.getEdgeCount());
+        assertTrue(store.containsEdge(3, 0));
+    }
+
+    @Test
+    void removedEdgesAreTombstonedAndSkipped() {
+        AdjacencyStore store = storeWith(4);
+        store.replaceEdges(new long[]{edge(0, 1), edge(0, 2), edge(1, 2)}, 3);
+        store.addEdge(0, 3);
+
+        assertTrue(store.removeEdge(1, 0));
+        assertFalse(store.removeEdge(0, 1));
+        assertEquals(Set.of(2, 3), neighbors(store, 0));
+        assertEquals(Set.of(2), neighbors(store, 1));
+        assertFalse(store.containsEdge(0, 1));
+        assertEquals(3, store.getEdgeCount());
+
+        // Base and overlay edges of one node go at once, and its id can be reused
+        store.removeAllEdges(0);
+        assertEquals(Set.of(), neighbors(store, 0));
+        assertEquals(Set.of(1), neighbors(store, 2));
+        assertEquals(Set.of(), neighbors(store, 3));
+        assertEquals(0, store.getDegree(0));
+        assertEquals(1, store.getEdgeCount());
+        store.release(0);
+        assertNull(store.getNode(0));
+        assertEquals(0, store.allocate(mock(SculkNode.class)));
+        assertTrue(store.addEdge(0, 2));
+        assertEquals(Set.of(0, 1), neighbors(store, 2));
+    }
+
+    @Test
+    void releasingANodeWithEdgesFails() {
+        AdjacencyStore store = storeWith(2);
+        store.addEdge(0, 1);
+        assertThrows(IllegalStateException.class, () -> store.release(0));
+    }
+
+    @Test
+    void compactionKeepsEveryEdge() {
+        AdjacencyStore store = storeWith(5);
+        store.replaceEdges(new long[]{edge(0, 1), edge(1, 2), edge(2, 3)}, 3);
+        store.addEdge(3, 4);
+        store.addEdge(0, 4);
+        store.removeEdge(1, 2);
+
+        List<Set<Integer>> before = new ArrayList<>();
+        for (int id = 0; id < 5; id++) {
+            before.add(neighbors(store, id));
+        }
+        store.compact();
+        for (int id = 0; id < 5; id++) {
+            assertEquals(before.get(id), neighbors(store, id));
+            assertEquals(before.get(id).size(), store.getDegree(id));
+        }
+        assertEquals(4, store.getEdgeCount());
+
+        // The compacted base takes removals and additions like the first one
+        assertTrue(store.removeEdge(4, 3));
+        assertTrue(store.addEdge(1, 3));
+        assertEquals(Set.of(1, 2), neighbors(store, 3));
+    }
+
+    @Test
+    void snapshotIsUnaffectedByLaterChanges() {
+        AdjacencyStore store = storeWith(4);
+        store.replaceEdges(new long[]{edge(0, 1), edge(1, 2)}, 2);
+        store.addEdge(2, 3);
+        GraphSnapshot snapshot = store.snapshot(7);
+
+        store.removeEdge(0, 1);
+        store.removeAllEdges(2);
+        store.addEdge(0, 3);
+        store.compact();
+
+        assertEquals(7, snapshot.getVersion());
+        assertEquals(3, snapshot.getEdgeCount());
+        assertEquals(Set.of(1), neighbors(snapshot, 0));
+        assertEquals(Set.of(0, 2), neighbors(snapshot, 1));
+        assertEquals(Set.of(1, 3), neighbors(snapshot, 2));
+        assertEquals(Set.of(2), neighbors(snapshot, 3));
+    }
+
+    @Test
+    void matchesASetOfEdgesUnderRandomChanges() {
+        int nodeCount = 64;
+        AdjacencyStore store = storeWith(nodeCount);
+        Set<Long> expected = new HashSet<>();
+        Random random = new Random(11);
+
+        for (int i = 0; i < 20_000; i++) {
+            int a = random.nextInt(nodeCount);
+            int b = random.nextInt(nodeCount);
+            long key = edge(Math.min(a, b), Math.max(a, b));
+            switch (random.nextInt(10)) {
+                case 0 -> {
+                    store.removeAllEdges(a);
+                    expected.removeIf(e -> (int) (e >>> 32) == a || (int) (long) e == a);
+                }
+                case 1, 2, 3 -> assertEquals(expected.remove(key), store.removeEdge(a, b));
+                default -> assertEquals(a != b && expected.add(key), store.addEdge(a, b));
+            }
+            if (i % 5000 == 4999) {
+                store.compact();
+            }
+
+            if (i % 500 == 0) {
+                assertEquals(expected.size(), store.getEdgeCount());
+                for (int id = 0; id < nodeCount; id++) {
+                    Set<Integer> want = new TreeSet<>();
+                    for (long e : expected) {
+                        if ((int) (e >>> 32) == id) {
+                            want.add((int) e);
+                        } else if ((int) e == id) {
+                            want.add((int) (e >>> 32));
+                        }
+                    }
+                    assertEquals(want, neighbors(store, id), "Neighbours of " + id);
+                    assertEquals(want.size(), store.getDegree(id));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.sculksignal.network;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ClusterGraphTest {
+
+    private static final int AREA = 128;
+    private static final double LINK_RANGE = 5;
+    private static final int[] HOP_LIMITS = {PathCalculator.UNLIMITED_HOPS, 3, 8, 15};
+    private static final double[] RANGES = {1000, 70, 45, 20};
+
+    private final Random random = new Random(5);
+    private final AdjacencyStore store = new AdjacencyStore();
+    private final ClusterGraph clusters = new ClusterGraph(store, 1);
+    private final List<SculkNode> nodes = new ArrayList<>();
+
+    /**
+     * Scatter sensors over the area and link close pairs, mostly inside a
+     * cluster, so that clusters have few enough portals to get a table
+     */
+    private void generate(int count) {
+        World world = mock(World.class);
+        when(world.getName()).thenReturn("world");
+        store.setObserver(clusters);
+
+        Set<Long> used = new HashSet<>();
+        while (nodes.size() < count) {
+            int x = random.nextInt(AREA);
+            int y = 60 + random.nextInt(4);
+            int z = random.nextInt(AREA);
+            if (used.add((long) x << 32 | (long) y << 16 | z)) {
+                SculkNode node = new SculkNode(new Location(world, x, y, z), new UUID(0, nodes.size()),
+                        false, randomFrequencies(9));
+                node.attach(store, store.allocate(node));
+                nodes.add(node);
+            }
+        }
+
+        for (SculkNode a : nodes) {
+            for (SculkNode b : nodes) {
+                if (a.getId() < b.getId() && a.distanceTo(b) <= LINK_RANGE
+                        && (sameChunk(a, b) || random.nextInt(10) == 0)) {
+                    store.addEdge(a.getId(), b.getId());
+                }
+            }
+        }
+    }
+
+    private static boolean sameChunk(SculkNode a, SculkNode b) {
+        return a.getChunkX() == b.getChunkX() && a.getChunkZ() == b.getChunkZ();
+    }
+
+    /**
+     * Mostly a single frequency below the given bound, so a cluster's inner
+     * members do not listen on all of them
+     */
+    private int randomFrequencies(int bound) {
+        return random.nextInt(32) == 0 ? 0 : 1 << (random.nextInt(bound - 1) + 1);
+    }
+
+    /**
+     * Hop counts of the tuned sensors a flat breadth-first search reaches
+     */
+    private Map<SculkNode, Integer> expected(SculkNode source, int frequency, double maxDistance, int maxHops) {
+        PathCalculator.ShortestPathTree tree = PathCalculator.buildShortestPathTree(store, source,
+                maxDistance, maxHops, nodes.size(), frequency, -1);
+        Map<SculkNode, Integer> depths = new HashMap<>();
+        for (int i = 1; i < tree.size(); i++) {
+            if (tree.getNode(i).isTunedTo(frequency)) {
+                depths.put(tree.getNode(i), tree.getDepth(i));
+            }
+        }
+        return depths;
+    }
+
+    private void assertRoutesMatch(SculkNode source, int frequency, double maxDistance, int maxHops) {
+        Map<SculkNode, Integer> expected = expected(source, frequency, maxDistance, maxHops);
+        String route = "route from " + source.getLocation() + " on " + frequency +
+                " within " + maxDistance + " blocks and " + maxHops + " hops";
+
+        PathCalculator.ShortestPathTree tree = clusters.route(source, frequency, -1, maxDistance, maxHops);
+        assertSame(source, tree.getNode(0));
+        Map<SculkNode, Integer> actual = new HashMap<>();
+        for (int i = 1; i < tree.size(); i++) {
+            assertEquals(0, tree.getParent(i));
+            assertTrue(tree.getDepth(i) >= tree.getDepth(i - 1), "Out of hop order in " + route);
+            actual.put(tree.getNode(i), tree.getDepth(i));
+        }
+        assertEquals(expected, actual, route);
+
+        // Stopping early still gives the nearest tuned sensors their exact hop counts
+        int targets = random.nextInt(4) + 1;
+        tree = clusters.route(source, frequency, targets, maxDistance, maxHops);
+        List<Integer> nearest = new ArrayList<>(expected.values());
+        nearest.sort(null);
+        for (int i = 1; i <= Math.min(targets, nearest.size()); i++) {
+            assertEquals(nearest.get(i - 1), tree.getDepth(i), "Hop " + i + " of " + targets + " in " + route);
+            assertEquals(expected.get(tree.getNode(i)), tree.getDepth(i), route);
+        }
+    }
+
+    @Test
+    void routesMatchAFlatSearchWhileTheGraphChanges() {
+        generate(1200);
+
+        int retunedTo = SculkNode.ANY_FREQUENCY;
+        for (int round = 0; round < 300; round++) {
+            SculkNode source = nodes.get(random.nextInt(nodes.size()));
+            // Often the frequency a sensor was just retuned to, which its cluster may not have listened on
+            int frequency = random.nextBoolean() ? retunedTo : random.nextInt(SculkNode.MAX_FREQUENCY + 1);
+            assertRoutesMatch(source, frequency, RANGES[random.nextInt(RANGES.length)],
+                    HOP_LIMITS[random.nextInt(HOP_LIMITS.length)]);
+
+            // Change the graph between routes, leaving the clusters it touches dirty
+            for (int change = random.nextInt(4); change > 0; change--) {
+                SculkNode a = nodes.get(random.nextInt(nodes.size()));
+                SculkNode b = nodes.get(random.nextInt(nodes.size()));
+                switch (random.nextInt(3)) {
+                    case 0 -> {
+                        // Often to a frequency no sensor started on
+                        a.setFrequencies(randomFrequencies(SculkNode.MAX_FREQUENCY + 1));
+                        clusters.onRetuned(a);
+                        retunedTo = Integer.numberOfTrailingZeros(a.getFrequencies() | 1 << 31) & 15;
+                    }
+                    case 1 -> {
+                        SensorGraph.NeighborCursor cursor = store.cursor();
+                        cursor.reset(a.getId());
+                        int neighbor = cursor.next();
+                        if (neighbor >= 0) {
+                            store.removeEdge(a.getId(), neighbor);
+                        }
+                    }
+                    default -> {
+                        if (a != b && a.distanceTo(b) <= 3 * LINK_RANGE) {
+                            store.addEdge(a.getId(), b.getId());
+                        }
+                    }
+                }
+            }
+            if (round % 50 == 0) {
+                // Only frequencies change, so clean clusters keep their tables
+                for (int i = 0; i < 20; i++) {
+                    SculkNode node = nodes.get(random.nextInt(nodes.size()));
+                    node.setFrequencies(randomFrequencies(SculkNode.MAX_FREQUENCY + 1));
+                    clusters.onRetuned(node);
+                }
+            }
+        }
+
+        ClusterGraph.ClusterStats stats = clusters.getStats();
+        assertTrue(stats.clustersCrossed > 0, "No route crossed a cluster through its table: " + stats);
+        assertTrue(stats.clustersExpanded > 0, "No route searched a cluster sensor by sensor: " + stats);
+    }
+}
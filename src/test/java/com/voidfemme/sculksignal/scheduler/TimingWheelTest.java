@@ -0,0 +1,159 @@
+package com.sculksignal.scheduler;
+
+import com.sculksignal.network.SculkNode;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class TimingWheelTest {
+
+    private World world;
+    private SculkNode first;
+    private SculkNode second;
+    private final List<String> fired = new ArrayList<>();
+    private final TimingWheel.Handler recorder = new TimingWheel.Handler() {
+        @Override
+        public void onActivate(SculkNode node, int signalStrength) {
+            fired.add(name(node) + " on " + signalStrength);
+        }
+
+        @Override
+        public void onDeactivate(SculkNode node) {
+            fired.add(name(node) + " off");
+        }
+    };
+
+    @BeforeEach
+    void createSensors() {
+        world = mock(World.class);
+        when(world.getName()).thenReturn("world");
+        first = new SculkNode(new Location(world, 0, 64, 0), new UUID(0, 0));
+        second = new SculkNode(new Location(world, 8, 64, 0), new UUID(0, 0));
+    }
+
+    private String name(SculkNode node) {
+        return node == first ? "first" : "second";
+    }
+
+    @Test
+    void sameTickActivationsOfOneSensorAreCoalescedToTheStrongest() {
+        TimingWheel wheel = new TimingWheel(16);
+        wheel.schedule(TimingWheel.ACTIVATE, first, 5, 2);
+        wheel.schedule(TimingWheel.ACTIVATE, first, 12, 2);
+        wheel.schedule(TimingWheel.ACTIVATE, first, 9, 2);
+
+        assertEquals(1, wheel.getPendingCount());
+        assertEquals(3, wheel.getActivationsScheduled());
+        assertEquals(2, wheel.getActivationsMerged());
+
+        assertEquals(0, wheel.advance(recorder));
+        assertEquals(1, wheel.advance(recorder));
+        assertEquals(List.of("first on 12"), fired);
+        assertEquals(1, wheel.getActivationsDelivered());
+        assertEquals(0, wheel.getPendingCount());
+    }
+
+    @Test
+    void otherSensorsTicksAndDeactivationsAreNotCoalesced() {
+        TimingWheel wheel = new TimingWheel(16);
+        wheel.schedule(TimingWheel.ACTIVATE, first, 5, 1);
+        wheel.schedule(TimingWheel.ACTIVATE, second, 7, 1);
+        wheel.schedule(TimingWheel.DEACTIVATE, first, 0, 1);
+        wheel.schedule(TimingWheel.ACTIVATE, first, 3, 2);
+        // Same slot one revolution later: a different tick
+        wheel.schedule(TimingWheel.ACTIVATE, first, 15, 17);
+
+        assertEquals(5, wheel.getPendingCount());
+        assertEquals(0, wheel.getActivationsMerged());
+
+        assertEquals(3, wheel.advance(recorder));
+        assertEquals(List.of("first on 5", "second on 7", "first off"), fired);
+        fired.clear();
+        assertEquals(1, wheel.advance(recorder));
+        assertEquals(List.of("first on 3"), fired);
+        fired.clear();
+
+        for (int tick = 3; tick < 17; tick++) {
+            assertEquals(0, wheel.advance(recorder));
+        }
+        assertEquals(1, wheel.advance(recorder));
+        assertEquals(List.of("first on 15"), fired);
+    }
+
+    @Test
+    void activationsScheduledWhileFiringDoNotMergeWithTheFiredOnes() {
+        TimingWheel wheel = new TimingWheel(4);
+        wheel.schedule(TimingWheel.ACTIVATE, first, 10, 1);
+        TimingWheel.Handler rescheduling = new TimingWheel.Handler() {
+            @Override
+            public void onActivate(SculkNode node, int signalStrength) {
+                recorder.onActivate(node, signalStrength);
+                // Lands in the slot just drained, one revolution on
+                wheel.schedule(TimingWheel.ACTIVATE, node, signalStrength - 1, 4);
+            }
+
+            @Override
+            public void onDeactivate(SculkNode node) {
+                recorder.onDeactivate(node);
+            }
+        };
+
+        assertEquals(1, wheel.advance(rescheduling));
+        wheel.schedule(TimingWheel.ACTIVATE, first, 4, 4);
+        assertEquals(1, wheel.getActivationsMerged());
+        assertEquals(1, wheel.getPendingCount());
+
+        for (int tick = 0; tick < 3; tick++) {
+            assertEquals(0, wheel.advance(recorder));
+        }
+        assertEquals(1, wheel.advance(recorder));
+        assertEquals(List.of("first on 10", "first on 9"), fired);
+    }
+
+    @Test
+    void coalescingStillWorksAfterADrainRebuildsAGrownIndex() {
+        TimingWheel wheel = new TimingWheel(4);
+        List<SculkNode> sensors = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            SculkNode sensor = new SculkNode(new Location(world, i * 8, 64, 32), new UUID(0, i));
+            sensors.add(sensor);
+            // Every sensor due now and again one revolution later, in the same slot
+            wheel.schedule(TimingWheel.ACTIVATE, sensor, 1, 1);
+            wheel.schedule(TimingWheel.ACTIVATE, sensor, 2, 5);
+        }
+
+        // Draining the first tick re-indexes the forty entries left in the slot
+        assertEquals(40, wheel.advance(recorder));
+        for (SculkNode sensor : sensors) {
+            wheel.schedule(TimingWheel.ACTIVATE, sensor, 7, 4);
+        }
+        assertEquals(40, wheel.getActivationsMerged());
+        assertEquals(40, wheel.getPendingCount());
+
+        List<Integer> strengths = new ArrayList<>();
+        TimingWheel.Handler collect = new TimingWheel.Handler() {
+            @Override
+            public void onActivate(SculkNode node, int signalStrength) {
+                strengths.add(signalStrength);
+            }
+
+            @Override
+            public void onDeactivate(SculkNode node) {
+            }
+        };
+        for (int tick = 0; tick < 3; tick++) {
+            assertEquals(0, wheel.advance(collect));
+        }
+        assertEquals(40, wheel.advance(collect));
+        assertTrue(strengths.stream().allMatch(strength -> strength == 7));
+    }
+}
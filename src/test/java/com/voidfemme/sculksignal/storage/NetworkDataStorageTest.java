@@ -0,0 +1,124 @@
+package com.sculksignal.storage;
+
+import com.sculksignal.SculkSignalPlugin;
+import com.sculksignal.config.SculkSignalConfig;
+import com.sculksignal.network.NetworkRegistry;
+import com.sculksignal.network.SculkNode;
+import com.sculksignal.scheduler.ExecutionBackend;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.MockedStatic;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class NetworkDataStorageTest {
+
+    private static final Logger LOGGER = Logger.getLogger("NetworkDataStorageTest");
+    private static final UUID OWNER = new UUID(1, 2);
+
+    static {
+        LOGGER.setLevel(Level.WARNING);
+    }
+
+    @TempDir
+    Path dataFolder;
+
+    private World world;
+    private MockedStatic<Bukkit> bukkit;
+
+    @BeforeEach
+    void installWorld() {
+        world = mock(World.class);
+        when(world.getName()).thenReturn("world");
+        bukkit = mockStatic(Bukkit.class);
+        bukkit.when(() -> Bukkit.getWorld("world")).thenReturn(world);
+        bukkit.when(Bukkit::getWorlds).thenReturn(List.of(world));
+    }
+
+    @AfterEach
+    void removeWorld() {
+        bukkit.close();
+    }
+
+    @Test
+    void replayingRecordsAlreadyInTheFilesChangesNothing() throws Exception {
+        SculkSignalPlugin first = start();
+        NetworkRegistry registry = first.getNetworkRegistry();
+        registry.registerSensor(new SculkNode(at(0, 64, 0), OWNER));
+        registry.registerSensor(new SculkNode(at(8, 64, 0), OWNER));
+        registry.registerSensor(new SculkNode(at(16, 64, 0), OWNER));
+        registry.setSensorCritical(registry.getSensor(at(0, 64, 0)), true);
+        registry.setSensorFrequencies(registry.getSensor(at(8, 64, 0)), 1 << 5);
+        registry.unregisterSensor(at(16, 64, 0));
+        first.getDataStorage().saveNetworkData();
+
+        Path journalFile = dataFolder.resolve("networks").resolve("journal.log");
+        byte[] journal = Files.readAllBytes(journalFile);
+        assertTrue(journal.length > 0);
+
+        // The next start replays the journal and folds it into the region files
+        SculkSignalPlugin second = start();
+        List<String> replayed = describe(second.getNetworkRegistry());
+        assertEquals(List.of(
+                "0,64,0 critical=true frequencies=0 connections=1",
+                "8,64,0 critical=false frequencies=32 connections=1"), replayed);
+        second.getDataStorage().saveNetworkData();
+        assertEquals(0, Files.size(journalFile));
+
+        // A crash before the truncate leaves the same records on top of files that already hold them
+        Files.write(journalFile, journal);
+        SculkSignalPlugin third = start();
+        assertEquals(replayed, describe(third.getNetworkRegistry()));
+        third.getDataStorage().saveNetworkData();
+    }
+
+    private SculkSignalPlugin start() {
+        SculkSignalConfig config = mock(SculkSignalConfig.class);
+        when(config.isPersistNetworkEnabled()).thenReturn(true);
+        when(config.isJournalEnabled()).thenReturn(true);
+
+        SculkSignalPlugin plugin = mock(SculkSignalPlugin.class);
+        when(plugin.getPluginConfig()).thenReturn(config);
+        when(plugin.getDataFolder()).thenReturn(dataFolder.toFile());
+        when(plugin.getLogger()).thenReturn(LOGGER);
+        when(plugin.getExecutionBackend()).thenReturn(mock(ExecutionBackend.class));
+        NetworkRegistry registry = new NetworkRegistry(plugin);
+        when(plugin.getNetworkRegistry()).thenReturn(registry);
+        NetworkDataStorage storage = new NetworkDataStorage(plugin);
+        when(plugin.getDataStorage()).thenReturn(storage);
+
+        storage.loadNetworkData();
+        return plugin;
+    }
+
+    private Location at(int x, int y, int z) {
+        return new Location(world, x, y, z);
+    }
+
+    private static List<String> describe(NetworkRegistry registry) {
+        List<String> sensors = new ArrayList<>();
+        for (SculkNode node : registry.getAllSensors().values()) {
+            sensors.add((int) node.getX() + "," + (int) node.getY() + "," + (int) node.getZ() +
+                    " critical=" + node.isCritical() + " frequencies=" + node.getFrequencies() +
+                    " connections=" + node.getConnectionCount());
+        }
+        Collections.sort(sensors);
+        return sensors;
+    }
+}
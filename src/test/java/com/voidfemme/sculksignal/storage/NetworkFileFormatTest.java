@@ -0,0 +1,120 @@
+package com.sculksignal.storage;
+
+import com.sculksignal.util.PackedBlockPos;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NetworkFileFormatTest {
+
+    @TempDir
+    Path directory;
+
+    private static NetworkFileFormat.WorldData sample() {
+        return new NetworkFileFormat.WorldData(
+                new long[]{PackedBlockPos.pack(0, 64, 0), PackedBlockPos.pack(8, 64, 0), PackedBlockPos.pack(-8, 70, 5)},
+                new long[]{1, 2, 3},
+                new long[]{4, 5, 6},
+                new int[]{NetworkFileFormat.FLAG_CRITICAL, 0b110 << NetworkFileFormat.FREQUENCY_SHIFT, 0},
+                new int[]{0, 1, 0, 2},
+                new int[]{1},
+                new long[]{PackedBlockPos.pack(520, 64, 0)});
+    }
+
+    @Test
+    void writeThenReadRoundTrips() throws IOException {
+        Path file = directory.resolve("r.0.0.ssn");
+        NetworkFileFormat.WorldData written = sample();
+        NetworkFileFormat.write(file, written);
+
+        NetworkFileFormat.WorldData read = NetworkFileFormat.read(file);
+        assertArrayEquals(written.positions, read.positions);
+        assertArrayEquals(written.ownersMost, read.ownersMost);
+        assertArrayEquals(written.ownersLeast, read.ownersLeast);
+        assertArrayEquals(written.flags, read.flags);
+        assertArrayEquals(written.edges, read.edges);
+        assertArrayEquals(written.stubSources, read.stubSources);
+        assertArrayEquals(written.stubTargets, read.stubTargets);
+        assertFalse(Files.exists(file.resolveSibling("r.0.0.ssn.tmp")));
+    }
+
+    @Test
+    void readsVersion1FilesWithoutStubsOrFlags() throws IOException {
+        Path file = directory.resolve("r.0.0.ssn");
+        Files.write(file, legacyFile(1, sample()));
+
+        NetworkFileFormat.WorldData read = NetworkFileFormat.read(file);
+        NetworkFileFormat.WorldData expected = sample();
+        assertArrayEquals(expected.positions, read.positions);
+        assertArrayEquals(expected.ownersMost, read.ownersMost);
+        assertArrayEquals(expected.ownersLeast, read.ownersLeast);
+        assertArrayEquals(new int[3], read.flags);
+        assertArrayEquals(expected.edges, read.edges);
+        assertEquals(0, read.getStubCount());
+    }
+
+    @Test
+    void readsVersion2FilesWithStubsButNoFlags() throws IOException {
+        Path file = directory.resolve("r.0.0.ssn");
+        Files.write(file, legacyFile(2, sample()));
+
+        NetworkFileFormat.WorldData read = NetworkFileFormat.read(file);
+        NetworkFileFormat.WorldData expected = sample();
+        assertArrayEquals(expected.positions, read.positions);
+        assertArrayEquals(new int[3], read.flags);
+        assertArrayEquals(expected.edges, read.edges);
+        assertArrayEquals(expected.stubSources, read.stubSources);
+        assertArrayEquals(expected.stubTargets, read.stubTargets);
+    }
+
+    @Test
+    void rejectsChecksumMismatch() throws IOException {
+        Path file = directory.resolve("r.0.0.ssn");
+        NetworkFileFormat.write(file, sample());
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[NetworkFileFormat.HEADER_BYTES + 2] ^= 1;
+        Files.write(file, bytes);
+
+        IOException error = assertThrows(IOException.class, () -> NetworkFileFormat.read(file));
+        assertTrue(error.getMessage().contains("checksum"));
+    }
+
+    /**
+     * Encode a file the way version 1 or 2 laid it out: no flags, and no stubs in version 1
+     */
+    private static byte[] legacyFile(int version, NetworkFileFormat.WorldData data) {
+        int stubCount = version == 1 ? 0 : data.getStubCount();
+        int headerBytes = version == 1 ? NetworkFileFormat.V1_HEADER_BYTES : NetworkFileFormat.HEADER_BYTES;
+        int payloadLength = data.getNodeCount() * NetworkFileFormat.V2_NODE_BYTES +
+                data.getEdgeCount() * NetworkFileFormat.EDGE_BYTES + stubCount * NetworkFileFormat.STUB_BYTES;
+
+        ByteBuffer payload = ByteBuffer.allocate(payloadLength);
+        for (int i = 0; i < data.getNodeCount(); i++) {
+            payload.putLong(data.positions[i]).putLong(data.ownersMost[i]).putLong(data.ownersLeast[i]);
+        }
+        for (int edge : data.edges) {
+            payload.putInt(edge);
+        }
+        for (int i = 0; i < stubCount; i++) {
+            payload.putInt(data.stubSources[i]).putLong(data.stubTargets[i]);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(payload.array());
+
+        ByteBuffer file = ByteBuffer.allocate(headerBytes + payloadLength);
+        file.putInt(NetworkFileFormat.MAGIC).putInt(version).putInt(data.getNodeCount()).putInt(data.getEdgeCount());
+        if (version > 1) {
+            file.putInt(stubCount);
+        }
+        file.putLong(payloadLength).putLong(crc.getValue()).put(payload.array());
+        return file.array();
+    }
+}
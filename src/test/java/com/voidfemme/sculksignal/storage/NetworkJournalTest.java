@@ -0,0 +1,140 @@
+package com.sculksignal.storage;
+
+import com.sculksignal.util.PackedBlockPos;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NetworkJournalTest {
+
+    private static final Logger LOGGER = Logger.getLogger("NetworkJournalTest");
+    private static final UUID OWNER = new UUID(1, 2);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void recordsForUnloadedWorldsSurviveCompaction() throws Exception {
+        Path file = directory.resolve("journal.log");
+        NetworkJournal crashed = new NetworkJournal(file, 0, LOGGER);
+        crashed.open(0);
+        crashed.appendRegister("world", PackedBlockPos.pack(1, 64, 1), OWNER);
+        crashed.appendRegister("world_nether", PackedBlockPos.pack(2, 64, 2), OWNER);
+        crashed.appendFlags("world_nether", PackedBlockPos.pack(2, 64, 2), NetworkFileFormat.FLAG_CRITICAL);
+        crashed.close();
+
+        // First run: the nether is not loaded, so its records are skipped and carried
+        List<NetworkJournal.Record> skipped = new ArrayList<>();
+        for (NetworkJournal.Record record : NetworkJournal.read(file).records) {
+            if (record.worldName.equals("world_nether")) {
+                skipped.add(record);
+            }
+        }
+        assertEquals(2, skipped.size());
+
+        NetworkJournal journal = new NetworkJournal(file, 0, LOGGER);
+        journal.open(0);
+        journal.carry(skipped);
+        journal.appendUnregister("world", PackedBlockPos.pack(1, 64, 1));
+        compact(journal);
+        journal.close();
+
+        // Second run: only the carried records are left, in their original order
+        List<NetworkJournal.Record> replayed = NetworkJournal.read(file).records;
+        assertEquals(2, replayed.size());
+        assertEquals(NetworkJournal.REGISTER, replayed.get(0).operation);
+        assertEquals("world_nether", replayed.get(0).worldName);
+        assertEquals(PackedBlockPos.pack(2, 64, 2), replayed.get(0).packedPosition);
+        assertEquals(OWNER, replayed.get(0).owner);
+        assertEquals(NetworkJournal.FLAGS, replayed.get(1).operation);
+        assertEquals(NetworkFileFormat.FLAG_CRITICAL, replayed.get(1).flags);
+    }
+
+    @Test
+    void compactionTruncatesWhenNothingIsCarried() throws Exception {
+        Path file = directory.resolve("journal.log");
+        NetworkJournal journal = new NetworkJournal(file, 0, LOGGER);
+        journal.open(0);
+        journal.appendRegister("world", PackedBlockPos.pack(1, 64, 1), OWNER);
+        compact(journal);
+        assertEquals(0, journal.getSize());
+        journal.close();
+
+        assertTrue(NetworkJournal.read(file).records.isEmpty());
+    }
+
+    @Test
+    void readStopsAtTornTail() throws Exception {
+        Path file = directory.resolve("journal.log");
+        NetworkJournal journal = new NetworkJournal(file, 0, LOGGER);
+        journal.open(0);
+        journal.appendRegister("world", PackedBlockPos.pack(1, 64, 1), OWNER);
+        journal.appendRegister("world", PackedBlockPos.pack(2, 64, 2), OWNER);
+        journal.close();
+
+        // A crash in the middle of the second record's write
+        long intact = NetworkJournal.read(file).validLength;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(intact - 5);
+        }
+
+        NetworkJournal.ReadResult result = NetworkJournal.read(file);
+        assertEquals(1, result.records.size());
+        assertEquals(PackedBlockPos.pack(1, 64, 1), result.records.get(0).packedPosition);
+        assertEquals(intact - 5, result.fileLength);
+        assertTrue(result.validLength < result.fileLength);
+
+        // Reopening at the intact prefix drops the tail, and new records follow it
+        NetworkJournal reopened = new NetworkJournal(file, 0, LOGGER);
+        reopened.open(result.validLength);
+        reopened.appendUnregister("world", PackedBlockPos.pack(1, 64, 1));
+        reopened.close();
+        List<NetworkJournal.Record> records = NetworkJournal.read(file).records;
+        assertEquals(2, records.size());
+        assertEquals(NetworkJournal.UNREGISTER, records.get(1).operation);
+    }
+
+    @Test
+    void readStopsAtChecksumMismatch() throws Exception {
+        Path file = directory.resolve("journal.log");
+        NetworkJournal journal = new NetworkJournal(file, 0, LOGGER);
+        journal.open(0);
+        journal.appendRegister("world", PackedBlockPos.pack(1, 64, 1), OWNER);
+        journal.flush();
+        long firstEnd = journal.getSize();
+        journal.appendFlags("world", PackedBlockPos.pack(1, 64, 1), NetworkFileFormat.FLAG_CRITICAL);
+        journal.appendUnregister("world", PackedBlockPos.pack(1, 64, 1));
+        journal.close();
+
+        // Flip a bit in the second record's payload, past its length and checksum
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[(int) firstEnd + 8 + 3] ^= 1;
+        Files.write(file, bytes);
+
+        NetworkJournal.ReadResult result = NetworkJournal.read(file);
+        assertEquals(1, result.records.size());
+        assertEquals(NetworkJournal.REGISTER, result.records.get(0).operation);
+        assertEquals(firstEnd, result.validLength);
+        assertEquals(bytes.length, result.fileLength);
+    }
+
+    private static void compact(NetworkJournal journal) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        journal.compact(() -> {
+        }, done::countDown);
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+    }
+}
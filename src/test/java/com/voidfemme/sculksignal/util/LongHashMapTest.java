@@ -0,0 +1,114 @@
+package com.sculksignal.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LongHashMapTest {
+
+    /**
+     * Home slot of a key in a table of the given capacity, as LongHashMap hashes it
+     */
+    private static int home(long key, int capacity) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & (capacity - 1);
+    }
+
+    private static long[] keysWithHome(int home, int capacity, int count, long from) {
+        long[] keys = new long[count];
+        int found = 0;
+        for (long key = from; found < count; key++) {
+            if (home(key, capacity) == home) {
+                keys[found++] = key;
+            }
+        }
+        return keys;
+    }
+
+    @Test
+    void removalShiftsBackAProbeChainThatWrapsAround() {
+        LongHashMap<String> map = new LongHashMap<>(4);
+        int capacity = map.capacity();
+        int last = capacity - 1;
+
+        // Three keys that all want the last slot fill it and wrap into slots 0 and 1,
+        // and a key that wants slot 0 is pushed on to slot 2
+        long[] wrapping = keysWithHome(last, capacity, 3, 0);
+        long pushed = keysWithHome(0, capacity, 1, 0)[0];
+        for (long key : wrapping) {
+            map.put(key, "wrap" + key);
+        }
+        map.put(pushed, "pushed");
+        assertEquals(capacity, map.capacity(), "Must not have grown");
+        assertEquals(wrapping[0], map.keyAt(last));
+        assertEquals(pushed, map.keyAt(2));
+
+        assertEquals("wrap" + wrapping[0], map.remove(wrapping[0]));
+        assertNull(map.get(wrapping[0]));
+        assertEquals(3, map.size());
+        for (int i = 1; i < wrapping.length; i++) {
+            assertEquals("wrap" + wrapping[i], map.get(wrapping[i]));
+        }
+        assertEquals("pushed", map.get(pushed));
+
+        // The chain moved back one slot each, leaving no gap and no tombstone
+        assertEquals(wrapping[1], map.keyAt(last));
+        assertEquals(wrapping[2], map.keyAt(0));
+        assertEquals(pushed, map.keyAt(1));
+        assertNull(map.valueAt(2));
+    }
+
+    @Test
+    void removalKeepsEntriesAtTheirHomeInPlace() {
+        LongHashMap<String> map = new LongHashMap<>(4);
+        int capacity = map.capacity();
+        long[] first = keysWithHome(1, capacity, 2, 0);
+        long atHome = keysWithHome(2, capacity, 1, 0)[0];
+        map.put(first[0], "a");
+        map.put(atHome, "home");
+        map.put(first[1], "b"); // Probes past slot 2 to slot 3
+
+        map.remove(first[0]);
+        assertEquals(atHome, map.keyAt(2), "An entry in its home slot never moves");
+        assertEquals(first[1], map.keyAt(1));
+        assertNull(map.valueAt(3));
+        assertEquals("home", map.get(atHome));
+        assertEquals("b", map.get(first[1]));
+    }
+
+    @Test
+    void matchesHashMapUnderRandomPutsAndRemoves() {
+        LongHashMap<Long> map = new LongHashMap<>();
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(7);
+
+        for (int i = 0; i < 200_000; i++) {
+            long key = random.nextInt(512) - 256; // Small key space, so chains collide and wrap
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), map.remove(key));
+            } else {
+                long value = random.nextLong();
+                assertEquals(expected.put(key, value), map.put(key, value));
+            }
+
+            if (i % 1000 == 0) {
+                assertEquals(expected.size(), map.size());
+                int occupied = 0;
+                for (int slot = 0; slot < map.capacity(); slot++) {
+                    if (map.valueAt(slot) != null) {
+                        occupied++;
+                        assertEquals(expected.get(map.keyAt(slot)), map.valueAt(slot));
+                    }
+                }
+                assertEquals(expected.size(), occupied);
+                for (Map.Entry<Long, Long> entry : expected.entrySet()) {
+                    assertEquals(entry.getValue(), map.get(entry.getKey()));
+                }
+            }
+        }
+    }
+}